@@ -4,11 +4,13 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // 测试注释2
 @SpringBootApplication
 @MapperScan("com.whu.nanyin.mapper")
 @EnableRetry
+@EnableScheduling
 public class NanYinApplication {
 
 	public static void main(String[] args) {
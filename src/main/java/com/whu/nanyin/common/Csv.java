@@ -0,0 +1,91 @@
+package com.whu.nanyin.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV 行解析与格式化工具（RFC 4180 的常用子集）
+ *
+ * 以逗号分隔，字段可以用双引号包裹，引号内的逗号按普通字符处理，连续两个双引号表示一个双引号。
+ * 解析不支持跨行的引号字段，导入的净值/排名文件不会出现这种情况。
+ * 格式化时以 = + - @ 开头的文本字段前加单引号，防止在电子表格中打开时被当作公式执行（CSV 注入）。
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * 解析一行 CSV
+     * @param line 一行文本（不含换行符）
+     * @return 各字段的原始文本，不做 trim
+     */
+    public static List<String> parseLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * 格式化一行 CSV：含逗号、双引号或换行的字段用双引号包裹，null 输出为空字段
+     * @param cells 各字段的值，按 toString() 输出；数字原样输出，其余值按 neutralizeFormula 处理
+     * @return 一行文本（不含换行符）
+     */
+    public static String formatLine(List<?> cells) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Object cell = cells.get(i);
+            if (cell == null) {
+                continue;
+            }
+            String text = cell instanceof Number ? cell.toString() : neutralizeFormula(cell.toString());
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * 以 = + - @（或制表符、回车）开头的文本前加单引号，电子表格会把它当作普通文本而不是公式
+     * @param text 单元格文本
+     * @return 可以安全写入单元格的文本
+     */
+    public static String neutralizeFormula(String text) {
+        if (text.isEmpty()) {
+            return text;
+        }
+        char first = text.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            return "'" + text;
+        }
+        return text;
+    }
+}
@@ -0,0 +1,78 @@
+package com.whu.nanyin.common;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 折线图降采样工具
+ *
+ * 实现 LTTB（Largest-Triangle-Three-Buckets）算法：首尾两点固定保留，中间的点均分为若干桶，
+ * 每个桶选出与"上一个已选点"和"下一个桶的平均点"构成三角形面积最大的点。
+ * 与等间隔抽样相比，LTTB 能保留峰值、谷值等视觉上重要的拐点，走势图形状基本不变。
+ */
+public final class Downsampling {
+
+    private Downsampling() {
+    }
+
+    /**
+     * 计算 LTTB 降采样后保留的点的下标
+     *
+     * @param size      原始点数
+     * @param x         第 i 个点的横坐标（须单调递增）
+     * @param y         第 i 个点的纵坐标
+     * @param maxPoints 最多保留的点数，小于3或不小于原始点数时返回全部下标
+     * @return 升序排列的保留点下标
+     */
+    public static int[] lttb(int size, IntToDoubleFunction x, IntToDoubleFunction y, int maxPoints) {
+        if (maxPoints < 3 || maxPoints >= size) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] sampled = new int[maxPoints];
+        int sampledCount = 0;
+        // 除去首尾两点，每个桶的宽度
+        double every = (double) (size - 2) / (maxPoints - 2);
+        int a = 0;
+        sampled[sampledCount++] = a;
+
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            // 下一个桶的平均点
+            int avgStart = (int) Math.floor((bucket + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((bucket + 2) * every) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = avgStart; i < avgEnd; i++) {
+                avgX += x.applyAsDouble(i);
+                avgY += y.applyAsDouble(i);
+            }
+            int avgLength = avgEnd - avgStart;
+            avgX /= avgLength;
+            avgY /= avgLength;
+
+            // 当前桶中与 a、平均点构成三角形面积最大的点
+            int rangeStart = (int) Math.floor(bucket * every) + 1;
+            int rangeEnd = (int) Math.floor((bucket + 1) * every) + 1;
+            double ax = x.applyAsDouble(a);
+            double ay = y.applyAsDouble(a);
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((ax - avgX) * (y.applyAsDouble(i) - ay)
+                        - (ax - x.applyAsDouble(i)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            sampled[sampledCount++] = next;
+            a = next;
+        }
+
+        sampled[sampledCount] = size - 1;
+        return sampled;
+    }
+}
@@ -0,0 +1,177 @@
+package com.whu.nanyin.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * 单只基金的净值时间序列（列式存储）
+ *
+ * 三列按日期严格升序一一对应：日期（epoch day）、单位净值、累计净值，净值统一放大 10^6 倍存为 long。
+ * 序列由两段拼接而成：
+ * 1. 基础段：已写入列式文件并内存映射的部分，只读、不占用堆内存
+ * 2. 尾部段：文件生成之后增量追加的新数据，保存在堆内数组中，等待下一次合并进文件
+ *
+ * 对象不可变，追加数据时返回新的实例，因此可以被多个线程无锁读取。
+ */
+public final class NavSeries {
+
+    /**
+     * 净值放大倍数对应的小数位数
+     */
+    public static final int SCALE = 6;
+
+    /**
+     * 表示"净值缺失"的占位值
+     */
+    public static final long NULL_VALUE = Long.MIN_VALUE;
+
+    private static final int[] NO_DAYS = new int[0];
+    private static final long[] NO_VALUES = new long[0];
+
+    private final IntBuffer baseDays;
+    private final LongBuffer baseUnit;
+    private final LongBuffer baseAccum;
+    private final int baseSize;
+
+    private final int[] tailDays;
+    private final long[] tailUnit;
+    private final long[] tailAccum;
+
+    private NavSeries(IntBuffer baseDays, LongBuffer baseUnit, LongBuffer baseAccum,
+                      int[] tailDays, long[] tailUnit, long[] tailAccum) {
+        this.baseDays = baseDays;
+        this.baseUnit = baseUnit;
+        this.baseAccum = baseAccum;
+        this.baseSize = baseDays == null ? 0 : baseDays.limit();
+        this.tailDays = tailDays;
+        this.tailUnit = tailUnit;
+        this.tailAccum = tailAccum;
+    }
+
+    /**
+     * 以内存映射文件中的一段列数据创建序列
+     */
+    public static NavSeries ofBase(IntBuffer days, LongBuffer unit, LongBuffer accum) {
+        return new NavSeries(days, unit, accum, NO_DAYS, NO_VALUES, NO_VALUES);
+    }
+
+    /**
+     * 以堆内数组创建序列，数组由调用方保证按日期严格升序且之后不再修改
+     */
+    public static NavSeries ofArrays(int[] days, long[] unit, long[] accum) {
+        return new NavSeries(null, null, null, days, unit, accum);
+    }
+
+    public int size() {
+        return baseSize + tailDays.length;
+    }
+
+    /**
+     * 尚未合并进文件的点数
+     */
+    public int tailSize() {
+        return tailDays.length;
+    }
+
+    public int day(int i) {
+        return i < baseSize ? baseDays.get(i) : tailDays[i - baseSize];
+    }
+
+    public long unitNav(int i) {
+        return i < baseSize ? baseUnit.get(i) : tailUnit[i - baseSize];
+    }
+
+    public long accumNav(int i) {
+        return i < baseSize ? baseAccum.get(i) : tailAccum[i - baseSize];
+    }
+
+    /**
+     * 最后一个点的日期，序列为空时返回 Integer.MIN_VALUE
+     */
+    public int lastDay() {
+        int size = size();
+        return size == 0 ? Integer.MIN_VALUE : day(size - 1);
+    }
+
+    /**
+     * 第一个日期不早于 epochDay 的下标，不存在时返回 size()
+     */
+    public int lowerBound(int epochDay) {
+        int lo = 0, hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (day(mid) < epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 第一个日期晚于 epochDay 的下标，不存在时返回 size()
+     */
+    public int upperBound(int epochDay) {
+        int lo = 0, hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (day(mid) <= epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 精确查找某一天的下标，不存在时返回 -1
+     */
+    public int indexOf(int epochDay) {
+        int i = lowerBound(epochDay);
+        return i < size() && day(i) == epochDay ? i : -1;
+    }
+
+    /**
+     * 在尾部追加若干个点，返回新的序列。
+     * 追加的日期必须严格升序，且晚于当前最后一个点。
+     */
+    public NavSeries append(int[] days, long[] unit, long[] accum, int count) {
+        if (count == 0) {
+            return this;
+        }
+        if (days[0] <= lastDay()) {
+            throw new IllegalArgumentException("追加的净值日期必须晚于序列中已有的最后一个日期");
+        }
+        int oldTail = tailDays.length;
+        int[] newDays = Arrays.copyOf(tailDays, oldTail + count);
+        long[] newUnit = Arrays.copyOf(tailUnit, oldTail + count);
+        long[] newAccum = Arrays.copyOf(tailAccum, oldTail + count);
+        System.arraycopy(days, 0, newDays, oldTail, count);
+        System.arraycopy(unit, 0, newUnit, oldTail, count);
+        System.arraycopy(accum, 0, newAccum, oldTail, count);
+        return new NavSeries(baseDays, baseUnit, baseAccum, newDays, newUnit, newAccum);
+    }
+
+    /**
+     * 将 BigDecimal 净值转换为放大后的 long，null 转换为 NULL_VALUE
+     */
+    public static long scale(BigDecimal value) {
+        return value == null ? NULL_VALUE : value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 将放大后的 long 还原为 BigDecimal，至少保留4位小数，与数据库中的净值精度保持一致
+     */
+    public static BigDecimal unscale(long value) {
+        if (value == NULL_VALUE) {
+            return null;
+        }
+        BigDecimal decimal = BigDecimal.valueOf(value, SCALE).stripTrailingZeros();
+        return decimal.scale() < 4 ? decimal.setScale(4) : decimal;
+    }
+}
@@ -0,0 +1,298 @@
+package com.whu.nanyin.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 净值列式文件的读写工具
+ *
+ * 每一"代"数据是一个目录 gen-&lt;时间戳&gt;，包含四个文件：
+ * - days.bin  ：所有基金的日期列（int，epoch day），按基金分段连续存放
+ * - unit.bin  ：单位净值列（long，放大 10^6 倍）
+ * - accum.bin ：累计净值列（long，放大 10^6 倍）
+ * - index.bin ：文件头（魔数、版本、已包含的最大 seq、基金数、总点数）+ 每只基金的（代码, 起始下标, 点数）
+ *
+ * 新的一代先写入 .tmp 目录，全部写完后再原子重命名，因此目录存在即代表数据完整。
+ * 读取时三个列文件整体内存映射，每只基金得到的是映射缓冲区上的只读切片。
+ */
+public final class NavSeriesFile {
+
+    private static final int MAGIC = 0x4E415653; // "NAVS"
+    private static final int VERSION = 1;
+    private static final String GENERATION_PREFIX = "gen-";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private NavSeriesFile() {
+    }
+
+    /**
+     * 一代已加载的数据
+     */
+    public static final class Generation {
+        private final Path dir;
+        private final long maxSeq;
+        private final Map<String, NavSeries> series;
+
+        private Generation(Path dir, long maxSeq, Map<String, NavSeries> series) {
+            this.dir = dir;
+            this.maxSeq = maxSeq;
+            this.series = series;
+        }
+
+        public Path getDir() {
+            return dir;
+        }
+
+        /**
+         * 这一代数据包含的 fund_net_value 最大 seq
+         */
+        public long getMaxSeq() {
+            return maxSeq;
+        }
+
+        public Map<String, NavSeries> getSeries() {
+            return series;
+        }
+    }
+
+    /**
+     * 顺序写入一代新数据。调用方必须按基金代码分组、组内按日期升序调用 add。
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path root;
+        private final Path tmpDir;
+        private final DataOutputStream days;
+        private final DataOutputStream unit;
+        private final DataOutputStream accum;
+        private final List<String> codes = new ArrayList<>();
+        private final List<long[]> ranges = new ArrayList<>();
+        private String currentCode;
+        private long currentStart;
+        private int lastDay;
+        private long total;
+        private boolean finished;
+
+        private Writer(Path root) throws IOException {
+            this.root = root;
+            Files.createDirectories(root);
+            this.tmpDir = root.resolve(GENERATION_PREFIX + System.currentTimeMillis() + TMP_SUFFIX);
+            Files.createDirectories(tmpDir);
+            this.days = open(tmpDir.resolve("days.bin"));
+            this.unit = open(tmpDir.resolve("unit.bin"));
+            this.accum = open(tmpDir.resolve("accum.bin"));
+        }
+
+        private static DataOutputStream open(Path file) throws IOException {
+            OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW);
+            return new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        }
+
+        /**
+         * 追加一个点。同一基金内日期不递增的点（重复数据）会被忽略。
+         */
+        public void add(String fundCode, int epochDay, long unitNav, long accumNav) throws IOException {
+            if (!fundCode.equals(currentCode)) {
+                closeCurrent();
+                currentCode = fundCode;
+                currentStart = total;
+            } else if (epochDay <= lastDay) {
+                return;
+            }
+            days.writeInt(epochDay);
+            unit.writeLong(unitNav);
+            accum.writeLong(accumNav);
+            lastDay = epochDay;
+            total++;
+        }
+
+        /**
+         * 写入一只基金的整条序列
+         */
+        public void addAll(String fundCode, NavSeries series) throws IOException {
+            for (int i = 0; i < series.size(); i++) {
+                add(fundCode, series.day(i), series.unitNav(i), series.accumNav(i));
+            }
+        }
+
+        private void closeCurrent() {
+            if (currentCode != null && total > currentStart) {
+                codes.add(currentCode);
+                ranges.add(new long[]{currentStart, total - currentStart});
+            }
+            currentCode = null;
+        }
+
+        /**
+         * 写入索引并原子发布这一代数据
+         * @param maxSeq 这一代数据包含的最大 seq
+         * @return 发布后的目录
+         */
+        public Path finish(long maxSeq) throws IOException {
+            closeCurrent();
+            days.close();
+            unit.close();
+            accum.close();
+            try (DataOutputStream index = open(tmpDir.resolve("index.bin"))) {
+                index.writeInt(MAGIC);
+                index.writeInt(VERSION);
+                index.writeLong(maxSeq);
+                index.writeInt(codes.size());
+                index.writeLong(total);
+                for (int i = 0; i < codes.size(); i++) {
+                    index.writeUTF(codes.get(i));
+                    index.writeLong(ranges.get(i)[0]);
+                    index.writeInt((int) ranges.get(i)[1]);
+                }
+            }
+            String name = tmpDir.getFileName().toString();
+            Path target = root.resolve(name.substring(0, name.length() - TMP_SUFFIX.length()));
+            Files.move(tmpDir, target, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return target;
+        }
+
+        /**
+         * 未调用 finish 就关闭时（例如中途出错），清理临时目录
+         */
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            days.close();
+            unit.close();
+            accum.close();
+            deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * 在指定根目录下开始写一代新数据
+     */
+    public static Writer newWriter(Path root) throws IOException {
+        return new Writer(root);
+    }
+
+    /**
+     * 找到根目录下最新的一代完整数据
+     * @return 最新一代的目录，不存在时返回null
+     */
+    public static Path findLatestGeneration(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+        try (Stream<Path> children = Files.list(root)) {
+            return children
+                .filter(p -> p.getFileName().toString().startsWith(GENERATION_PREFIX))
+                .filter(p -> !p.getFileName().toString().endsWith(TMP_SUFFIX))
+                .filter(Files::isDirectory)
+                .max(Comparator.comparing(p -> p.getFileName().toString()))
+                .orElse(null);
+        }
+    }
+
+    /**
+     * 加载一代数据：读取索引并内存映射三个列文件
+     */
+    public static Generation load(Path dir) throws IOException {
+        long maxSeq;
+        long total;
+        List<String> codes;
+        long[] starts;
+        int[] counts;
+        try (InputStream in = Files.newInputStream(dir.resolve("index.bin"));
+             DataInputStream index = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+            if (index.readInt() != MAGIC || index.readInt() != VERSION) {
+                throw new IOException("无法识别的净值列式文件：" + dir);
+            }
+            maxSeq = index.readLong();
+            int fundCount = index.readInt();
+            total = index.readLong();
+            codes = new ArrayList<>(fundCount);
+            starts = new long[fundCount];
+            counts = new int[fundCount];
+            for (int i = 0; i < fundCount; i++) {
+                codes.add(index.readUTF());
+                starts[i] = index.readLong();
+                counts[i] = index.readInt();
+            }
+        }
+
+        IntBuffer days = map(dir.resolve("days.bin"), total * Integer.BYTES).asIntBuffer();
+        LongBuffer unit = map(dir.resolve("unit.bin"), total * Long.BYTES).asLongBuffer();
+        LongBuffer accum = map(dir.resolve("accum.bin"), total * Long.BYTES).asLongBuffer();
+
+        Map<String, NavSeries> series = new HashMap<>(codes.size() * 2);
+        for (int i = 0; i < codes.size(); i++) {
+            int start = (int) starts[i];
+            series.put(codes.get(i), NavSeries.ofBase(
+                days.slice(start, counts[i]),
+                unit.slice(start, counts[i]),
+                accum.slice(start, counts[i])));
+        }
+        return new Generation(dir, maxSeq, series);
+    }
+
+    private static MappedByteBuffer map(Path file, long expectedBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != expectedBytes) {
+                throw new IOException("净值列式文件长度不符：" + file);
+            }
+            // 映射在通道关闭后依然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedBytes);
+        }
+    }
+
+    /**
+     * 删除除 keep 之外的所有旧代数据和残留的临时目录（尽力而为）
+     */
+    public static void deleteOtherGenerations(Path root, Path keep) {
+        try (Stream<Path> children = Files.list(root)) {
+            children
+                .filter(p -> p.getFileName().toString().startsWith(GENERATION_PREFIX))
+                .filter(p -> !p.equals(keep))
+                .forEach(p -> {
+                    try {
+                        deleteRecursively(p);
+                    } catch (IOException ignored) {
+                        // 旧文件可能仍被映射（如 Windows），下次清理时再删除
+                    }
+                });
+        } catch (IOException ignored) {
+            // 清理失败不影响正常使用
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            paths.sort(Comparator.reverseOrder());
+            for (Path p : paths) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
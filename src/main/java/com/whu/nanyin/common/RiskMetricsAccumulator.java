@@ -0,0 +1,189 @@
+package com.whu.nanyin.common;
+
+/**
+ * 风险指标的单遍流式累加器
+ *
+ * 按日期升序逐个喂入净值点，每个点 O(1) 更新以下状态，无需保留历史序列：
+ * - 日收益率的均值与二阶中心矩（Welford 算法，数值稳定），用于波动率和夏普比率
+ * - 日收益率低于无风险日收益率部分的平方和，用于下行标准差和索提诺比率
+ * - 历史最高净值及其日期、最大回撤及其起止日期
+ *
+ * 累加器本身不是线程安全的。共享时应遵循"复制后追加、追加完再发布"的方式，已发布的实例不再修改。
+ */
+public final class RiskMetricsAccumulator {
+
+    /**
+     * 每年交易日数，用于年化
+     */
+    public static final int TRADING_DAYS_PER_YEAR = 252;
+
+    private double dailyRiskFreeRate;
+
+    /**
+     * 已处理到的最后一个日期（含被跳过的无效点），增量追加从它之后开始
+     */
+    private int processedDay = Integer.MIN_VALUE;
+
+    private int firstDay = Integer.MIN_VALUE;
+    private int lastDay = Integer.MIN_VALUE;
+    private double lastValue = Double.NaN;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double downsideSquares;
+
+    private double peak = Double.NaN;
+    private int peakDay;
+    private double maxDrawdown;
+    private int maxDrawdownPeakDay = Integer.MIN_VALUE;
+    private int maxDrawdownTroughDay = Integer.MIN_VALUE;
+
+    /**
+     * @param annualRiskFreeRate 年化无风险利率（小数，例如 0.015）
+     */
+    public RiskMetricsAccumulator(double annualRiskFreeRate) {
+        this.dailyRiskFreeRate = annualRiskFreeRate / TRADING_DAYS_PER_YEAR;
+    }
+
+    /**
+     * 复制一份当前状态，用于在不修改已发布实例的前提下继续追加
+     */
+    public RiskMetricsAccumulator copy() {
+        RiskMetricsAccumulator copy = new RiskMetricsAccumulator(0);
+        copy.dailyRiskFreeRate = dailyRiskFreeRate;
+        copy.processedDay = processedDay;
+        copy.firstDay = firstDay;
+        copy.lastDay = lastDay;
+        copy.lastValue = lastValue;
+        copy.count = count;
+        copy.mean = mean;
+        copy.m2 = m2;
+        copy.downsideSquares = downsideSquares;
+        copy.peak = peak;
+        copy.peakDay = peakDay;
+        copy.maxDrawdown = maxDrawdown;
+        copy.maxDrawdownPeakDay = maxDrawdownPeakDay;
+        copy.maxDrawdownTroughDay = maxDrawdownTroughDay;
+        return copy;
+    }
+
+    /**
+     * 追加一个净值点。日期不晚于已处理日期的点被忽略，非正数或 NaN 的净值只推进已处理日期。
+     * @param epochDay 日期（epoch day）
+     * @param nav 净值
+     */
+    public void add(int epochDay, double nav) {
+        if (epochDay <= processedDay) {
+            return;
+        }
+        processedDay = epochDay;
+        if (!(nav > 0)) {
+            return;
+        }
+
+        if (count == 0 && Double.isNaN(lastValue)) {
+            firstDay = epochDay;
+        } else {
+            double r = nav / lastValue - 1;
+            count++;
+            double delta = r - mean;
+            mean += delta / count;
+            m2 += delta * (r - mean);
+            double excess = r - dailyRiskFreeRate;
+            if (excess < 0) {
+                downsideSquares += excess * excess;
+            }
+        }
+        lastDay = epochDay;
+        lastValue = nav;
+
+        if (Double.isNaN(peak) || nav > peak) {
+            peak = nav;
+            peakDay = epochDay;
+        } else {
+            double drawdown = nav / peak - 1;
+            if (drawdown < maxDrawdown) {
+                maxDrawdown = drawdown;
+                maxDrawdownPeakDay = peakDay;
+                maxDrawdownTroughDay = epochDay;
+            }
+        }
+    }
+
+    public int processedDay() {
+        return processedDay;
+    }
+
+    /**
+     * 第一个有效净值的日期，没有有效净值时为 Integer.MIN_VALUE
+     */
+    public int firstDay() {
+        return firstDay;
+    }
+
+    /**
+     * 最后一个有效净值的日期，没有有效净值时为 Integer.MIN_VALUE
+     */
+    public int lastDay() {
+        return lastDay;
+    }
+
+    /**
+     * 日收益率样本数
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * 年化波动率（小数），样本不足2个时为 NaN
+     */
+    public double annualizedVolatility() {
+        return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1) * TRADING_DAYS_PER_YEAR);
+    }
+
+    /**
+     * 年化下行标准差（小数，以无风险日收益率为目标收益），没有样本时为 NaN
+     */
+    public double downsideDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(downsideSquares / count * TRADING_DAYS_PER_YEAR);
+    }
+
+    /**
+     * 年化夏普比率，波动率为0或样本不足时为 NaN
+     */
+    public double sharpeRatio() {
+        double volatility = annualizedVolatility();
+        return volatility > 0 ? (mean - dailyRiskFreeRate) * TRADING_DAYS_PER_YEAR / volatility : Double.NaN;
+    }
+
+    /**
+     * 年化索提诺比率，下行标准差为0或没有样本时为 NaN
+     */
+    public double sortinoRatio() {
+        double downside = downsideDeviation();
+        return downside > 0 ? (mean - dailyRiskFreeRate) * TRADING_DAYS_PER_YEAR / downside : Double.NaN;
+    }
+
+    /**
+     * 最大回撤（小于等于0的小数）
+     */
+    public double maxDrawdown() {
+        return maxDrawdown;
+    }
+
+    /**
+     * 最大回撤开始时的净值高点日期，没有回撤时为 Integer.MIN_VALUE
+     */
+    public int maxDrawdownPeakDay() {
+        return maxDrawdownPeakDay;
+    }
+
+    /**
+     * 最大回撤的净值低点日期，没有回撤时为 Integer.MIN_VALUE
+     */
+    public int maxDrawdownTroughDay() {
+        return maxDrawdownTroughDay;
+    }
+}
@@ -0,0 +1,245 @@
+package com.whu.nanyin.common;
+
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.extern.slf4j.Slf4j;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 交易组提交器
+ *
+ * 高峰期每笔交易单独提交一次事务，吞吐受限于 MySQL 的提交（刷盘）延迟而不是 CPU。
+ * 开启组提交后，并发请求的交易逻辑按用户ID分到 flush-threads 个分片，每个分片由一个刷写线程执行：
+ * 1. 取到第一笔后再最多等待 max-delay-ms，凑满 max-batch-size 笔为一批
+ * 2. 整批在同一个事务中执行，每笔前建立保存点，某一笔失败只回滚到它自己的保存点，不影响同批其他交易
+ * 3. 事务提交成功后才完成各调用方的 future，调用方拿到结果时交易已经落库；提交失败则整批调用方都收到异常
+ *
+ * 同一用户的交易总在同一分片上顺序执行；不同分片的刷写线程并行，用户之间不会因为共用一个刷写线程而串行，
+ * 每个分片的批次也更小，行锁随批次提交释放得更早。分片之间偶发的死锁由数据库回滚其中一批，该批调用方收到异常。
+ *
+ * 交易逻辑内部的 @Transactional 方法会加入这个组提交事务；它们失败时会把连接标记为只回滚，
+ * 回滚到保存点时会一并清除该标记。
+ *
+ * 刷写线程退出或 shutdown() 之后，submit 直接失败，已入队未执行的交易同样以失败结束，调用方不会无限等待。
+ */
+@Slf4j
+@Component
+public class TradeGroupCommitter {
+
+    @Value("${nanyin.group-commit.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 刷写线程（分片）数，同一用户的交易总落在同一分片
+     */
+    @Value("${nanyin.group-commit.flush-threads:8}")
+    private int flushThreads;
+
+    /**
+     * 每批最多合并的交易笔数
+     */
+    @Value("${nanyin.group-commit.max-batch-size:64}")
+    private int maxBatchSize;
+
+    /**
+     * 取到第一笔后等待凑批的最长时间
+     */
+    @Value("${nanyin.group-commit.max-delay-ms:2}")
+    private long maxDelayMs;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private final ThreadLocal<Boolean> flushing = new ThreadLocal<>();
+
+    private List<Shard> shards = List.of();
+
+    private ExecutorService flusher;
+
+    private volatile boolean closed;
+
+    /**
+     * 一笔等待组提交的交易
+     */
+    private static final class Pending<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Pending(Supplier<T> work) {
+            this.work = work;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object result) {
+            future.complete((T) result);
+        }
+    }
+
+    /**
+     * 一个刷写分片：独立的队列与刷写线程
+     */
+    private static final class Shard {
+        private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+        private volatile boolean stopped;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        List<Shard> created = new ArrayList<>(flushThreads);
+        for (int i = 0; i < flushThreads; i++) {
+            created.add(new Shard());
+        }
+        shards = created;
+        flusher = Executors.newFixedThreadPool(flushThreads,
+            new ThreadFactoryBuilder().setNameFormat("trade-group-commit-%d").setDaemon(true).build());
+        shards.forEach(shard -> flusher.execute(() -> runFlushLoop(shard)));
+        log.info("[GroupCommit] Enabled, flushThreads={}, maxBatchSize={}, maxDelayMs={}", flushThreads, maxBatchSize, maxDelayMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        shards.forEach(TradeGroupCommitter::failRemaining);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 当前线程是否为刷写线程（即正处于组提交事务内）
+     */
+    public boolean isFlushThread() {
+        return Boolean.TRUE.equals(flushing.get());
+    }
+
+    /**
+     * 提交一笔交易并等待它所在的批次提交完成
+     *
+     * @param userId 用户ID，决定交易所在的分片
+     * @param work   交易逻辑，在刷写线程上、组提交事务内执行
+     * @return 交易逻辑的返回值（此时已落库）
+     * @throws IllegalStateException 组提交已停止（刷写线程退出或正在关闭）时抛出，交易未执行
+     */
+    public <T> T submit(Long userId, Supplier<T> work) {
+        Shard shard = shards.isEmpty() ? null : shards.get(Math.floorMod(userId.hashCode(), shards.size()));
+        if (closed || shard == null || shard.stopped) {
+            throw stopped();
+        }
+        Pending<T> pending = new Pending<>(work);
+        shard.queue.add(pending);
+        // 入队与刷写线程退出并发：仍在队列中说明不会再被执行，撤回后直接失败
+        if ((closed || shard.stopped) && shard.queue.remove(pending)) {
+            throw stopped();
+        }
+        try {
+            // 交易一旦入队就可能被提交，不能因为调用线程被中断而提前返回失败
+            return Uninterruptibles.getUninterruptibly(pending.future);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void runFlushLoop(Shard shard) {
+        flushing.set(Boolean.TRUE);
+        List<Pending<?>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(shard.queue.take());
+                    Queues.drain(shard.queue, batch, maxBatchSize - 1, maxDelayMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (RuntimeException | Error e) {
+            log.error("[GroupCommit] Flush loop exited unexpectedly: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            // 先标记停止再清空队列：此后入队的调用方会看到标记并自行撤回
+            shard.stopped = true;
+            batch.forEach(p -> p.future.completeExceptionally(stopped()));
+            failRemaining(shard);
+            flushing.remove();
+        }
+    }
+
+    private static void failRemaining(Shard shard) {
+        List<Pending<?>> remaining = new ArrayList<>();
+        shard.queue.drainTo(remaining);
+        remaining.forEach(p -> p.future.completeExceptionally(stopped()));
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("系统正在停止，交易未执行。");
+    }
+
+    private void flush(List<Pending<?>> batch) {
+        Object[] results = new Object[batch.size()];
+        RuntimeException[] failures = new RuntimeException[batch.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    Object savepoint = status.createSavepoint();
+                    try {
+                        results[i] = batch.get(i).work.get();
+                        status.releaseSavepoint(savepoint);
+                    } catch (RuntimeException e) {
+                        status.rollbackToSavepoint(savepoint);
+                        // 回滚到保存点后，会话一级缓存里可能留有失败交易读到的数据
+                        sqlSessionTemplate.clearCache();
+                        failures[i] = e;
+                    }
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            log.warn("[GroupCommit] Batch of {} failed to commit: {}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.future.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null) {
+                batch.get(i).future.completeExceptionally(failures[i]);
+            } else {
+                batch.get(i).complete(results[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.whu.nanyin.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * 交易执行入口：先按用户排队，再在数据库事务中执行交易逻辑
+ *
+ * - 组提交关闭时：每笔交易单独开启一个事务（TransactionTemplate）
+ * - 组提交开启时：交给 TradeGroupCommitter，与同一分片上其他用户的交易合并在同一个事务中提交
+ * - 已处于交易事务中时（外层已排队，例如幂等服务包裹的交易）：直接加入当前事务执行
+ *
+ * 在刷写线程上嵌套调用时不再排队：发起请求的线程仍持有该用户的锁分段，刷写线程再去获取会互相等待。
+ */
+@Component
+public class TradeTransactionRunner {
+
+    @Autowired
+    private UserTradeSequencer userTradeSequencer;
+
+    @Autowired
+    private TradeGroupCommitter tradeGroupCommitter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 以用户为单位串行、在事务中执行一笔交易
+     *
+     * @param userId 用户ID
+     * @param work   交易逻辑
+     * @return 交易逻辑的返回值，返回时事务已提交（加入外层事务时除外）
+     */
+    public <T> T execute(Long userId, Supplier<T> work) {
+        if (tradeGroupCommitter.isFlushThread()) {
+            return work.get();
+        }
+        return userTradeSequencer.execute(userId, () -> {
+            if (tradeGroupCommitter.isEnabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                return tradeGroupCommitter.submit(userId, work);
+            }
+            return transactionTemplate.execute(status -> work.get());
+        });
+    }
+}
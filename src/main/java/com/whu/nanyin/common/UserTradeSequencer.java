@@ -0,0 +1,109 @@
+package com.whu.nanyin.common;
+
+import com.google.common.util.concurrent.Striped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * 按用户串行化交易的进程内排队器
+ *
+ * 同一用户的申购、赎回会竞争 users 与 user_holdings 的同一批行锁，调仓高峰时大量请求在 MySQL 内部排队等锁，
+ * 持有连接和事务的同时拉长了尾部延迟。这里按用户ID把交易映射到固定数量的锁分段（Guava Striped）上：
+ * - 同一用户的交易在内存中排队，进入数据库时不再互相等待行锁
+ * - 不同用户落在不同分段上时完全并行；分段数远大于并发数时，不同用户共用分段的概率很低
+ *
+ * 锁必须在数据库事务【之外】获取：先排队、再开启事务，排队期间不占用连接。
+ * 批量任务需要在一个事务中处理多个用户时使用 executeAll，一次按分段顺序获取全部分段，多个批量任务之间不会死锁。
+ * 仅对单实例部署有效，多实例部署时数据库层的条件更新仍是最终的正确性保证。
+ */
+@Slf4j
+@Component
+public class UserTradeSequencer {
+
+    /**
+     * 锁分段数（Striped 会向上取整到2的幂）
+     */
+    @Value("${nanyin.trade-sequencer.stripes:1024}")
+    private int stripeCount;
+
+    /**
+     * 排队等待的最长时间，超时后放弃本次交易，避免请求线程无限堆积
+     */
+    @Value("${nanyin.trade-sequencer.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+
+    private Striped<Lock> stripes;
+
+    @PostConstruct
+    public void init() {
+        stripes = Striped.lock(stripeCount);
+    }
+
+    /**
+     * 在指定用户的锁分段内执行交易
+     *
+     * @param userId 用户ID
+     * @param action 交易逻辑（通常自行开启数据库事务）
+     * @return action 的返回值
+     * @throws IllegalStateException 排队超时或等待被中断时抛出
+     */
+    public <T> T execute(Long userId, Supplier<T> action) {
+        Lock lock = stripes.get(userId);
+        try {
+            if (!lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("[TradeSequencer] Lock wait timed out, userId={}, timeoutMs={}", userId, lockTimeoutMs);
+                throw new IllegalStateException("交易繁忙，请稍后重试。");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("交易被中断，请稍后重试。");
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在多个用户的锁分段内执行交易（用于一个事务处理多个用户的批量任务）
+     *
+     * 分段按 Striped.bulkGet 的固定顺序获取，任意两个批量任务的加锁顺序一致；等待总时长不超过单个用户的排队超时，
+     * 超时时释放已获取的分段再抛出，不会占着部分分段等待。
+     *
+     * @param userIds 用户ID
+     * @param action  交易逻辑（通常自行开启数据库事务）
+     * @return action 的返回值
+     * @throws IllegalStateException 排队超时或等待被中断时抛出
+     */
+    public <T> T executeAll(Collection<Long> userIds, Supplier<T> action) {
+        List<Lock> acquired = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockTimeoutMs);
+        try {
+            for (Lock lock : stripes.bulkGet(userIds)) {
+                if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.warn("[TradeSequencer] Bulk lock wait timed out, users={}, timeoutMs={}", userIds.size(), lockTimeoutMs);
+                    throw new IllegalStateException("交易繁忙，请稍后重试。");
+                }
+                acquired.add(lock);
+            }
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("交易被中断，请稍后重试。");
+        } finally {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                acquired.get(i).unlock();
+            }
+        }
+    }
+}
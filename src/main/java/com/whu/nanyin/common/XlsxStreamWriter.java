@@ -0,0 +1,197 @@
+package com.whu.nanyin.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式 XLSX 写出工具
+ *
+ * XLSX 是一个 zip 包，工作表是其中的 XML 文件。这里按行把单元格直接写进 zip 条目，
+ * 不在内存中保留任何行，内存占用与行数无关：
+ * - 字符串使用内联字符串（inlineStr），不需要共享字符串表
+ * - 数字写为数值单元格，其余值按 toString() 写为字符串（以 = + - @ 开头时加单引号，见 Csv.neutralizeFormula）
+ * - 单个工作表达到 Excel 的行数上限时自动续写到下一个工作表（每个工作表都重复表头）
+ * 工作簿、关系与内容类型文件在 close() 时写出，此时工作表数量已确定。
+ */
+public final class XlsxStreamWriter implements Closeable {
+
+    /**
+     * Excel 单个工作表的最大行数（含表头）
+     */
+    private static final int MAX_ROWS_PER_SHEET = 1_048_576;
+
+    private final ZipOutputStream zip;
+
+    private final Writer writer;
+
+    private final String sheetName;
+
+    private final List<String> header;
+
+    private int sheetCount;
+
+    private int rowsInSheet;
+
+    /**
+     * @param out 输出流（通常是 HTTP 响应体），close() 时结束 zip 但不关闭 out
+     * @param sheetName 工作表名称，续写的工作表依次追加序号
+     * @param header 表头
+     */
+    public XlsxStreamWriter(OutputStream out, String sheetName, List<String> header) {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        this.sheetName = sheetName;
+        this.header = header;
+    }
+
+    /**
+     * 写出一行
+     * @param cells 各单元格的值，null 输出为空单元格
+     * @throws IOException 写出失败时抛出
+     */
+    public void writeRow(List<?> cells) throws IOException {
+        if (sheetCount == 0 || rowsInSheet == MAX_ROWS_PER_SHEET) {
+            startSheet();
+        }
+        appendRow(cells);
+    }
+
+    /**
+     * 把已写出的数据推送到底层输出流
+     * @throws IOException 写出失败时抛出
+     */
+    public void flush() throws IOException {
+        writer.flush();
+        zip.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (sheetCount == 0) {
+            startSheet();
+        }
+        endSheet();
+
+        StringBuilder sheets = new StringBuilder();
+        StringBuilder relationships = new StringBuilder();
+        StringBuilder overrides = new StringBuilder();
+        for (int i = 1; i <= sheetCount; i++) {
+            String name = i == 1 ? sheetName : sheetName + i;
+            sheets.append("<sheet name=\"").append(escape(name)).append("\" sheetId=\"").append(i)
+                .append("\" r:id=\"rId").append(i).append("\"/>");
+            relationships.append("<Relationship Id=\"rId").append(i)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\"")
+                .append(" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+            overrides.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        writeEntry("xl/workbook.xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                + "<sheets>" + sheets + "</sheets></workbook>");
+        writeEntry("xl/_rels/workbook.xml.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + relationships + "</Relationships>");
+        writeEntry("_rels/.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\""
+                + " Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\""
+                + " Target=\"xl/workbook.xml\"/></Relationships>");
+        writeEntry("[Content_Types].xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\""
+                + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + overrides + "</Types>");
+        zip.finish();
+        zip.flush();
+    }
+
+    private void startSheet() throws IOException {
+        if (sheetCount > 0) {
+            endSheet();
+        }
+        sheetCount++;
+        rowsInSheet = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+        appendRow(header);
+    }
+
+    private void endSheet() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private void appendRow(List<?> cells) throws IOException {
+        rowsInSheet++;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(rowsInSheet));
+        writer.write("\">");
+        for (Object cell : cells) {
+            if (cell == null) {
+                writer.write("<c/>");
+            } else if (cell instanceof Number) {
+                writer.write("<c><v>");
+                writer.write(cell instanceof BigDecimal ? ((BigDecimal) cell).toPlainString() : cell.toString());
+                writer.write("</v></c>");
+            } else {
+                writer.write("<c t=\"inlineStr\"><is><t>");
+                writer.write(escape(Csv.neutralizeFormula(cell.toString())));
+                writer.write("</t></is></c>");
+            }
+        }
+        writer.write("</row>");
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    /**
+     * XML 转义，并去掉 XML 1.0 不允许出现的控制字符
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
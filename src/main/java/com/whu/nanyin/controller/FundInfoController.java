@@ -3,14 +3,22 @@ package com.whu.nanyin.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.whu.nanyin.pojo.entity.FundBasicInfo;
 import com.whu.nanyin.pojo.vo.ApiResponseVO;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+import com.whu.nanyin.pojo.vo.FundComparisonVO;
 import com.whu.nanyin.pojo.vo.FundDetailVO;
 import com.whu.nanyin.pojo.vo.FundNetValueTrendVO;
+import com.whu.nanyin.service.FundComparisonService;
 import com.whu.nanyin.service.FundInfoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +40,17 @@ public class FundInfoController {
     @Autowired
     private FundInfoService fundInfoService;
 
+    /**
+     * 多基金对比服务
+     */
+    @Autowired
+    private FundComparisonService fundComparisonService;
+
+    /**
+     * 单次对比最多允许的基金数
+     */
+    private static final int MAX_COMPARE_FUNDS = 50;
+
 
     /**
      * 分页并按条件搜索基金信息列表
@@ -77,24 +96,69 @@ public class FundInfoController {
         return ResponseEntity.ok(ApiResponseVO.success("基金搜索成功", page));
     }
 
+    /**
+     * 以游标（Keyset）分页方式搜索基金信息列表
+     *
+     * 与上面的分页接口共用同一个URL，只要请求中带有cursor参数（第一页传空字符串即可）就进入游标模式：
+     * 1. 服务端以上一页最后一只基金的代码为起点向后定位，不使用OFFSET，翻到多深代价都一样
+     * 2. 不执行COUNT(*)，只有withTotal=true时才返回一个估算的总数
+     *
+     * 前端的无限滚动列表只需把响应中的nextCursor原样带到下一次请求，hasMore为false时停止加载
+     *
+     * @param cursor 上一页返回的nextCursor，第一页传空字符串
+     * @param pageSize 每页显示条数，默认为10，最大100
+     * @param fundName 基金名称或搜索关键词（可选，支持模糊查询）
+     * @param fundType 基金类型（可选，精确匹配）
+     * @param withTotal 是否返回估算的总记录数，默认不返回
+     * @return 包含游标分页结果的响应对象
+     */
+    @Operation(summary = "按游标分页搜索基金信息列表（适用于深度翻页与无限滚动）")
+    @GetMapping(value = "/search", params = "cursor")
+    public ResponseEntity<ApiResponseVO<CursorPageVO<FundBasicInfo>>> searchFundsByCursor(
+            @RequestParam String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int pageSize,
+            @RequestParam(required = false) String fundName,
+            @RequestParam(required = false) String fundType,
+            @RequestParam(defaultValue = "false") boolean withTotal
+    ) {
+        if (pageSize <= 0 || pageSize > 100) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("每页条数必须在1-100之间"));
+        }
+        CursorPageVO<FundBasicInfo> result = fundInfoService.getFundBasicInfoCursorPage(cursor, pageSize, fundName, fundType, withTotal);
+        return ResponseEntity.ok(ApiResponseVO.success("基金搜索成功", result));
+    }
+
     /**
  * 获取基金详情
  * 
  * 该接口是基金详情页的核心接口，提供基金的完整详细信息，包括：
  * 1. 基金基本信息（代码、名称、类型等）
  * 2. 基金最新业绩表现与排名数据（最新净值、日增长率、各期收益率、同类排名等）
- * 3. 基金历史净值走势数据（过去一年的净值数据）
+ * 3. 基金历史净值走势数据（默认为过去一年，可通过参数指定区间或不返回）
  * 
  * 前端基金详情页通过调用此接口获取所有需要展示的数据，包括基金概览、业绩走势图表等
  * 
  * @param fundCode 基金代码，路径变量，用于唯一标识要查询的基金
+ * @param historyStart 净值历史开始日期（可选，yyyy-MM-dd，默认一年前）
+ * @param historyEnd 净值历史结束日期（可选，yyyy-MM-dd，默认截至最新）
+ * @param withHistory 是否返回净值历史，默认返回
  * @return 包含完整基金详情数据的响应对象
  */
 @Operation(summary = "根据基金代码查询基金详细信息")
 @GetMapping("/detail/{fundCode}")
 // 明确指定泛型为 FundDetailVO
-public ResponseEntity<ApiResponseVO<FundDetailVO>> getFundDetail(@PathVariable String fundCode) {
-    FundDetailVO fundDetail = fundInfoService.getFundDetail(fundCode);
+public ResponseEntity<ApiResponseVO<FundDetailVO>> getFundDetail(
+        @PathVariable String fundCode,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate historyStart,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate historyEnd,
+        @RequestParam(defaultValue = "true") boolean withHistory) {
+    if (withHistory && historyStart == null) {
+        historyStart = LocalDate.now().minusYears(1);
+    }
+    if (historyStart != null && historyEnd != null && historyStart.isAfter(historyEnd)) {
+        return ResponseEntity.badRequest().body(ApiResponseVO.error("开始日期不能晚于结束日期"));
+    }
+    FundDetailVO fundDetail = fundInfoService.getFundDetail(fundCode, withHistory ? historyStart : null, historyEnd);
     if (fundDetail != null) {
         return ResponseEntity.ok(ApiResponseVO.success("基金详情获取成功", fundDetail));
     } else {
@@ -110,24 +174,86 @@ public ResponseEntity<ApiResponseVO<FundDetailVO>> getFundDetail(@PathVariable S
      * 
      * 前端可以使用此数据绘制净值走势图表，进行基金业绩对比分析等功能
      * 
-     * @param fundCodes 基金代码列表，支持同时查询多个基金的净值数据
+     * @param fundCodes 基金代码列表，支持同时查询多个基金的净值数据（逗号分隔或重复传参）
      * @param startDate 开始日期
      * @param endDate 结束日期
+     * @param maxPoints 每只基金最多返回的点数（可选，至少为3），超过时在服务端做保形降采样
      * @return 包含基金净值走势数据的响应对象，数据按基金代码分组
      */
     @Operation(summary = "获取指定时间范围内的基金净值走势数据")
     @GetMapping("/net-value-trends")
     public ResponseEntity<ApiResponseVO<Map<String, List<FundNetValueTrendVO>>>> getFundNetValueTrends(
-            @RequestParam String fundCodes,
+            @RequestParam List<String> fundCodes,
             @RequestParam String startDate,
-            @RequestParam String endDate
+            @RequestParam String endDate,
+            @RequestParam(required = false) Integer maxPoints
     ) {
-        List<String> fundCodeList = List.of(fundCodes);
+        if (maxPoints != null && maxPoints < 3) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("maxPoints 至少为3"));
+        }
         LocalDateTime startDateTime = LocalDateTime.parse(startDate + "T00:00:00");
         LocalDateTime endDateTime = LocalDateTime.parse(endDate + "T23:59:59");
-        Map<String, List<FundNetValueTrendVO>> trends = fundInfoService.getFundNetValueTrends(fundCodeList, startDateTime, endDateTime);
+        Map<String, List<FundNetValueTrendVO>> trends = fundInfoService.getFundNetValueTrends(fundCodes, startDateTime, endDateTime, maxPoints);
         return ResponseEntity.ok(ApiResponseVO.success("基金净值走势数据获取成功", trends));
     }
 
+    /**
+     * 以 NDJSON 流的形式获取基金净值走势数据
+     * 
+     * 适用于大范围、多基金的对比请求：服务端边读数据库边写响应，不在内存中汇总全部数据。
+     * 响应的每一行是一个 JSON 对象 {"fundCode": "...", "points": [...]}，
+     * 同一只基金的数据可能分成连续的多行，前端按 fundCode 拼接即可。
+     * 
+     * @param fundCodes 基金代码列表（逗号分隔或重复传参）
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param response HTTP 响应，数据直接写入其输出流
+     * @throws IOException 写出响应失败时抛出
+     */
+    @Operation(summary = "以NDJSON流的形式获取基金净值走势数据")
+    @GetMapping(value = "/net-value-trends/stream", produces = "application/x-ndjson")
+    public void streamFundNetValueTrends(
+            @RequestParam List<String> fundCodes,
+            @RequestParam String startDate,
+            @RequestParam String endDate,
+            HttpServletResponse response
+    ) throws IOException {
+        LocalDateTime startDateTime = LocalDateTime.parse(startDate + "T00:00:00");
+        LocalDateTime endDateTime = LocalDateTime.parse(endDate + "T23:59:59");
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        fundInfoService.streamFundNetValueTrends(fundCodes, startDateTime, endDateTime, response.getOutputStream());
+    }
 
-}
\ No newline at end of file
+    /**
+     * 多基金对比
+     * 
+     * 在服务端完成日期对齐、日收益率、相关系数矩阵和区间表现的计算，
+     * 前端不必再下载全部净值走势后自行计算，适合20只以上基金、数年区间的对比。
+     * 
+     * @param fundCodes 基金代码列表（逗号分隔或重复传参），2到50只
+     * @param startDate 开始日期（yyyy-MM-dd）
+     * @param endDate 结束日期（yyyy-MM-dd）
+     * @param includeReturns 是否返回逐日收益率，只需要相关系数和区间表现时可以关闭以减小响应体
+     * @return 对比结果
+     */
+    @Operation(summary = "多基金对比：日期对齐的日收益率、相关系数矩阵与区间表现")
+    @GetMapping("/compare")
+    public ResponseEntity<ApiResponseVO<FundComparisonVO>> compareFunds(
+            @RequestParam List<String> fundCodes,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "true") boolean includeReturns
+    ) {
+        long distinct = fundCodes.stream().distinct().count();
+        if (distinct < 2 || distinct > MAX_COMPARE_FUNDS) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("对比的基金数必须在2到" + MAX_COMPARE_FUNDS + "只之间"));
+        }
+        if (startDate.isAfter(endDate)) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("开始日期不能晚于结束日期"));
+        }
+        FundComparisonVO result = fundComparisonService.compare(fundCodes, startDate, endDate, includeReturns);
+        return ResponseEntity.ok(ApiResponseVO.success("基金对比数据获取成功", result));
+    }
+
+}
@@ -1,25 +1,38 @@
 package com.whu.nanyin.controller;
 
+import com.whu.nanyin.pojo.dto.FundBatchOrderDTO;
 import com.whu.nanyin.pojo.dto.FundPurchaseDTO;
 import com.whu.nanyin.pojo.dto.FundRedeemDTO;
 import com.whu.nanyin.pojo.entity.FundTransaction;
 import com.whu.nanyin.pojo.vo.ApiResponseVO;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
 import com.whu.nanyin.mapper.UserMapper;
 import com.whu.nanyin.pojo.entity.User;
 import com.whu.nanyin.pojo.vo.FundTransactionVO;
 import com.whu.nanyin.security.CustomUserDetails;
 import com.whu.nanyin.service.FundTransactionService;
+import com.whu.nanyin.service.TransactionExportService;
+import com.whu.nanyin.service.TransactionIdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 基金交易控制器
@@ -29,6 +42,7 @@ import java.util.Map;
  * 2. 基金赎回功能
  * 3. 交易记录查询功能
  * 4. 单条交易详情查询功能
+ * 5. 批量交易（组合调仓）功能
  * 
  * 所有接口都需要用户认证，通过JWT token获取当前登录用户信息
  * 使用统一的ApiResponseVO格式返回响应数据
@@ -38,6 +52,11 @@ import java.util.Map;
 @Tag(name = "个人基金交易", description = "提供个人基金交易的申购、赎回与查询接口")
 public class FundTransactionController {
 
+    /**
+     * 幂等键请求头：客户端为每笔交易生成唯一值，超时重试时携带相同的值
+     */
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     /**
      * 基金交易服务层接口
      * 负责处理基金申购、赎回等业务逻辑
@@ -52,6 +71,25 @@ public class FundTransactionController {
     @Autowired
     private UserMapper userMapper;
 
+    /**
+     * 交易幂等服务
+     * 客户端携带 Idempotency-Key 请求头重试时，重放第一次成功执行的交易结果
+     */
+    @Autowired
+    private TransactionIdempotencyService transactionIdempotencyService;
+
+    /**
+     * 交易记录导出服务
+     */
+    @Autowired
+    private TransactionExportService transactionExportService;
+
+    /**
+     * 允许合规导出全部用户交易记录的用户ID（逗号分隔），为空表示不开放
+     */
+    @Value("${nanyin.export.compliance-user-ids:}")
+    private Set<Long> complianceUserIds;
+
     /**
      * 申购基金接口
      * 用户通过此接口申购指定基金，系统会：
@@ -62,12 +100,15 @@ public class FundTransactionController {
      * 5. 返回交易结果和最新账户余额
      * 
      * @param dto 基金申购数据传输对象，包含基金代码、申购金额等信息
+     * @param idempotencyKey 可选的幂等键（Idempotency-Key 请求头），重复请求重放首次的交易结果
      * @param authentication Spring Security认证对象，包含当前登录用户信息
      * @return ResponseEntity包装的ApiResponseVO，成功时返回交易详情，失败时返回错误信息
      */
     @Operation(summary = "申购基金")
     @PostMapping("/purchase")
-    public ResponseEntity<ApiResponseVO<FundTransactionVO>> purchase(@RequestBody @Validated FundPurchaseDTO dto, Authentication authentication) {
+    public ResponseEntity<ApiResponseVO<FundTransactionVO>> purchase(@RequestBody @Validated FundPurchaseDTO dto,
+                                                                     @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                                     Authentication authentication) {
         try {
             // 从认证对象中获取当前登录用户的详细信息
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
@@ -76,23 +117,29 @@ public class FundTransactionController {
             // 设置申购用户ID，确保数据安全性
             dto.setUserId(currentUserId);
             
-            // 调用服务层创建申购交易
-            FundTransaction entity = fundTransactionService.createPurchaseTransaction(dto);
+            // 调用服务层创建申购交易（携带幂等键时，重复请求直接重放首次结果）
+            FundTransactionVO vo = transactionIdempotencyService.execute(currentUserId, idempotencyKey, "申购",
+                    requestSignature(dto.getFundCode(), dto.getTransactionAmount()), () -> {
+                FundTransaction entity = fundTransactionService.createPurchaseTransaction(dto);
 
-            // 将实体对象转换为视图对象
-            FundTransactionVO vo = new FundTransactionVO();
-            BeanUtils.copyProperties(entity, vo);
-            
-            // 确保银行卡号字段被正确复制
-            vo.setBankAccountNumber(entity.getBankAccountNumber());
-            
-            // 查询最新余额，用于回传给前端直接展示
-            User currentUser = userMapper.selectById(currentUserId);
-            if (currentUser != null) {
-                vo.setAvailableBalance(currentUser.getBalance());
-            }
+                // 将实体对象转换为视图对象
+                FundTransactionVO result = new FundTransactionVO();
+                BeanUtils.copyProperties(entity, result);
+
+                // 确保银行卡号字段被正确复制
+                result.setBankAccountNumber(entity.getBankAccountNumber());
+
+                // 查询最新余额，用于回传给前端直接展示
+                User currentUser = userMapper.selectById(currentUserId);
+                if (currentUser != null) {
+                    result.setAvailableBalance(currentUser.getBalance());
+                }
+                return result;
+            });
 
-            return ResponseEntity.ok(ApiResponseVO.success("申购成功", vo));
+            // 待确认模式下订单已受理，成交结果在交易日净值公布后确认
+            String message = "待确认".equals(vo.getStatus()) ? "申购已受理，待净值确认" : "申购成功";
+            return ResponseEntity.ok(ApiResponseVO.success(message, vo));
         } catch (Exception e) {
             // 捕获异常并返回友好的错误信息
             return ResponseEntity.badRequest().body(ApiResponseVO.error("申购失败: " + e.getMessage()));
@@ -111,12 +158,15 @@ public class FundTransactionController {
      * 6. 返回交易结果
      * 
      * @param dto 基金赎回数据传输对象，包含基金代码、赎回份额等信息
+     * @param idempotencyKey 可选的幂等键（Idempotency-Key 请求头），重复请求重放首次的交易结果
      * @param authentication Spring Security认证对象，包含当前登录用户信息
      * @return ResponseEntity包装的ApiResponseVO，成功时返回交易详情，失败时返回错误信息
      */
     @Operation(summary = "赎回基金")
     @PostMapping("/redeem")
-    public ResponseEntity<ApiResponseVO<FundTransactionVO>> redeem(@RequestBody @Validated FundRedeemDTO dto, Authentication authentication) {
+    public ResponseEntity<ApiResponseVO<FundTransactionVO>> redeem(@RequestBody @Validated FundRedeemDTO dto,
+                                                                   @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                                   Authentication authentication) {
         try {
             // 从认证对象中获取当前登录用户的详细信息
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
@@ -125,23 +175,82 @@ public class FundTransactionController {
             // 设置赎回用户ID，确保数据安全性
             dto.setUserId(currentUserId);
             
-            // 调用服务层创建赎回交易
-            FundTransaction entity = fundTransactionService.createRedeemTransaction(dto);
+            // 调用服务层创建赎回交易（携带幂等键时，重复请求直接重放首次结果）
+            FundTransactionVO vo = transactionIdempotencyService.execute(currentUserId, idempotencyKey, "赎回",
+                    requestSignature(dto.getFundCode(), dto.getTransactionShares()), () -> {
+                FundTransaction entity = fundTransactionService.createRedeemTransaction(dto);
 
-            // 将实体对象转换为视图对象
-            FundTransactionVO vo = new FundTransactionVO();
-            BeanUtils.copyProperties(entity, vo);
-            
-            // 确保银行卡号字段被正确复制
-            vo.setBankAccountNumber(entity.getBankAccountNumber());
+                // 将实体对象转换为视图对象
+                FundTransactionVO result = new FundTransactionVO();
+                BeanUtils.copyProperties(entity, result);
+
+                // 确保银行卡号字段被正确复制
+                result.setBankAccountNumber(entity.getBankAccountNumber());
+                return result;
+            });
 
-            return ResponseEntity.ok(ApiResponseVO.success("赎回成功", vo));
+            // 待确认模式下订单已受理，成交结果在交易日净值公布后确认
+            String message = "待确认".equals(vo.getStatus()) ? "赎回已受理，待净值确认" : "赎回成功";
+            return ResponseEntity.ok(ApiResponseVO.success(message, vo));
         } catch (Exception e) {
             // 捕获异常并返回友好的错误信息
             return ResponseEntity.badRequest().body(ApiResponseVO.error("赎回失败: " + e.getMessage()));
         }
     }
 
+    /**
+     * 单笔交易的请求签名：基金代码与金额/份额，数值去掉末尾的 0，使 100 与 100.00 视为同一请求
+     */
+    private static String requestSignature(String fundCode, BigDecimal quantity) {
+        return fundCode + "|" + (quantity == null ? "" : quantity.stripTrailingZeros().toPlainString());
+    }
+
+    /**
+     * 批量交易（组合调仓）接口
+     * 
+     * 一次提交多条申购/赎回交易腿，系统会：
+     * 1. 一次查询全部基金的最新净值
+     * 2. 基于同一份余额与持仓快照校验全部交易腿
+     * 3. 在一个事务中完成持仓、资金与交易记录的批量写入，任一交易腿失败则全部不生效
+     * 4. 返回全部交易记录及最新账户余额
+     * 
+     * @param dto 批量交易请求对象，包含默认银行卡号与交易腿列表
+     * @param authentication Spring Security认证对象，包含当前登录用户信息
+     * @return ResponseEntity包装的ApiResponseVO，成功时返回全部交易详情，失败时返回错误信息
+     */
+    @Operation(summary = "批量交易（组合调仓）")
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponseVO<List<FundTransactionVO>>> batch(@RequestBody @Validated FundBatchOrderDTO dto, Authentication authentication) {
+        try {
+            // 从认证对象中获取当前登录用户的详细信息
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            Long currentUserId = userDetails.getId();
+
+            // 设置交易用户ID，确保数据安全性
+            dto.setUserId(currentUserId);
+
+            // 调用服务层在一个事务中完成全部交易腿
+            List<FundTransaction> entities = fundTransactionService.createBatchTransactions(dto);
+
+            // 查询最新余额，用于回传给前端直接展示
+            User currentUser = userMapper.selectById(currentUserId);
+            List<FundTransactionVO> vos = new ArrayList<>(entities.size());
+            for (FundTransaction entity : entities) {
+                FundTransactionVO vo = new FundTransactionVO();
+                BeanUtils.copyProperties(entity, vo);
+                if (currentUser != null) {
+                    vo.setAvailableBalance(currentUser.getBalance());
+                }
+                vos.add(vo);
+            }
+
+            return ResponseEntity.ok(ApiResponseVO.success("批量交易成功", vos));
+        } catch (Exception e) {
+            // 捕获异常并返回友好的错误信息
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("批量交易失败: " + e.getMessage()));
+        }
+    }
+
     /**
      * 查询当前登录用户的所有交易记录接口
      * 
@@ -167,6 +276,118 @@ public class FundTransactionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 以游标（Keyset）分页方式查询当前登录用户的交易记录接口
+     * 
+     * 与上面的接口共用同一个URL，只要请求中带有cursor参数（第一页传空字符串即可）就进入游标模式：
+     * 1. 按交易时间倒序返回，以上一页最后一条记录的 (交易时间, ID) 为起点向后定位，不使用OFFSET
+     * 2. 支持按日期区间、基金代码、交易类型筛选
+     * 
+     * 前端只需把响应中的nextCursor原样带到下一次请求，hasMore为false时停止加载
+     * 
+     * @param cursor 上一页返回的nextCursor，第一页传空字符串
+     * @param pageSize 每页显示条数，默认为20，最大100
+     * @param startDate 交易日期下限（可选，包含）
+     * @param endDate 交易日期上限（可选，包含）
+     * @param fundCode 基金代码（可选）
+     * @param transactionType 交易类型（可选，申购/赎回）
+     * @param authentication Spring Security认证对象，包含当前登录用户信息
+     * @return 包含游标分页结果的响应对象
+     */
+    @Operation(summary = "按游标分页查询【当前登录用户】的交易记录（支持日期、基金、类型筛选）")
+    @GetMapping(value = "/my-transactions", params = "cursor")
+    public ResponseEntity<ApiResponseVO<CursorPageVO<FundTransactionVO>>> getMyTransactionsByCursor(
+            @RequestParam String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int pageSize,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String fundCode,
+            @RequestParam(required = false) String transactionType,
+            Authentication authentication) {
+        if (pageSize <= 0 || pageSize > 100) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("每页条数必须在1-100之间"));
+        }
+        try {
+            // 从认证对象中获取当前登录用户的详细信息
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            CursorPageVO<FundTransactionVO> result = fundTransactionService.listByUserIdCursorPage(
+                userDetails.getId(), cursor, pageSize, startDate, endDate, fundCode, transactionType);
+            return ResponseEntity.ok(ApiResponseVO.success("交易记录获取成功", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("查询失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 导出当前登录用户的交易记录接口
+     * 
+     * 服务端边读数据库游标边写响应，不在内存中汇总全部记录，交易历史再长内存占用也不变。
+     * 
+     * @param format 导出格式：csv（默认）或 xlsx
+     * @param startDate 交易日期下限（可选，包含）
+     * @param endDate 交易日期上限（可选，包含）
+     * @param authentication Spring Security认证对象，包含当前登录用户信息
+     * @param response HTTP 响应，数据直接写入其输出流
+     * @throws IOException 写出响应失败时抛出
+     */
+    @Operation(summary = "导出【当前登录用户】的交易记录（CSV / XLSX）")
+    @GetMapping("/export")
+    public void exportMyTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        export(userDetails.getId(), "transactions-" + userDetails.getId(), format, startDate, endDate, response);
+    }
+
+    /**
+     * 合规导出全部用户的交易记录接口
+     * 
+     * 只有 nanyin.export.compliance-user-ids 中配置的用户可以调用；按主键顺序流式扫描全表，
+     * 不在应用节点上缓冲结果集。
+     * 
+     * @param format 导出格式：csv（默认）或 xlsx
+     * @param startDate 交易日期下限（可选，包含）
+     * @param endDate 交易日期上限（可选，包含）
+     * @param authentication Spring Security认证对象，包含当前登录用户信息
+     * @param response HTTP 响应，数据直接写入其输出流
+     * @throws IOException 写出响应失败时抛出
+     */
+    @Operation(summary = "合规导出全部用户的交易记录（CSV / XLSX）")
+    @GetMapping("/export/all")
+    public void exportAllTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        if (!complianceUserIds.contains(userDetails.getId())) {
+            throw new AccessDeniedException("无权导出全部交易记录");
+        }
+        export(null, "transactions-all", format, startDate, endDate, response);
+    }
+
+    private void export(Long userId, String fileName, String format, LocalDate startDate, LocalDate endDate,
+                        HttpServletResponse response) throws IOException {
+        TransactionExportService.Format exportFormat;
+        if ("csv".equalsIgnoreCase(format)) {
+            exportFormat = TransactionExportService.Format.CSV;
+            response.setContentType("text/csv;charset=UTF-8");
+        } else if ("xlsx".equalsIgnoreCase(format)) {
+            exportFormat = TransactionExportService.Format.XLSX;
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "不支持的导出格式：" + format);
+            return;
+        }
+        response.setHeader("Content-Disposition",
+            "attachment; filename=\"" + fileName + "." + exportFormat.name().toLowerCase() + "\"");
+        transactionExportService.export(userId, startDate, endDate, exportFormat, response.getOutputStream());
+    }
+
     /**
      * 根据交易ID查询当前用户的单条交易详情接口
      * 
@@ -0,0 +1,97 @@
+package com.whu.nanyin.controller;
+
+import com.whu.nanyin.pojo.dto.InvestmentPlanDTO;
+import com.whu.nanyin.pojo.entity.InvestmentPlan;
+import com.whu.nanyin.pojo.vo.ApiResponseVO;
+import com.whu.nanyin.pojo.vo.PlanRunResultVO;
+import com.whu.nanyin.security.CustomUserDetails;
+import com.whu.nanyin.service.InvestmentPlanService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 定投计划控制器
+ *
+ * 提供定投计划的增删改查接口，以及定投批量执行的进度查询。
+ * 计划的实际扣款由定时任务在扣款日统一执行。
+ */
+@RestController
+@RequestMapping("/api/investment-plan")
+@Tag(name = "定投计划", description = "提供定投计划的管理与执行进度查询接口")
+public class InvestmentPlanController {
+
+    @Autowired
+    private InvestmentPlanService investmentPlanService;
+
+    /**
+     * 允许查询定投批量执行进度的运维用户ID（逗号分隔），为空表示不开放
+     */
+    @Value("${nanyin.investment-plan.operator-user-ids:}")
+    private Set<Long> operatorUserIds;
+
+    @Operation(summary = "查询当前用户的定投计划")
+    @GetMapping
+    public ResponseEntity<ApiResponseVO<List<InvestmentPlan>>> list(Authentication authentication) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            return ResponseEntity.ok(ApiResponseVO.success("查询成功", investmentPlanService.listByUserId(userDetails.getId())));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("查询失败: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "创建定投计划")
+    @PostMapping
+    public ResponseEntity<ApiResponseVO<InvestmentPlan>> create(@RequestBody @Validated InvestmentPlanDTO dto, Authentication authentication) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            return ResponseEntity.ok(ApiResponseVO.success("定投计划创建成功", investmentPlanService.createPlan(userDetails.getId(), dto)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("创建失败: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "修改定投计划（含暂停、恢复）")
+    @PutMapping("/{id}")
+    public ResponseEntity<ApiResponseVO<InvestmentPlan>> update(@PathVariable Long id, @RequestBody @Validated InvestmentPlanDTO dto,
+                                                                Authentication authentication) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            return ResponseEntity.ok(ApiResponseVO.success("定投计划修改成功", investmentPlanService.updatePlan(userDetails.getId(), id, dto)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("修改失败: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "删除定投计划")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ApiResponseVO<Void>> delete(@PathVariable Long id, Authentication authentication) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            investmentPlanService.deletePlan(userDetails.getId(), id);
+            return ResponseEntity.ok(ApiResponseVO.success("定投计划删除成功", null));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponseVO.error("删除失败: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "查询最近一次定投批量执行的进度")
+    @GetMapping("/run-status")
+    public ResponseEntity<ApiResponseVO<PlanRunResultVO>> runStatus(Authentication authentication) {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        if (!operatorUserIds.contains(userDetails.getId())) {
+            throw new AccessDeniedException("无权查询定投执行进度");
+        }
+        return ResponseEntity.ok(ApiResponseVO.success("查询成功", investmentPlanService.getLastRunResult()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.whu.nanyin.event;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 基金净值/业绩数据已更新事件
+ *
+ * 由数据导入流程在一批数据提交成功后发布，携带受影响的基金代码和数据日期范围，
+ * 各级缓存据此只刷新这些基金，而不必等待定时任务或整体重建。
+ * 事件在发布线程中同步分发，监听方应只做与受影响基金数量成正比的工作。
+ */
+@Getter
+public class NavUpdatedEvent {
+
+    /**
+     * 更新的数据类型
+     */
+    public enum DataType {
+        /**
+         * fund_net_value 净值表
+         */
+        NET_VALUE,
+        /**
+         * fund_net_value_perf_rank 业绩排名表
+         */
+        PERF_RANK
+    }
+
+    private final DataType dataType;
+
+    /**
+     * 数据来源（例如导入的文件名），仅用于日志
+     */
+    private final String source;
+
+    /**
+     * 写入成功的基金代码
+     */
+    private final Set<String> fundCodes;
+
+    /**
+     * 本次写入的最早数据日期
+     */
+    private final LocalDate startDate;
+
+    /**
+     * 本次写入的最晚数据日期
+     */
+    private final LocalDate endDate;
+
+    public NavUpdatedEvent(DataType dataType, String source, Set<String> fundCodes, LocalDate startDate, LocalDate endDate) {
+        this.dataType = dataType;
+        this.source = source;
+        this.fundCodes = Collections.unmodifiableSet(fundCodes);
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+}
@@ -1,13 +1,15 @@
 package com.whu.nanyin.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.whu.nanyin.pojo.entity.FundBasicInfo;
 import org.apache.ibatis.annotations.Mapper;
-import org.apache.ibatis.annotations.Param;
 
 @Mapper
 public interface FundBasicInfoMapper extends BaseMapper<FundBasicInfo> {
-    // 让MyBatis-Plus知道，这个方法将返回一个Page对象
-    Page<FundBasicInfo> searchFundList(Page<FundBasicInfo> page, @Param("fundCode") String fundCode, @Param("fundName") String fundName, @Param("fundType") String fundType);
+    /**
+     * 从 information_schema 读取 fund_basic_info 表的估算行数（来自表统计信息，不扫描数据）。
+     * 仅用于游标分页中"大约共有多少条"的提示，不保证精确。
+     * @return 估算行数，统计信息缺失时可能为null
+     */
+    Long estimateRowCount();
 }
\ No newline at end of file
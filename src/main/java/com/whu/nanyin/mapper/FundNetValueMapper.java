@@ -3,6 +3,8 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.nanyin.pojo.entity.FundNetValue;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,4 +23,58 @@ public interface FundNetValueMapper extends BaseMapper<FundNetValue> {
         @Param("startDate") LocalDateTime startDate,
         @Param("endDate") LocalDateTime endDate
     );
-}
\ No newline at end of file
+
+    /**
+     * 以游标方式逐行读取指定时间范围内的基金净值数据（MySQL 流式结果集）
+     * 必须在事务内使用，并在读取完毕后关闭游标
+     * @param fundCodes 基金代码列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 按基金代码、日期升序的净值游标
+     */
+    Cursor<FundNetValue> cursorNetValueTrendByDateRange(
+        @Param("fundCodes") List<String> fundCodes,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+
+    /**
+     * 聚合查询每只基金最新一期的净值记录（全表，仅用于最新净值缓存的初始加载）
+     * @return 每只基金一条最新净值记录
+     */
+    List<FundNetValue> findAllLatestNetValues();
+
+    /**
+     * 查询指定基金最新一期的净值记录
+     * @param fundCodes 基金代码列表
+     * @return 每只基金一条最新净值记录
+     */
+    List<FundNetValue> findLatestNetValueByFundCodes(@Param("fundCodes") List<String> fundCodes);
+
+    /**
+     * 按主键水位增量拉取新写入的净值记录
+     * @param seq   已处理的最大 seq
+     * @param limit 单批最多返回的行数
+     * @return seq 大于水位的净值记录，按 seq 升序
+     */
+    List<FundNetValue> findNetValueAfterSeq(@Param("seq") long seq, @Param("limit") int limit);
+
+    /**
+     * 查询净值表当前的最大主键
+     * @return 最大 seq，表为空时返回null
+     */
+    Long selectMaxSeq();
+
+    /**
+     * 按基金代码、日期升序流式读取整张净值表（MySQL 流式结果集，不会一次性加载到内存）
+     * @param handler 逐行处理回调
+     */
+    void streamAllNetValues(ResultHandler<FundNetValue> handler);
+
+    /**
+     * 批量写入净值，同一基金同一天的记录已存在时覆盖（依赖 (fund_code, end_date) 唯一键）
+     * @param list 待写入的净值记录
+     * @return 受影响的行数
+     */
+    int upsertNetValues(@Param("list") List<FundNetValue> list);
+}
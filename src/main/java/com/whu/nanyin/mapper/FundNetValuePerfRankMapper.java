@@ -9,5 +9,45 @@ import java.util.List;
 
 @Mapper
 public interface FundNetValuePerfRankMapper extends BaseMapper<FundNetValuePerfRank> {
-    List<FundNetValuePerfRank> findLatestPerfRankByFundCodes(@Param("fundCodes") List<String> fundCodes);
+
+    /**
+     * 在业绩排名历史表上按 MAX(end_date) 聚合出指定基金的最新业绩（内存快照未就绪时的兜底查询，以及按基金刷新快照）
+     * @param fundCodes 基金代码列表
+     * @return 每只基金的最新业绩记录
+     */
+    List<FundNetValuePerfRank> aggregateLatestPerfRankByFundCodes(@Param("fundCodes") List<String> fundCodes);
+
+    /**
+     * 在业绩排名历史表上聚合出全市场每只基金的最新业绩，仅用于首次构建快照
+     * @return 全部基金的最新业绩记录
+     */
+    List<FundNetValuePerfRank> aggregateAllLatestPerfRank();
+
+    /**
+     * 读取整张最新业绩快照表
+     * @return 快照表中的全部记录
+     */
+    List<FundNetValuePerfRank> selectLatestSnapshot();
+
+    /**
+     * 按主键水位增量读取新写入的业绩排名行
+     * @param seq   已处理的最大主键
+     * @param limit 单次读取的最大行数
+     * @return seq 大于水位的记录，按 seq 升序
+     */
+    List<FundNetValuePerfRank> findPerfRankAfterSeq(@Param("seq") long seq, @Param("limit") int limit);
+
+    /**
+     * 批量写入最新业绩快照表，已存在时仅当新记录的日期不早于旧记录才覆盖
+     * @param list 待写入的最新业绩记录
+     * @return 受影响的行数
+     */
+    int upsertLatestSnapshot(@Param("list") List<FundNetValuePerfRank> list);
+
+    /**
+     * 批量写入业绩排名历史表，同一基金同一天的记录已存在时覆盖（依赖 (fund_code, end_date) 唯一键）
+     * @param list 待写入的业绩排名记录
+     * @return 受影响的行数
+     */
+    int upsertPerfRanks(@Param("list") List<FundNetValuePerfRank> list);
 }
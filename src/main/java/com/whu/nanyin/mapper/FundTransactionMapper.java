@@ -3,6 +3,11 @@ package com.whu.nanyin.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.whu.nanyin.pojo.entity.FundTransaction;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 基金交易数据访问层接口
@@ -20,4 +25,47 @@ public interface FundTransactionMapper extends BaseMapper<FundTransaction> {
     // - selectList(Wrapper<T> queryWrapper): 根据条件查询记录列表
     // - selectPage(IPage<T> page, Wrapper<T> queryWrapper): 分页查询
 
+    /**
+     * 查询存在待确认订单的基金代码
+     * @return 基金代码列表
+     */
+    List<String> listPendingFundCodes();
+
+    /**
+     * 查询某只基金的全部待确认订单（只取确认所需的字段），按下单时间升序
+     * @param fundCode 基金代码
+     * @return 待确认订单列表
+     */
+    List<FundTransaction> listPendingOrders(@Param("fundCode") String fundCode);
+
+    /**
+     * 批量确认订单：一条语句回填成交净值、份额、金额并把状态改为成功，只作用于仍处于待确认状态的行
+     * @param orders 已计算好 sharePrice / transactionShares / transactionAmount 的订单
+     * @return 受影响的行数
+     */
+    int settleOrders(@Param("list") List<FundTransaction> orders);
+
+    /**
+     * 以流式结果集逐行读取交易记录，用于导出
+     * 指定用户时按 (交易时间, ID) 升序，走 (user_id, transaction_time, id) 索引；不指定用户时按主键顺序扫描全表
+     * @param userId 用户ID，为null表示全部用户
+     * @param startTime 交易时间下限（可选，包含）
+     * @param endTime 交易时间上限（可选，不包含）
+     * @return 交易记录游标，需要在事务内消费
+     */
+    Cursor<FundTransaction> cursorForExport(@Param("userId") Long userId,
+                                            @Param("startTime") LocalDateTime startTime,
+                                            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 查询指定用户在导出范围内交易过的基金代码（去重），导出前用于预热基金名称字典
+     * @param userId 用户ID
+     * @param startTime 交易时间下限（可选，包含）
+     * @param endTime 交易时间上限（可选，不包含）
+     * @return 基金代码列表
+     */
+    List<String> listExportFundCodes(@Param("userId") Long userId,
+                                     @Param("startTime") LocalDateTime startTime,
+                                     @Param("endTime") LocalDateTime endTime);
+
 }
\ No newline at end of file
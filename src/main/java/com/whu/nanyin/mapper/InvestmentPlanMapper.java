@@ -0,0 +1,37 @@
+package com.whu.nanyin.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.nanyin.pojo.entity.InvestmentPlan;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @description 定投计划表的数据库操作接口 (Mapper)。
+ * 继承自MyBatis-Plus的BaseMapper，提供了基础的CRUD功能；批量执行相关的SQL在XML文件中实现。
+ */
+@Mapper
+public interface InvestmentPlanMapper extends BaseMapper<InvestmentPlan> {
+
+    /**
+     * @description 按主键游标分页读取到期的生效计划。
+     * @param runDate 执行日期，next_run_date 不晚于该日期的计划为到期计划。
+     * @param afterId 上一页最后一个计划的ID，首页传0。
+     * @param limit   每页条数。
+     * @return 按ID升序的到期计划列表。
+     */
+    List<InvestmentPlan> listDuePlans(
+        @Param("runDate") LocalDate runDate,
+        @Param("afterId") long afterId,
+        @Param("limit") int limit);
+
+    /**
+     * @description 批量推进计划：回填本期执行结果并写入下一次执行日期，只作用于在该执行日仍然到期的计划。
+     * @param runDate 执行日期。
+     * @param plans   使用 id、nextRunDate、lastStatus、lastMessage、lastTransactionId。
+     * @return 受影响的行数，小于计划数说明有计划已被其他任务推进。
+     */
+    int advancePlans(@Param("runDate") LocalDate runDate, @Param("list") List<InvestmentPlan> plans);
+}
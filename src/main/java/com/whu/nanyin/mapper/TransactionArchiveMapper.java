@@ -0,0 +1,127 @@
+package com.whu.nanyin.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.entity.TransactionArchiveSummary;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 交易归档数据访问层接口
+ *
+ * 继承的 BaseMapper 操作 user_transaction_archive_summary 汇总表；
+ * 其余方法负责热表到归档表 user_transactions_archive 的搬迁，以及归档表的读取。
+ */
+@Mapper
+public interface TransactionArchiveMapper extends BaseMapper<TransactionArchiveSummary> {
+
+    /**
+     * 查询当前库中是否存在归档汇总表（尚未执行建表脚本时为0）
+     * @return 表的个数
+     */
+    int countSummaryTables();
+
+    /**
+     * 归档汇总表中是否有数据
+     * @return 至少有一行时返回true
+     */
+    boolean existsSummary();
+
+    /**
+     * 挑选并锁定一批可归档的交易：交易时间早于 cutoff 且不是待确认状态
+     * @param cutoff 热数据窗口的起点
+     * @param limit 本批最多行数
+     * @return 交易ID列表
+     */
+    List<Long> lockArchivableIds(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * 把指定交易复制到归档表
+     * @param ids 交易ID列表
+     * @return 复制的行数
+     */
+    int copyToArchive(@Param("ids") List<Long> ids);
+
+    /**
+     * 把指定交易按用户汇总后累加进归档汇总表
+     * @param ids 交易ID列表
+     * @return 受影响的行数
+     */
+    int accumulateSummary(@Param("ids") List<Long> ids);
+
+    /**
+     * 从热表删除指定交易
+     * @param ids 交易ID列表
+     * @return 删除的行数
+     */
+    int deleteFromHot(@Param("ids") List<Long> ids);
+
+    /**
+     * 根据ID查询归档表中的交易
+     * @param id 交易ID
+     * @return 交易记录，不存在时返回null
+     */
+    FundTransaction selectArchivedById(@Param("id") Long id);
+
+    /**
+     * 查询用户在归档表中的全部交易，按ID升序
+     * @param userId 用户ID
+     * @return 交易记录列表
+     */
+    List<FundTransaction> listArchivedByUserId(@Param("userId") Long userId);
+
+    /**
+     * 查询用户某只基金在归档表中最近的一笔申购
+     * @param userId 用户ID
+     * @param fundCode 基金代码
+     * @return 交易记录，不存在时返回null
+     */
+    FundTransaction selectLatestArchivedPurchase(@Param("userId") Long userId, @Param("fundCode") String fundCode);
+
+    /**
+     * 按 (交易时间, ID) 倒序在归档表中定位一页交易，条件与热表的游标分页一致
+     * @param userId 用户ID
+     * @param startTime 交易时间下限（可选，包含）
+     * @param endTime 交易时间上限（可选，不包含）
+     * @param fundCode 基金代码（可选）
+     * @param transactionType 交易类型（可选）
+     * @param afterTime 游标中的交易时间（可选）
+     * @param afterId 游标中的交易ID（可选）
+     * @param limit 最多行数
+     * @return 交易记录列表
+     */
+    List<FundTransaction> seekArchived(@Param("userId") Long userId,
+                                       @Param("startTime") LocalDateTime startTime,
+                                       @Param("endTime") LocalDateTime endTime,
+                                       @Param("fundCode") String fundCode,
+                                       @Param("transactionType") String transactionType,
+                                       @Param("afterTime") LocalDateTime afterTime,
+                                       @Param("afterId") Long afterId,
+                                       @Param("limit") int limit);
+
+    /**
+     * 以流式结果集逐行读取归档表中的交易记录，用于导出，排序与热表的导出一致
+     * @param userId 用户ID，为null表示全部用户
+     * @param startTime 交易时间下限（可选，包含）
+     * @param endTime 交易时间上限（可选，不包含）
+     * @return 交易记录游标，需要在事务内消费
+     */
+    Cursor<FundTransaction> cursorForExport(@Param("userId") Long userId,
+                                            @Param("startTime") LocalDateTime startTime,
+                                            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 查询指定用户在导出范围内已归档交易的基金代码（去重），导出前用于预热基金名称字典
+     * @param userId 用户ID
+     * @param startTime 交易时间下限（可选，包含）
+     * @param endTime 交易时间上限（可选，不包含）
+     * @return 基金代码列表
+     */
+    List<String> listExportFundCodes(@Param("userId") Long userId,
+                                     @Param("startTime") LocalDateTime startTime,
+                                     @Param("endTime") LocalDateTime endTime);
+}
@@ -0,0 +1,12 @@
+package com.whu.nanyin.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.nanyin.pojo.entity.TransactionIdempotency;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * @description 交易幂等记录表的数据库操作接口 (Mapper)，只使用BaseMapper提供的基础CRUD功能。
+ */
+@Mapper
+public interface TransactionIdempotencyMapper extends BaseMapper<TransactionIdempotency> {
+}
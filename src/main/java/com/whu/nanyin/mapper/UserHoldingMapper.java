@@ -2,10 +2,12 @@ package com.whu.nanyin.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.whu.nanyin.pojo.entity.FundTransaction;
 import com.whu.nanyin.pojo.entity.UserHolding;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -49,4 +51,59 @@ public interface UserHoldingMapper extends BaseMapper<UserHolding> {
         @Param("fundCode") String fundCode,
         @Param("fundName") String fundName);
 
+    /**
+     * @description 申购后的持仓写入：依赖 (user_id, fund_code) 唯一键，以一条 INSERT ... ON DUPLICATE KEY UPDATE
+     * 完成“新建持仓”或“累加份额并按加权平均重算成本”，并发的首次申购不会产生重复持仓。
+     * @param userId   用户的唯一ID。
+     * @param fundCode 基金代码。
+     * @param fundName 基金名称（仅在新建持仓时写入）。
+     * @param shares   本次申购份额（必须大于0）。
+     * @param amount   本次申购金额。
+     * @param netValue 最新单位净值，用于刷新持仓市值。
+     * @return 受影响的行数。
+     */
+    int upsertAfterPurchase(
+        @Param("userId") Long userId,
+        @Param("fundCode") String fundCode,
+        @Param("fundName") String fundName,
+        @Param("shares") BigDecimal shares,
+        @Param("amount") BigDecimal amount,
+        @Param("netValue") BigDecimal netValue);
+
+    /**
+     * @description 批量申购确认后的持仓写入：同一只基金多个用户的申购一条语句完成 upsert，语义与 upsertAfterPurchase 相同。
+     * @param fundCode  基金代码。
+     * @param fundName  基金名称（仅在新建持仓时写入）。
+     * @param netValue  成交净值，用于刷新持仓市值。
+     * @param purchases 每个用户合并后的申购，使用 userId、transactionShares（大于0）与 transactionAmount（每个用户至多一条）。
+     * @return 受影响的行数。
+     */
+    int upsertAfterPurchases(
+        @Param("fundCode") String fundCode,
+        @Param("fundName") String fundName,
+        @Param("netValue") BigDecimal netValue,
+        @Param("list") List<FundTransaction> purchases);
+
+    /**
+     * @description 赎回后的持仓写入：仅当持有份额不少于赎回份额时扣减，并刷新市值。
+     * @param userId   用户的唯一ID。
+     * @param fundCode 基金代码。
+     * @param shares   本次赎回份额。
+     * @param netValue 最新单位净值，用于刷新持仓市值。
+     * @return 受影响的行数，为0表示持仓不存在或份额不足。
+     */
+    int decrementShares(
+        @Param("userId") Long userId,
+        @Param("fundCode") String fundCode,
+        @Param("shares") BigDecimal shares,
+        @Param("netValue") BigDecimal netValue);
+
+    /**
+     * @description 删除份额已归零的持仓。
+     * @param userId   用户的唯一ID。
+     * @param fundCode 基金代码。
+     * @return 受影响的行数。
+     */
+    int deleteEmptyHolding(@Param("userId") Long userId, @Param("fundCode") String fundCode);
+
 }
\ No newline at end of file
@@ -1,11 +1,38 @@
 package com.whu.nanyin.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.whu.nanyin.pojo.entity.FundTransaction;
 import com.whu.nanyin.pojo.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
 
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 条件扣款：仅当余额不少于扣款金额时，在一条 UPDATE 中完成校验和扣减
+     * @param userId 用户ID
+     * @param amount 扣款金额（正数）
+     * @return 受影响的行数，0 表示用户不存在或余额不足
+     */
+    int debitBalance(@Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    /**
+     * 入账：在一条 UPDATE 中增加余额
+     * @param userId 用户ID
+     * @param amount 入账金额（正数）
+     * @return 受影响的行数，0 表示用户不存在
+     */
+    int creditBalance(@Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    /**
+     * 批量入账：每个用户一条入账金额，组成派生表后一条 UPDATE 完成
+     * @param credits 入账明细，使用 userId 与 transactionAmount（每个用户至多一条）
+     * @return 受影响的行数
+     */
+    int creditBalances(@Param("list") List<FundTransaction> credits);
 }
\ No newline at end of file
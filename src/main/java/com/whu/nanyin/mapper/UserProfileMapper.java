@@ -17,8 +17,9 @@ public interface UserProfileMapper extends BaseMapper<UserProfile> {
      * 根据用户ID，获取该用户的盈亏统计信息。
      * 这是一个自定义的SQL查询，具体实现在对应的XML文件中。
      * @param userId 用户的唯一ID。
+     * @param includeArchived 是否计入已归档交易的汇总（已有归档数据时为true）。
      * @return 返回一个包含用户盈亏统计数据的视图对象(VO)。
      */
-    ProfitLossVO getProfitLossVOByUserId(@Param("userId") Long userId);
+    ProfitLossVO getProfitLossVOByUserId(@Param("userId") Long userId, @Param("includeArchived") boolean includeArchived);
 
 }
\ No newline at end of file
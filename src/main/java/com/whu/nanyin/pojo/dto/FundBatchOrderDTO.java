@@ -0,0 +1,55 @@
+package com.whu.nanyin.pojo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Schema(description = "批量交易（组合调仓）请求对象，所有交易腿在一个事务中全部成交或全部失败")
+public class FundBatchOrderDTO {
+
+    @Schema(description = "用户ID（由后端根据登录用户设置）", example = "1")
+    private Long userId;
+
+    @Schema(description = "默认银行卡号：交易腿未指定银行卡号时使用；赎回腿两者都未指定时自动使用购买时的银行卡号",
+            example = "6222020200023333")
+    private String bankAccountNumber;
+
+    @Valid
+    @NotEmpty(message = "交易腿不能为空")
+    @Size(max = 100, message = "单次最多提交100条交易腿")
+    @Schema(description = "交易腿列表")
+    private List<Leg> legs;
+
+    @Data
+    @Schema(description = "批量交易中的一条交易腿")
+    public static class Leg {
+
+        @NotBlank(message = "交易类型不能为空")
+        @Pattern(regexp = "申购|赎回", message = "交易类型只能是申购或赎回")
+        @Schema(description = "交易类型（申购/赎回）", example = "申购")
+        private String transactionType;
+
+        @NotBlank(message = "基金代码不能为空")
+        @Schema(description = "基金代码", example = "000001")
+        private String fundCode;
+
+        @Positive(message = "申购金额必须为正数")
+        @Schema(description = "申购金额（申购腿必填）", example = "1000.00")
+        private BigDecimal transactionAmount;
+
+        @Positive(message = "赎回份额必须为正数")
+        @Schema(description = "赎回份额（赎回腿必填）", example = "500.00")
+        private BigDecimal transactionShares;
+
+        @Schema(description = "银行卡号（可选，覆盖默认银行卡号）", example = "6222020200023333")
+        private String bankAccountNumber;
+    }
+}
@@ -0,0 +1,43 @@
+package com.whu.nanyin.pojo.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import java.math.BigDecimal;
+
+@Data
+@Schema(description = "定投计划创建/修改请求对象")
+public class InvestmentPlanDTO {
+
+    @NotBlank(message = "基金代码不能为空")
+    @Schema(description = "基金代码", example = "000001")
+    private String fundCode;
+
+    @NotNull(message = "每期金额不能为空")
+    @Positive(message = "每期金额必须为正数")
+    @Schema(description = "每期申购金额", example = "500.00")
+    private BigDecimal amount;
+
+    @NotBlank(message = "定投频率不能为空")
+    @Pattern(regexp = "每日|每周|每月", message = "定投频率只能是每日、每周或每月")
+    @Schema(description = "定投频率（每日/每周/每月）", example = "每月")
+    private String frequency;
+
+    @Min(value = 1, message = "扣款日不能小于1")
+    @Max(value = 28, message = "扣款日不能大于28")
+    @Schema(description = "扣款日：每周为1-7（周一为1），每月为1-28，每日无需填写", example = "10")
+    private Integer scheduleDay;
+
+    @NotBlank(message = "银行卡号不能为空")
+    @Schema(description = "扣款银行卡号", example = "6222020200023333")
+    private String bankAccountNumber;
+
+    @Pattern(regexp = "生效|暂停", message = "计划状态只能是生效或暂停")
+    @Schema(description = "计划状态（生效/暂停），创建时默认为生效", example = "生效")
+    private String status;
+}
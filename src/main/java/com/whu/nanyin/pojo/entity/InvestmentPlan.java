@@ -0,0 +1,37 @@
+package com.whu.nanyin.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 定投计划实体类，映射数据库中的 `investment_plans` 表。
+ */
+@Data
+@TableName("investment_plans")
+public class InvestmentPlan {
+
+    @TableId(type = IdType.AUTO)
+    private Long id; // 主键ID，自增
+
+    private Long userId; // 用户ID，关联到users表
+    private String fundCode; // 基金代码
+    private BigDecimal amount; // 每期申购金额
+    private String frequency; // 定投频率：每日 / 每周 / 每月
+    private Integer scheduleDay; // 扣款日：每周为1-7（周一为1），每月为1-28，每日为空
+    private String bankAccountNumber; // 扣款银行卡号
+    private String status; // 计划状态：生效 / 暂停
+    private LocalDate nextRunDate; // 下一次执行日期
+    private LocalDate lastRunDate; // 最近一次执行日期
+    private String lastStatus; // 最近一次执行结果：成功 / 失败
+    private String lastMessage; // 最近一次执行失败的原因
+    private Long lastTransactionId; // 最近一次执行生成的交易记录ID
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
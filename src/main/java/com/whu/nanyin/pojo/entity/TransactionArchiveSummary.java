@@ -0,0 +1,22 @@
+package com.whu.nanyin.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 用户已归档交易的汇总实体类，映射数据库中的 `user_transaction_archive_summary` 表。
+ * 每个有归档交易的用户一行，由归档任务在搬迁交易的同一个事务中累加。
+ */
+@Data
+@TableName("user_transaction_archive_summary")
+public class TransactionArchiveSummary {
+
+    @TableId(type = IdType.INPUT)
+    private Long userId; // 用户ID
+
+    private Long archivedCount; // 已归档的交易笔数
+    private BigDecimal archivedInvestment; // 已归档交易的累计投入（申购金额 - 赎回金额）
+    private LocalDateTime archivedThrough; // 已归档交易的最晚交易时间
+}
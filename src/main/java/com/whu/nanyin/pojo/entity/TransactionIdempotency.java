@@ -0,0 +1,27 @@
+package com.whu.nanyin.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 交易幂等记录实体类，映射数据库中的 `transaction_idempotency` 表。
+ * 同一用户的同一个 Idempotency-Key 只有一行，保存第一次成功执行的交易结果。
+ */
+@Data
+@TableName("transaction_idempotency")
+public class TransactionIdempotency {
+
+    @TableId(type = IdType.AUTO)
+    private Long id; // 主键ID，自增
+
+    private Long userId; // 用户ID
+    private String idempotencyKey; // 客户端提供的幂等键
+    private String operation; // 交易类型（申购/赎回），同一个键不能用于另一种操作
+    private String requestFingerprint; // 请求关键字段的 SHA-256，同一个键不能用于内容不同的请求
+    private Long transactionId; // 首次执行生成的交易记录ID
+    private String responseBody; // 首次执行返回的交易视图对象（JSON）
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
@@ -24,7 +24,7 @@ public class UserHolding {
     private LocalDateTime lastUpdateDate; // 持仓记录的最后更新时间
     private String fundName; // 基金名称
 
-    // 该字段不与数据库表中的任何列直接对应，它是通过SQL连接查询得到的。
+    // 该字段不与数据库表中的任何列直接对应，由服务层从最新净值缓存(LatestNavService)中填充。
     @TableField(exist = false)
     private BigDecimal latestNetValue; // 基金的最新净值
 
@@ -0,0 +1,35 @@
+package com.whu.nanyin.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标（Keyset）分页结果视图对象
+ *
+ * 与 MyBatis-Plus 的 Page 不同，游标分页不使用 OFFSET，也不执行 COUNT(*)：
+ * 客户端把上一页返回的 nextCursor 原样带回，服务端据此直接"定位"到下一页的起点，
+ * 无论翻到多深，每页的代价都是恒定的，适合无限滚动类的前端场景。
+ *
+ * @param <T> 记录类型
+ */
+@Data
+@Schema(description = "游标分页结果")
+public class CursorPageVO<T> {
+
+    @Schema(description = "当前页数据列表")
+    private List<T> records;
+
+    @Schema(description = "下一页游标，为空表示没有更多数据")
+    private String nextCursor;
+
+    @Schema(description = "是否还有下一页")
+    private boolean hasMore;
+
+    @Schema(description = "每页记录数")
+    private long size;
+
+    @Schema(description = "估算的总记录数（仅在请求时返回，不保证精确）")
+    private Long estimatedTotal;
+}
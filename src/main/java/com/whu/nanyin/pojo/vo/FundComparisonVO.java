@@ -0,0 +1,59 @@
+package com.whu.nanyin.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多基金对比视图对象
+ * 所有基金的收益率按共同的交易日对齐：只保留每只参与对比的基金都有净值的日期。
+ */
+@Data
+@Schema(description = "多基金对比结果（日期对齐的日收益率、相关系数矩阵与区间表现）")
+public class FundComparisonVO {
+
+    @Schema(description = "参与对比的基金代码，相关系数矩阵的行列顺序与之一致")
+    private List<String> fundCodes;
+
+    @Schema(description = "区间内没有净值数据、未参与对比的基金代码")
+    private List<String> missingFundCodes;
+
+    @Schema(description = "对齐后的第一个日期，作为收益率计算的基准日")
+    private LocalDate baseDate;
+
+    @Schema(description = "对齐后的收益率日期（不含基准日），与 dailyReturns 中的数组一一对应")
+    private List<LocalDate> dates;
+
+    @Schema(description = "基金代码 -> 日收益率（%，相对上一个对齐日期），未请求时为空")
+    private Map<String, double[]> dailyReturns;
+
+    @Schema(description = "日收益率的皮尔逊相关系数矩阵，样本不足或某只基金收益率恒定时对应位置为空")
+    private Double[][] correlationMatrix;
+
+    @Schema(description = "各基金的区间表现")
+    private List<Performance> performance;
+
+    /**
+     * 单只基金在对比区间内的表现
+     */
+    @Data
+    @Schema(description = "基金在对比区间内的表现")
+    public static class Performance {
+
+        @Schema(description = "基金代码")
+        private String fundCode;
+
+        @Schema(description = "区间累计收益率（%）")
+        private BigDecimal totalReturn;
+
+        @Schema(description = "区间累计收益率相对于参与对比基金等权平均的超额（%）")
+        private BigDecimal relativeReturn;
+
+        @Schema(description = "年化波动率（%）")
+        private BigDecimal annualizedVolatility;
+    }
+}
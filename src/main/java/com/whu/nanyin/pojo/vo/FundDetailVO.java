@@ -25,4 +25,7 @@ public class FundDetailVO {
     @Schema(description = "用于绘制历史净值走势图的数据列表")
     private List<FundNetValue> netValueHistory;
 
+    @Schema(description = "基金的风险指标（波动率、最大回撤、夏普/索提诺比率等），净值不足时为空")
+    private FundRiskMetricsVO riskMetrics;
+
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.whu.nanyin.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 基金报价视图对象
+ * 只包含交易所需的最少字段，替代在交易链路中加载完整的 FundDetailVO。
+ */
+@Data
+@Schema(description = "基金报价（交易用的最新净值快照）")
+public class FundQuoteVO {
+
+    @Schema(description = "基金代码")
+    private String fundCode;
+
+    @Schema(description = "基金名称")
+    private String fundName;
+
+    @Schema(description = "基金投资类型代码")
+    private String fundInvestType;
+
+    @Schema(description = "最新单位净值，暂无业绩数据时为空")
+    private BigDecimal unitNetValue;
+
+    @Schema(description = "净值对应的日期")
+    private LocalDateTime asOfDate;
+}
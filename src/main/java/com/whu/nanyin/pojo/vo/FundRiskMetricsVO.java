@@ -0,0 +1,46 @@
+package com.whu.nanyin.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 基金风险指标视图对象
+ * 基于成立以来的全部累计净值计算，年化按每年252个交易日。
+ */
+@Data
+@Schema(description = "基金风险指标（成立以来，基于累计净值）")
+public class FundRiskMetricsVO {
+
+    @Schema(description = "参与计算的第一个净值日期")
+    private LocalDate startDate;
+
+    @Schema(description = "参与计算的最后一个净值日期")
+    private LocalDate endDate;
+
+    @Schema(description = "日收益率样本数")
+    private Long sampleCount;
+
+    @Schema(description = "年化波动率（%）")
+    private BigDecimal annualizedVolatility;
+
+    @Schema(description = "最大回撤（%，负数）")
+    private BigDecimal maxDrawdown;
+
+    @Schema(description = "最大回撤开始时的净值高点日期")
+    private LocalDate maxDrawdownPeakDate;
+
+    @Schema(description = "最大回撤的净值低点日期")
+    private LocalDate maxDrawdownTroughDate;
+
+    @Schema(description = "年化下行标准差（%）")
+    private BigDecimal downsideDeviation;
+
+    @Schema(description = "夏普比率")
+    private BigDecimal sharpeRatio;
+
+    @Schema(description = "索提诺比率")
+    private BigDecimal sortinoRatio;
+}
@@ -0,0 +1,50 @@
+package com.whu.nanyin.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 一次数据导入的结果统计
+ */
+@Data
+public class IngestionResultVO {
+
+    /**
+     * 数据来源（文件名）
+     */
+    private String source;
+
+    /**
+     * 导入的数据类型：NET_VALUE 或 PERF_RANK
+     */
+    private String dataType;
+
+    /**
+     * 读取的数据行数（不含表头）
+     */
+    private long rowsRead;
+
+    /**
+     * 成功写入的行数（同一文件内重复的 (基金代码, 日期) 只计一次）
+     */
+    private long rowsWritten;
+
+    /**
+     * 因格式错误被跳过的行数
+     */
+    private long rowsRejected;
+
+    /**
+     * 写入成功的基金数
+     */
+    private int fundCount;
+
+    /**
+     * 重试后仍然失败的分块数，大于0时应重新导入该文件（导入是幂等的）
+     */
+    private int failedChunks;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsedMs;
+}
@@ -0,0 +1,50 @@
+package com.whu.nanyin.pojo.vo;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 一次定投执行任务的进度与结果统计
+ */
+@Data
+public class PlanRunResultVO {
+
+    /**
+     * 执行日期：next_run_date 不晚于该日期的生效计划都会被执行
+     */
+    private LocalDate runDate;
+
+    /**
+     * 任务状态：执行中 / 已完成 / 失败
+     */
+    private String status;
+
+    private LocalDateTime startTime;
+
+    /**
+     * 已处理的计划数（成功 + 失败 + 跳过）
+     */
+    private long processedPlans;
+
+    /**
+     * 申购成功的计划数
+     */
+    private long succeededPlans;
+
+    /**
+     * 申购失败的计划数（余额不足、基金暂停交易等），计划照常推进到下一期
+     */
+    private long failedPlans;
+
+    /**
+     * 所在分块整体写入失败而未推进的计划数，下次执行时会再次处理
+     */
+    private long skippedPlans;
+
+    /**
+     * 耗时（毫秒），执行中时为已用时间
+     */
+    private long elapsedMs;
+}
@@ -0,0 +1,35 @@
+package com.whu.nanyin.pojo.vo;
+
+import lombok.Data;
+
+/**
+ * 一次待确认订单批量确认的结果统计
+ */
+@Data
+public class SettlementResultVO {
+
+    /**
+     * 处理的基金数
+     */
+    private int fundCount;
+
+    /**
+     * 本次确认的订单数
+     */
+    private long settledOrders;
+
+    /**
+     * 交易日净值尚未公布、继续等待的订单数
+     */
+    private long waitingOrders;
+
+    /**
+     * 重试后仍然失败的基金数，这些基金的订单保持待确认，下次确认时会再次处理
+     */
+    private int failedFunds;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsedMs;
+}
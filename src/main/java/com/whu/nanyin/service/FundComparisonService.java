@@ -0,0 +1,25 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.FundComparisonVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 多基金对比服务接口
+ *
+ * 在服务端完成多只基金的日期对齐、日收益率、相关系数矩阵和区间表现的计算，
+ * 客户端不再需要下载全部净值走势后自行计算。
+ */
+public interface FundComparisonService {
+
+    /**
+     * 对比多只基金在指定日期区间内的表现
+     * @param fundCodes 基金代码列表（重复的代码只计一次）
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param includeReturns 是否在结果中返回逐日收益率
+     * @return 对比结果
+     */
+    FundComparisonVO compare(List<String> fundCodes, LocalDate startDate, LocalDate endDate, boolean includeReturns);
+}
@@ -0,0 +1,41 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.IngestionResultVO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基金净值与业绩排名数据导入服务接口
+ *
+ * 读取每日下发的 CSV 文件（首行为表头，列名与数据库字段名一致，例如 fund_code,end_date,unit_net_value），
+ * 按基金分块、多线程并行地以批量 upsert 写入 fund_net_value / fund_net_value_perf_rank，
+ * 全部写完后发布 NavUpdatedEvent，通知各级缓存按基金代码精确刷新。
+ * 导入依赖两张表上的 (fund_code, end_date) 唯一键（见 resources/sql/fund_data_unique_keys.sql），重复导入同一文件是幂等的。
+ */
+public interface FundDataIngestionService {
+
+    /**
+     * 导入净值文件
+     * @param source 数据来源（文件名），用于日志和结果
+     * @param in CSV 输入流，由调用方负责关闭
+     * @return 导入结果统计
+     * @throws IOException 读取输入流失败或表头不合法
+     */
+    IngestionResultVO ingestNetValues(String source, InputStream in) throws IOException;
+
+    /**
+     * 导入业绩排名文件
+     * @param source 数据来源（文件名），用于日志和结果
+     * @param in CSV 输入流，由调用方负责关闭
+     * @return 导入结果统计
+     * @throws IOException 读取输入流失败或表头不合法
+     */
+    IngestionResultVO ingestPerfRanks(String source, InputStream in) throws IOException;
+
+    /**
+     * 扫描收件目录，导入其中的 nav_*.csv 与 perf_rank_*.csv 文件，
+     * 处理完的文件移入 done/，出错或有失败分块的文件移入 failed/。
+     */
+    void scanInbox();
+}
@@ -2,8 +2,12 @@ package com.whu.nanyin.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
 import com.whu.nanyin.pojo.vo.FundDetailVO;
 import com.whu.nanyin.pojo.vo.FundNetValueTrendVO;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +34,18 @@ public interface FundInfoService {
      */
     Page<FundBasicInfo> getFundBasicInfoPage(Page<FundBasicInfo> page, String fundCode, String fundName, String fundType);
 
+    /**
+     * 为“基金超市”页面提供游标（Keyset）分页的条件搜索，按基金代码升序翻页。
+     * 不执行 COUNT(*)，也不使用 OFFSET，适合深度翻页和无限滚动。
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页显示条数
+     * @param fundName 基金名称或搜索关键词 (模糊查询)
+     * @param fundType 基金类型 (精确查询)
+     * @param withTotal 是否返回估算的总记录数
+     * @return 游标分页结果
+     */
+    CursorPageVO<FundBasicInfo> getFundBasicInfoCursorPage(String cursor, int size, String fundName, String fundType, boolean withTotal);
+
     /**
      * 为"基金详情页"提供所有需要的聚合数据
      * 
@@ -45,6 +61,30 @@ public interface FundInfoService {
      */
     FundDetailVO getFundDetail(String fundCode);
 
+    /**
+     * 获取基金详情，由调用方指定需要的净值历史区间
+     * 
+     * 详情数据带有短时缓存，返回的对象可能被多个请求共享，调用方不应修改。
+     * 只需要基本信息和最新业绩的调用方应传入 historyStart = null，避免加载净值历史。
+     * 
+     * @param fundCode 基金代码
+     * @param historyStart 净值历史的开始日期（含），为null表示不需要净值历史
+     * @param historyEnd 净值历史的结束日期（含），为null表示截至最新
+     * @return 包含基金详细信息的FundDetailVO对象，如果基金不存在则返回null
+     */
+    FundDetailVO getFundDetail(String fundCode, LocalDate historyStart, LocalDate historyEnd);
+
+    /**
+     * 使指定基金的详情缓存失效（基金信息、业绩或净值发生变更后调用）
+     * @param fundCode 基金代码
+     */
+    void evictFundDetail(String fundCode);
+
+    /**
+     * 清空全部基金详情缓存（批量导入数据后调用）
+     */
+    void evictAllFundDetails();
+
     /**
      * 【新增】获取所有基金的基础信息列表
      * @return 所有基金基础信息的列表
@@ -71,4 +111,42 @@ public interface FundInfoService {
         LocalDateTime endDate
     );
 
+    /**
+     * 获取指定时间范围内的基金净值走势数据，并对每只基金做服务端降采样
+     * 
+     * 使用保形的 LTTB 算法把每只基金的点数压缩到 maxPoints 以内，首尾两点与主要拐点都会保留，
+     * 适合多年、多基金对比这类图表宽度远小于数据点数的场景。
+     * 
+     * @param fundCodes 基金代码列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param maxPoints 每只基金最多返回的点数，为null表示不降采样
+     * @return 按基金代码分组的净值走势数据
+     */
+    Map<String, List<FundNetValueTrendVO>> getFundNetValueTrends(
+        List<String> fundCodes,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        Integer maxPoints
+    );
+
+    /**
+     * 以 NDJSON 流的形式输出指定时间范围内的基金净值走势
+     * 
+     * 逐行读取数据库游标，按基金分块写出，每行是一个 {"fundCode": ..., "points": [...]} 对象，
+     * 同一只基金的数据可能被拆成多行。内存占用与时间范围和基金数量无关。
+     * 
+     * @param fundCodes 基金代码列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param out 输出流（通常是 HTTP 响应体），方法内不会关闭
+     * @throws IOException 写出失败（例如客户端断开）时抛出
+     */
+    void streamFundNetValueTrends(
+        List<String> fundCodes,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        OutputStream out
+    ) throws IOException;
+
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基金最新业绩快照服务接口
+ *
+ * 在内存中为每只基金维护一份"最新一期"的业绩与排名数据（可选地同步持久化到 fund_latest_perf_rank 表），
+ * 新的业绩排名行到达时增量更新，所有"最新业绩"类读取都直接命中快照，
+ * 不再对只增不减的 fund_net_value_perf_rank 历史表反复做 MAX(end_date) 聚合。
+ */
+public interface FundLatestPerfService {
+
+    /**
+     * 内存快照是否已加载完成
+     * @return true 表示快照可用
+     */
+    boolean isReady();
+
+    /**
+     * 获取单只基金的最新业绩
+     * @param fundCode 基金代码
+     * @return 最新业绩记录，不存在时返回null
+     */
+    FundNetValuePerfRank getLatest(String fundCode);
+
+    /**
+     * 批量获取多只基金的最新业绩
+     * @param fundCodes 基金代码集合
+     * @return 基金代码 -> 最新业绩记录，没有业绩数据的基金不会出现在结果中
+     */
+    Map<String, FundNetValuePerfRank> getLatest(Collection<String> fundCodes);
+
+    /**
+     * 将新到达的业绩排名行合并进快照：只有日期不早于现有记录的行才会生效，
+     * 生效的行会同步写入快照表（若启用了持久化）。
+     * @param ranks 新的业绩排名行
+     */
+    void applyNewRanks(Collection<FundNetValuePerfRank> ranks);
+
+    /**
+     * 从历史表重新聚合指定基金的最新业绩并合并进快照，用于数据导入后修正了已有日期的场景
+     * @param fundCodes 基金代码集合
+     */
+    void refresh(Collection<String> fundCodes);
+
+    /**
+     * 重新加载整个快照：优先从快照表恢复，快照表为空或未启用时对历史表做一次全量聚合。
+     */
+    void reload();
+
+    /**
+     * 按主键水位从历史表拉取新写入的业绩排名行，并合并进快照。
+     */
+    void refreshIncrementally();
+}
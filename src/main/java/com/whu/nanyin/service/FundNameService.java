@@ -0,0 +1,40 @@
+package com.whu.nanyin.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基金名称字典服务接口
+ *
+ * 在内存中维护 基金代码 -> 基金名称 的字典，供交易记录、持仓等列表补充基金名称，
+ * 取代逐行调用 getFundDetail 只为读取一个名称的做法。
+ */
+public interface FundNameService {
+
+    /**
+     * 获取单只基金的名称
+     * @param fundCode 基金代码
+     * @return 基金名称，基金不存在时返回null
+     */
+    String getName(String fundCode);
+
+    /**
+     * 批量获取基金名称：字典未命中的代码合并为一次 IN 查询
+     * @param fundCodes 基金代码集合
+     * @return 基金代码 -> 基金名称，不存在的基金不会出现在结果中
+     */
+    Map<String, String> getNames(Collection<String> fundCodes);
+
+    /**
+     * 只从内存字典中批量获取基金名称，不查询数据库。
+     * 用于流式结果集仍在读取的事务中：同一连接上不能再执行其他查询。
+     * @param fundCodes 基金代码集合
+     * @return 基金代码 -> 基金名称，字典中没有的基金不会出现在结果中
+     */
+    Map<String, String> getCachedNames(Collection<String> fundCodes);
+
+    /**
+     * 从 fund_basic_info 全量重新加载字典
+     */
+    void reload();
+}
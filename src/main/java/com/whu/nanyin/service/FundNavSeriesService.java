@@ -0,0 +1,75 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.common.NavSeries;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.vo.FundNetValueTrendVO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基金净值时间序列存储服务接口
+ *
+ * 将 fund_net_value 按基金组织成列式序列（日期 int 列 + 放大后的净值 long 列），
+ * 主体部分落盘并内存映射，新到达的净值以堆内尾部的形式增量追加、定期合并进文件。
+ * 净值走势和净值历史查询通过在日期列上二分定位区间完成，不再为每一行创建实体对象。
+ */
+public interface FundNavSeriesService {
+
+    /**
+     * 存储是否已加载完成。未就绪时调用方应回退到数据库查询。
+     * @return true 表示可以提供查询
+     */
+    boolean isReady();
+
+    /**
+     * 获取单只基金的完整净值序列
+     * @param fundCode 基金代码
+     * @return 净值序列，没有净值数据时返回null
+     */
+    NavSeries getSeries(String fundCode);
+
+    /**
+     * 查询多只基金在指定时间范围内的净值走势，语义与 FundNetValueMapper.findNetValueTrendByDateRange 一致
+     * @param fundCodes 基金代码列表
+     * @param startDate 开始时间（含）
+     * @param endDate 结束时间（含）
+     * @param maxPoints 每只基金最多返回的点数（LTTB 降采样），为null表示返回全部
+     * @return 按基金代码分组的净值走势，区间内没有数据的基金不会出现在结果中
+     */
+    Map<String, List<FundNetValueTrendVO>> getTrends(List<String> fundCodes, LocalDateTime startDate, LocalDateTime endDate, Integer maxPoints);
+
+    /**
+     * 查询单只基金在指定日期区间内的净值历史，按日期升序
+     * @param fundCode 基金代码
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含），为null表示截至最新
+     * @return 净值历史列表（不含 seq）
+     */
+    List<FundNetValue> getHistory(String fundCode, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 将新写入的净值合并进存储：晚于序列末尾的点直接追加，
+     * 对历史日期的补录或修正会使该基金的序列从数据库重新加载。
+     * @param netValues 新写入的净值记录
+     */
+    void append(Collection<FundNetValue> netValues);
+
+    /**
+     * 在后台从数据库全量重建列式文件
+     */
+    void rebuild();
+
+    /**
+     * 在后台把堆内尾部数据合并进新一代列式文件
+     */
+    void compact();
+
+    /**
+     * 按主键水位从净值表拉取新写入的记录并追加
+     */
+    void refreshIncrementally();
+}
@@ -0,0 +1,36 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 基金业绩与同类排名计算服务接口
+ *
+ * 直接由 fund_net_value 的净值序列计算 FundNetValuePerfRank 的全部业绩字段：
+ * 日/周/1月/3月/6月/1年/2年/3年/5年/成立以来增长率（百分比，保留4位小数），
+ * 以及在同一基金投资类型（fundInvestType）内按各区间增长率的降序排名和参与排名的基金数。
+ */
+public interface FundPerfComputeService {
+
+    /**
+     * 计算指定日期全市场的业绩与排名（不写库）。
+     * 只有在该日期有净值的基金才会参与计算；区间起点早于基金最早净值日期时，该区间的增长率与排名为空。
+     * @param asOfDate 计算日期
+     * @return 每只基金一行，endDate 为计算日期
+     */
+    List<FundNetValuePerfRank> compute(LocalDate asOfDate);
+
+    /**
+     * 计算指定日期全市场的业绩与排名，写入 fund_net_value_perf_rank 并通知各级缓存
+     * @param asOfDate 计算日期
+     * @return 写入的行数
+     */
+    int computeAndSave(LocalDate asOfDate);
+
+    /**
+     * 定时任务入口：计算当天的业绩与排名
+     */
+    void computeForToday();
+}
@@ -0,0 +1,29 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基金报价服务接口
+ *
+ * 交易链路只需要基金名称、类型和最新单位净值，报价直接由内存中的基金目录（搜索索引）
+ * 和最新业绩快照拼装，不再为了一个净值加载基金详情及一整年的净值历史。
+ */
+public interface FundQuoteService {
+
+    /**
+     * 获取单只基金的报价
+     * @param fundCode 基金代码
+     * @return 基金报价，基金不存在时返回null；基金存在但暂无业绩数据时 unitNetValue 为空
+     */
+    FundQuoteVO getQuote(String fundCode);
+
+    /**
+     * 批量获取基金报价
+     * @param fundCodes 基金代码集合
+     * @return 基金代码 -> 报价，不存在的基金不会出现在结果中
+     */
+    Map<String, FundQuoteVO> getQuotes(Collection<String> fundCodes);
+}
@@ -0,0 +1,27 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.FundRiskMetricsVO;
+
+import java.util.Collection;
+
+/**
+ * 基金风险指标服务接口
+ *
+ * 为每只基金缓存一个单遍流式累加器（见 RiskMetricsAccumulator），
+ * 查询时只把缓存之后新追加的净值点喂给累加器，而不是每次都对完整净值历史重新计算。
+ */
+public interface FundRiskMetricsService {
+
+    /**
+     * 获取基金成立以来的风险指标
+     * @param fundCode 基金代码
+     * @return 风险指标，没有有效净值时返回null
+     */
+    FundRiskMetricsVO getRiskMetrics(String fundCode);
+
+    /**
+     * 丢弃指定基金的累加器，下次查询时从完整净值历史重新计算（用于历史净值被修正的场景）
+     * @param fundCodes 基金代码集合
+     */
+    void evict(Collection<String> fundCodes);
+}
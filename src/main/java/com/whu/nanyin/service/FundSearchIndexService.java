@@ -0,0 +1,69 @@
+package com.whu.nanyin.service;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+
+import java.util.Collection;
+
+/**
+ * 基金超市搜索索引服务接口
+ *
+ * 在应用进程内维护一份基于 n-gram 的基金目录倒排索引，覆盖基金全称、简称和基金代码三个字段，
+ * 用于替代 fund_basic_info 表上的 LIKE '%关键词%' 全表扫描。
+ * 索引在应用启动时由 listAllBasicInfos() 全量构建，之后按主键 seq 增量刷新。
+ */
+public interface FundSearchIndexService {
+
+    /**
+     * 索引是否已经构建完成并可以对外提供查询。
+     * 未就绪时调用方应回退到数据库查询。
+     * @return true 表示索引可用
+     */
+    boolean isReady();
+
+    /**
+     * 在内存索引中按关键词和基金类型分页检索基金，结果按基金代码升序排列。
+     * 返回的记录是索引中对象的副本，调用方可以放心地在其上补充业绩字段。
+     * @param page         分页对象，查询后会被填充 records 与 total
+     * @param keyword      搜索关键词（可选），同时匹配基金全称、简称和基金代码
+     * @param fundTypeCode 基金投资类型代码（可选，精确匹配）
+     * @return 填充好的分页对象
+     */
+    Page<FundBasicInfo> search(Page<FundBasicInfo> page, String keyword, String fundTypeCode);
+
+    /**
+     * 在内存索引中做游标分页：返回基金代码严格大于 afterFundCode 的前 size 条匹配记录。
+     * 由于索引中的命中结果本身就按基金代码有序，定位起点只需一次二分查找。
+     * 返回对象的 estimatedTotal 为索引中的精确命中数，是否透出由调用方决定。
+     * @param afterFundCode 上一页最后一条记录的基金代码，为空表示从头开始
+     * @param size          每页记录数
+     * @param keyword       搜索关键词（可选）
+     * @param fundTypeCode  基金投资类型代码（可选）
+     * @return 游标分页结果
+     */
+    CursorPageVO<FundBasicInfo> searchAfter(String afterFundCode, int size, String keyword, String fundTypeCode);
+
+    /**
+     * 按基金代码精确查找索引中的基金基础信息（二分查找，不访问数据库）。
+     * @param fundCode 基金代码
+     * @return 基金基础信息的副本，索引中不存在该基金时返回null
+     */
+    FundBasicInfo getBasicInfo(String fundCode);
+
+    /**
+     * 从数据库全量重建索引，构建完成后原子替换旧索引。
+     */
+    void rebuild();
+
+    /**
+     * 从数据库拉取 seq 大于当前水位的新基金，增量合并进索引。
+     */
+    void refreshIncrementally();
+
+    /**
+     * 将指定的基金信息合并进索引（新增或覆盖同代码的旧记录）。
+     * @param basicInfos 新增或变更的基金基础信息
+     */
+    void upsert(Collection<FundBasicInfo> basicInfos);
+}
@@ -0,0 +1,35 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.SettlementResultVO;
+
+import java.util.Collection;
+
+/**
+ * 待确认订单的按净值批量确认服务接口
+ *
+ * 开启后（nanyin.settlement.enabled），申购、赎回不再按下单时已知的最新净值立即成交，而是以“待确认”状态入库：
+ * - 申购：下单时扣款，确认时按交易日净值计算份额并计入持仓
+ * - 赎回：下单时扣减（冻结）份额，确认时按交易日净值计算金额并入账
+ * 交易日：截止时间（nanyin.settlement.cutoff）之前下单为当天，之后为下一天；成交净值取交易日当天或之后最近一个净值日的单位净值。
+ * 确认按基金进行，多只基金并行，每只基金内的订单一次算完、分块批量写入。
+ */
+public interface FundSettlementService {
+
+    /**
+     * 是否启用待确认模式
+     */
+    boolean isEnabled();
+
+    /**
+     * 确认指定基金中净值已经公布的待确认订单
+     * @param fundCodes 基金代码
+     * @return 确认结果统计
+     */
+    SettlementResultVO settle(Collection<String> fundCodes);
+
+    /**
+     * 确认所有存在待确认订单的基金
+     * @return 确认结果统计
+     */
+    SettlementResultVO settleAll();
+}
@@ -1,11 +1,14 @@
 package com.whu.nanyin.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.nanyin.pojo.dto.FundBatchOrderDTO;
 import com.whu.nanyin.pojo.dto.FundPurchaseDTO;
 import com.whu.nanyin.pojo.dto.FundRedeemDTO;
 import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
 import com.whu.nanyin.pojo.vo.FundTransactionVO;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface FundTransactionService extends IService<FundTransaction> {
@@ -16,11 +19,18 @@ public interface FundTransactionService extends IService<FundTransaction> {
 
     FundTransaction createRedeemTransaction(FundRedeemDTO dto);
 
+    // 批量交易（组合调仓）：基于同一份余额/持仓快照校验全部交易腿，在一个事务中全部成交或全部失败
+    List<FundTransaction> createBatchTransactions(FundBatchOrderDTO dto);
+
     List<FundTransaction> listByUserId(Long userId);
 
     // 获取用户交易记录并包含基金名称
     List<FundTransactionVO> listByUserIdWithFundName(Long userId);
 
+    // 按 (交易时间, ID) 倒序游标分页查询用户交易记录（包含基金名称），可按日期区间、基金代码、交易类型筛选
+    CursorPageVO<FundTransactionVO> listByUserIdCursorPage(Long userId, String cursor, int size, LocalDate startDate,
+                                                           LocalDate endDate, String fundCode, String transactionType);
+
     // 根据交易ID和用户ID，安全地获取单条交易详情
     FundTransaction getTransactionByIdAndUserId(Long transactionId, Long userId);
 
@@ -0,0 +1,59 @@
+package com.whu.nanyin.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.whu.nanyin.pojo.dto.InvestmentPlanDTO;
+import com.whu.nanyin.pojo.entity.InvestmentPlan;
+import com.whu.nanyin.pojo.vo.PlanRunResultVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @description 定投计划服务接口：计划的增删改查，以及按执行日批量执行到期计划。
+ */
+public interface InvestmentPlanService extends IService<InvestmentPlan> {
+
+    /**
+     * @description 查询用户的全部定投计划。
+     * @param userId 用户的唯一ID。
+     * @return 按创建顺序排列的计划列表。
+     */
+    List<InvestmentPlan> listByUserId(Long userId);
+
+    /**
+     * @description 创建定投计划，首次执行日期为今天之后的第一个扣款日。
+     * @param userId 用户的唯一ID。
+     * @param dto    计划参数。
+     * @return 保存后的计划。
+     */
+    InvestmentPlan createPlan(Long userId, InvestmentPlanDTO dto);
+
+    /**
+     * @description 修改定投计划；扣款规则变化或从暂停恢复时重新计算下一次执行日期。
+     * @param userId 用户的唯一ID。
+     * @param planId 计划ID。
+     * @param dto    新的计划参数。
+     * @return 修改后的计划。
+     */
+    InvestmentPlan updatePlan(Long userId, Long planId, InvestmentPlanDTO dto);
+
+    /**
+     * @description 删除定投计划。
+     * @param userId 用户的唯一ID。
+     * @param planId 计划ID。
+     */
+    void deletePlan(Long userId, Long planId);
+
+    /**
+     * @description 执行所有在指定日期到期的生效计划：按用户分区并行、每个用户一个事务批量申购，单个计划失败不影响其他计划。
+     * @param runDate 执行日期。
+     * @return 执行结果统计。
+     */
+    PlanRunResultVO executeDuePlans(LocalDate runDate);
+
+    /**
+     * @description 获取最近一次（或正在进行的）执行任务的进度。
+     * @return 执行进度，从未执行过时返回null。
+     */
+    PlanRunResultVO getLastRunResult();
+}
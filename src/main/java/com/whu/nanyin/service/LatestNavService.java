@@ -0,0 +1,58 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.entity.FundNetValue;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 基金最新净值查询服务接口
+ *
+ * 在内存中以基金代码为 key 缓存每只基金最新一期的 fund_net_value 记录，
+ * 持仓等读路径直接按基金代码查表得到最新净值，
+ * 不再在每次查询时对整张净值历史表执行 MAX(end_date) GROUP BY fund_code。
+ */
+public interface LatestNavService {
+
+    /**
+     * 内存缓存是否已加载完成
+     * @return true 表示缓存可用
+     */
+    boolean isReady();
+
+    /**
+     * 获取单只基金的最新净值记录
+     * @param fundCode 基金代码
+     * @return 最新净值记录，不存在时返回null
+     */
+    FundNetValue getLatest(String fundCode);
+
+    /**
+     * 批量获取多只基金的最新净值记录
+     * @param fundCodes 基金代码集合
+     * @return 基金代码 -> 最新净值记录，没有净值数据的基金不会出现在结果中
+     */
+    Map<String, FundNetValue> getLatest(Collection<String> fundCodes);
+
+    /**
+     * 将新写入的净值记录合并进缓存，只有日期不早于现有记录的行才会生效。
+     * @param netValues 新的净值记录
+     */
+    void applyNewNetValues(Collection<FundNetValue> netValues);
+
+    /**
+     * 从数据库重新读取指定基金的最新净值（用于净值被修正、删除等无法只靠追加表达的变更）。
+     * @param fundCodes 需要刷新的基金代码
+     */
+    void refresh(Collection<String> fundCodes);
+
+    /**
+     * 全量重新加载缓存。
+     */
+    void reload();
+
+    /**
+     * 按主键水位从净值表拉取新写入的记录，并合并进缓存。
+     */
+    void refreshIncrementally();
+}
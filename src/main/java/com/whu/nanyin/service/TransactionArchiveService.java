@@ -0,0 +1,34 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.entity.TransactionArchiveSummary;
+
+/**
+ * 交易记录冷热分离服务接口
+ *
+ * 归档任务开启后（nanyin.transaction-archive.enabled），user_transactions 只保留最近 hot-days 天的交易与全部待确认订单，
+ * 更早的已完成交易由定时任务分批搬入 user_transactions_archive，并把每个用户的累计投入累加进归档汇总表。
+ * 读路由与任务开关无关：只要汇总表中有数据就会读取归档，关闭任务（或只在部分节点开启）不会让已归档的交易消失：
+ * - 盈亏统计、最近交易历史只读热表（再加汇总表的一行）
+ * - 单条交易、完整历史、导出在热表之外再读取归档表，归档表与热表索引一致
+ */
+public interface TransactionArchiveService {
+
+    /**
+     * 是否已有归档数据（归档汇总表存在且有数据），为false时读请求只需读热表
+     * @return 是否需要把读请求路由到归档表
+     */
+    boolean isArchiveInUse();
+
+    /**
+     * 获取用户已归档交易的汇总
+     * @param userId 用户ID
+     * @return 汇总信息，尚无归档数据或该用户没有归档交易时返回null
+     */
+    TransactionArchiveSummary getSummary(Long userId);
+
+    /**
+     * 把热数据窗口之外的已完成交易搬入归档表
+     * @return 本次归档的交易笔数
+     */
+    long archiveExpired();
+}
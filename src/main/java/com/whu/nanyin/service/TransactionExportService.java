@@ -0,0 +1,32 @@
+package com.whu.nanyin.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * 交易记录导出服务接口
+ *
+ * 以数据库游标逐行读取交易记录并直接写入输出流，内存占用与导出的记录数无关，
+ * 既用于用户导出自己的交易历史，也用于合规导出全部用户的交易记录。
+ */
+public interface TransactionExportService {
+
+    /**
+     * 导出格式
+     */
+    enum Format {
+        CSV, XLSX
+    }
+
+    /**
+     * 导出交易记录
+     * @param userId 用户ID，为null表示导出全部用户
+     * @param startDate 交易日期下限（可选，包含）
+     * @param endDate 交易日期上限（可选，包含）
+     * @param format 导出格式
+     * @param out 输出流（通常是 HTTP 响应体），方法内不会关闭
+     * @throws IOException 写出失败（例如客户端断开）时抛出
+     */
+    void export(Long userId, LocalDate startDate, LocalDate endDate, Format format, OutputStream out) throws IOException;
+}
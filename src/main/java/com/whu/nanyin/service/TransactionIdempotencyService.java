@@ -0,0 +1,28 @@
+package com.whu.nanyin.service;
+
+import com.whu.nanyin.pojo.vo.FundTransactionVO;
+
+import java.util.function.Supplier;
+
+/**
+ * 交易幂等服务
+ *
+ * 客户端通过 Idempotency-Key 请求头为一次交易指定幂等键。同一用户携带同一个键的重复请求
+ * 不再执行交易，而是重放第一次成功执行时返回的交易结果；请求内容与首次不同的重复键会被拒绝。
+ */
+public interface TransactionIdempotencyService {
+
+    /**
+     * 以幂等方式执行一笔交易
+     *
+     * @param userId         用户ID
+     * @param idempotencyKey 幂等键，为空时不做幂等控制，直接执行
+     * @param operation      交易类型（申购/赎回）
+     * @param requestSignature 请求关键字段拼成的签名（如基金代码与金额），用于识别被复用的幂等键
+     * @param action         交易逻辑，返回要回传给客户端的交易视图对象
+     * @return 本次执行或首次执行的交易视图对象
+     * @throws IllegalArgumentException 幂等键过长，或已被用于另一种交易类型、另一笔请求内容不同的交易时抛出
+     */
+    FundTransactionVO execute(Long userId, String idempotencyKey, String operation, String requestSignature,
+                              Supplier<FundTransactionVO> action);
+}
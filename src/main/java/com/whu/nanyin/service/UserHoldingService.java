@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.whu.nanyin.pojo.entity.UserHolding;
 import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
 import java.util.List;
 
 /**
@@ -47,5 +48,12 @@ public interface UserHoldingService extends IService<UserHolding> {
      */
     void updateHoldingAfterNewTransaction(FundTransaction transaction);
 
+    /**
+     * @description 同上，但直接使用调用方在本次交易中已经解析好的基金报价，不再重复查询基金信息。
+     * @param transaction 新发生的交易记录实体。
+     * @param quote       本次交易使用的基金报价（提供基金名称和最新净值）。
+     */
+    void updateHoldingAfterNewTransaction(FundTransaction transaction, FundQuoteVO quote);
+
 
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.whu.nanyin.service.impl;
+
+import com.whu.nanyin.common.NavSeries;
+import com.whu.nanyin.common.RiskMetricsAccumulator;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.vo.FundComparisonVO;
+import com.whu.nanyin.service.FundComparisonService;
+import com.whu.nanyin.service.FundNavSeriesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 多基金对比服务实现类
+ *
+ * 全程在基本类型数组上计算：
+ * 1. 取出每只基金区间内的（日期, 净值）两列，优先使用内存映射的净值列式存储，未就绪时一次 IN 查询读取数据库
+ * 2. 对各基金的日期列做有序数组求交集，得到共同交易日
+ * 3. 按基金并行：在共同交易日上取净值、计算日收益率，并标准化（减均值、除以标准差）
+ * 4. 按矩阵行并行：相关系数即两只基金标准化收益率的点积 / (n - 1)，只计算上三角再对称填充
+ *
+ * 净值统一使用累计净值（包含分红）；某只基金在区间内存在累计净值缺失时，整只基金改用单位净值。
+ */
+@Service
+public class FundComparisonServiceImpl implements FundComparisonService {
+
+    /**
+     * 收益率、相关系数保留的小数位数
+     */
+    private static final int SCALE = 4;
+
+    @Autowired
+    private FundNavSeriesService fundNavSeriesService;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    /**
+     * 一只基金在区间内的日期列与净值列
+     */
+    private record Column(int[] days, double[] navs) {
+    }
+
+    @Override
+    public FundComparisonVO compare(List<String> fundCodes, LocalDate startDate, LocalDate endDate, boolean includeReturns) {
+        List<String> requested = new ArrayList<>(new LinkedHashSet<>(fundCodes));
+        Map<String, Column> columns = fundNavSeriesService.isReady()
+            ? loadFromStore(requested, startDate, endDate)
+            : loadFromDatabase(requested, startDate, endDate);
+
+        List<String> codes = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String fundCode : requested) {
+            Column column = columns.get(fundCode);
+            if (column != null && column.days().length > 0) {
+                codes.add(fundCode);
+            } else {
+                missing.add(fundCode);
+            }
+        }
+
+        FundComparisonVO vo = new FundComparisonVO();
+        vo.setFundCodes(codes);
+        vo.setMissingFundCodes(missing);
+        int n = codes.size();
+
+        // 共同交易日
+        int[] aligned = null;
+        for (String fundCode : codes) {
+            aligned = aligned == null ? columns.get(fundCode).days() : intersect(aligned, columns.get(fundCode).days());
+        }
+        if (aligned == null || aligned.length < 2) {
+            vo.setDates(List.of());
+            vo.setDailyReturns(includeReturns ? Map.of() : null);
+            vo.setCorrelationMatrix(new Double[n][n]);
+            vo.setPerformance(List.of());
+            return vo;
+        }
+        int[] alignedDays = aligned;
+        int m = alignedDays.length - 1;
+
+        double[][] returns = new double[n][];
+        double[][] standardized = new double[n][];
+        double[] totalReturns = new double[n];
+        double[] volatilities = new double[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            Column column = columns.get(codes.get(i));
+            double[] navs = alignNavs(column, alignedDays);
+            double[] r = new double[m];
+            double mean = 0;
+            for (int k = 0; k < m; k++) {
+                r[k] = navs[k + 1] / navs[k] - 1;
+                mean += r[k];
+            }
+            mean /= m;
+            double squares = 0;
+            for (int k = 0; k < m; k++) {
+                squares += (r[k] - mean) * (r[k] - mean);
+            }
+            double sd = m > 1 ? Math.sqrt(squares / (m - 1)) : 0;
+            double[] z = null;
+            if (sd > 0) {
+                z = new double[m];
+                for (int k = 0; k < m; k++) {
+                    z[k] = (r[k] - mean) / sd;
+                }
+            }
+            returns[i] = r;
+            standardized[i] = z;
+            totalReturns[i] = navs[m] / navs[0] - 1;
+            volatilities[i] = sd * Math.sqrt(RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR);
+        });
+
+        Double[][] correlation = new Double[n][n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            for (int j = i; j < n; j++) {
+                Double value = null;
+                if (standardized[i] != null && standardized[j] != null) {
+                    double dot = 0;
+                    for (int k = 0; k < m; k++) {
+                        dot += standardized[i][k] * standardized[j][k];
+                    }
+                    value = round(Math.max(-1, Math.min(1, dot / (m - 1))));
+                }
+                correlation[i][j] = value;
+                correlation[j][i] = value;
+            }
+        });
+
+        double averageReturn = Arrays.stream(totalReturns).average().orElse(0);
+        List<FundComparisonVO.Performance> performance = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            FundComparisonVO.Performance item = new FundComparisonVO.Performance();
+            item.setFundCode(codes.get(i));
+            item.setTotalReturn(percent(totalReturns[i]));
+            item.setRelativeReturn(percent(totalReturns[i] - averageReturn));
+            item.setAnnualizedVolatility(m > 1 ? percent(volatilities[i]) : null);
+            performance.add(item);
+        }
+
+        List<LocalDate> dates = new ArrayList<>(m);
+        for (int k = 1; k <= m; k++) {
+            dates.add(LocalDate.ofEpochDay(alignedDays[k]));
+        }
+        vo.setBaseDate(LocalDate.ofEpochDay(alignedDays[0]));
+        vo.setDates(dates);
+        vo.setCorrelationMatrix(correlation);
+        vo.setPerformance(performance);
+        if (includeReturns) {
+            Map<String, double[]> dailyReturns = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                double[] r = returns[i];
+                for (int k = 0; k < m; k++) {
+                    r[k] = round(r[k] * 100);
+                }
+                dailyReturns.put(codes.get(i), r);
+            }
+            vo.setDailyReturns(dailyReturns);
+        }
+        return vo;
+    }
+
+    private Map<String, Column> loadFromStore(List<String> fundCodes, LocalDate startDate, LocalDate endDate) {
+        int startDay = (int) startDate.toEpochDay();
+        int endDay = (int) endDate.toEpochDay();
+        Map<String, Column> columns = new HashMap<>();
+        for (String fundCode : fundCodes) {
+            NavSeries series = fundNavSeriesService.getSeries(fundCode);
+            if (series == null) {
+                continue;
+            }
+            int from = series.lowerBound(startDay);
+            int to = series.upperBound(endDay);
+            boolean useAccum = true;
+            for (int i = from; i < to && useAccum; i++) {
+                useAccum = series.accumNav(i) != NavSeries.NULL_VALUE;
+            }
+            int[] days = new int[to - from];
+            double[] navs = new double[to - from];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                long nav = useAccum ? series.accumNav(i) : series.unitNav(i);
+                if (nav > 0) {
+                    days[count] = series.day(i);
+                    navs[count] = nav;
+                    count++;
+                }
+            }
+            columns.put(fundCode, new Column(Arrays.copyOf(days, count), Arrays.copyOf(navs, count)));
+        }
+        return columns;
+    }
+
+    private Map<String, Column> loadFromDatabase(List<String> fundCodes, LocalDate startDate, LocalDate endDate) {
+        List<FundNetValue> rows = fundNetValueMapper.findNetValueTrendByDateRange(
+            fundCodes, startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX));
+        // 结果按基金代码、日期升序，逐段切出每只基金
+        Map<String, Column> columns = new HashMap<>();
+        int begin = 0;
+        while (begin < rows.size()) {
+            String fundCode = rows.get(begin).getFundCode();
+            int end = begin;
+            boolean useAccum = true;
+            while (end < rows.size() && fundCode.equals(rows.get(end).getFundCode())) {
+                useAccum &= rows.get(end).getAccumNetValue() != null;
+                end++;
+            }
+            int[] days = new int[end - begin];
+            double[] navs = new double[end - begin];
+            int count = 0;
+            for (int i = begin; i < end; i++) {
+                FundNetValue row = rows.get(i);
+                BigDecimal nav = useAccum ? row.getAccumNetValue() : row.getUnitNetValue();
+                int day = row.getEndDate() == null ? Integer.MIN_VALUE : (int) row.getEndDate().toLocalDate().toEpochDay();
+                if (nav != null && nav.signum() > 0 && (count == 0 || day > days[count - 1])) {
+                    days[count] = day;
+                    navs[count] = nav.doubleValue();
+                    count++;
+                }
+            }
+            columns.put(fundCode, new Column(Arrays.copyOf(days, count), Arrays.copyOf(navs, count)));
+            begin = end;
+        }
+        return columns;
+    }
+
+    /**
+     * 两个升序日期数组的交集
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * 取出基金在每个共同交易日上的净值（共同交易日是该基金日期列的子集）
+     */
+    private static double[] alignNavs(Column column, int[] alignedDays) {
+        double[] navs = new double[alignedDays.length];
+        int j = 0;
+        for (int k = 0; k < alignedDays.length; k++) {
+            while (column.days()[j] < alignedDays[k]) {
+                j++;
+            }
+            navs[k] = column.navs()[j];
+        }
+        return navs;
+    }
+
+    private static double round(double value) {
+        return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static BigDecimal percent(double value) {
+        return BigDecimal.valueOf(value * 100).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,530 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.nanyin.common.Csv;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.mapper.FundNetValuePerfRankMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+import com.whu.nanyin.pojo.vo.IngestionResultVO;
+import com.whu.nanyin.service.FundDataIngestionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 基金净值与业绩排名数据导入服务实现类
+ *
+ * 导入流程：
+ * 1. 单线程顺序读取 CSV，按表头把每一行绑定成实体，同一文件内重复的 (基金代码, 日期) 以后出现的为准
+ * 2. 读满 chunk-size 行后，在下一只基金开始时（基金边界）把缓冲区中的基金整体打成一个分块，
+ *    按 (fund_code, end_date) 排序后交给写入线程池；同一只基金的行只进入一个分块，不会被两个事务并行写入，
+ *    排序使各事务按唯一键的同一顺序加锁，降低并行写入之间的死锁概率。
+ *    文件未按基金分组、已写出的基金再次出现时，先等此前的分块全部结束再提交包含它的分块
+ * 3. 每个分块在独立事务中以多行 INSERT ... ON DUPLICATE KEY UPDATE 写入（每条语句 500 行），
+ *    遇到死锁或锁等待超时整块重试，仍然失败的分块计入结果，不影响其他分块
+ * 4. 同时在途的分块数受信号量限制，读取速度超过写入速度时读取线程阻塞，内存占用有上限
+ * 5. 全部分块结束后，以写入成功的基金代码发布 NavUpdatedEvent
+ */
+@Slf4j
+@Service
+public class FundDataIngestionServiceImpl implements FundDataIngestionService {
+
+    /**
+     * 单条 upsert 语句包含的行数
+     */
+    private static final int STATEMENT_BATCH_SIZE = 500;
+
+    /**
+     * 分块遇到死锁/锁超时时的最多尝试次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 格式错误的行最多打印多少条日志
+     */
+    private static final int MAX_LOGGED_REJECTS = 10;
+
+    private static final String NET_VALUE_FILE_PREFIX = "nav_";
+    private static final String PERF_RANK_FILE_PREFIX = "perf_rank_";
+    private static final String CSV_SUFFIX = ".csv";
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    @Autowired
+    private FundNetValuePerfRankMapper fundNetValuePerfRankMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${nanyin.ingestion.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 收件目录，上游把文件写完后再移动（重命名）到这里
+     */
+    @Value("${nanyin.ingestion.inbox-dir:./data/inbox}")
+    private String inboxDir;
+
+    /**
+     * 并行写入的线程数
+     */
+    @Value("${nanyin.ingestion.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 每个分块（一个事务）的目标行数，在基金边界切块，单只基金行数较多时分块会超过该值
+     */
+    @Value("${nanyin.ingestion.chunk-size:2000}")
+    private int chunkSize;
+
+    private ExecutorService writers;
+
+    /**
+     * 扫描收件目录的后台线程，避免长时间的导入占用定时任务线程
+     */
+    private final ExecutorService inboxWorker = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("ingestion-inbox").setDaemon(true).build());
+
+    private final AtomicBoolean scanning = new AtomicBoolean();
+
+    @PostConstruct
+    public void initWriters() {
+        // 在途分块数由信号量限制，队列长度不会超过 parallelism 个
+        writers = new ThreadPoolExecutor(parallelism, parallelism,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("ingestion-writer-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        inboxWorker.shutdownNow();
+        writers.shutdown();
+    }
+
+    @Override
+    public IngestionResultVO ingestNetValues(String source, InputStream in) throws IOException {
+        return ingest(source, in, FundNetValue.class, NavUpdatedEvent.DataType.NET_VALUE,
+            rows -> fundNetValueMapper.upsertNetValues(rows));
+    }
+
+    @Override
+    public IngestionResultVO ingestPerfRanks(String source, InputStream in) throws IOException {
+        return ingest(source, in, FundNetValuePerfRank.class, NavUpdatedEvent.DataType.PERF_RANK,
+            rows -> fundNetValuePerfRankMapper.upsertPerfRanks(rows));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.ingestion.inbox-scan-interval-ms:60000}",
+               initialDelayString = "${nanyin.ingestion.inbox-scan-interval-ms:60000}")
+    public void scanInbox() {
+        if (!enabled || !scanning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            inboxWorker.execute(() -> {
+                try {
+                    processInbox();
+                } catch (Exception e) {
+                    log.warn("[Ingestion] Inbox scan failed: {}", e.getMessage());
+                } finally {
+                    scanning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scanning.set(false);
+        }
+    }
+
+    private void processInbox() throws IOException {
+        Path inbox = Paths.get(inboxDir).toAbsolutePath();
+        if (!Files.isDirectory(inbox)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> children = Files.list(inbox)) {
+            // 文件名排序后 nav_ 在 perf_rank_ 之前，同一天的净值先于业绩排名入库
+            files = children
+                .filter(Files::isRegularFile)
+                .filter(p -> dataTypeOf(p) != null)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean succeeded;
+            try (InputStream in = Files.newInputStream(file)) {
+                IngestionResultVO result = dataTypeOf(file) == NavUpdatedEvent.DataType.NET_VALUE
+                    ? ingestNetValues(name, in)
+                    : ingestPerfRanks(name, in);
+                succeeded = result.getFailedChunks() == 0;
+            } catch (Exception e) {
+                log.error("[Ingestion] Failed to ingest {}: {}", name, e.getMessage());
+                succeeded = false;
+            }
+            moveTo(file, inbox.resolve(succeeded ? "done" : "failed"));
+        }
+    }
+
+    private static NavUpdatedEvent.DataType dataTypeOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (!name.endsWith(CSV_SUFFIX)) {
+            return null;
+        }
+        if (name.startsWith(NET_VALUE_FILE_PREFIX)) {
+            return NavUpdatedEvent.DataType.NET_VALUE;
+        }
+        if (name.startsWith(PERF_RANK_FILE_PREFIX)) {
+            return NavUpdatedEvent.DataType.PERF_RANK;
+        }
+        return null;
+    }
+
+    private static void moveTo(Path file, Path dir) {
+        try {
+            Files.createDirectories(dir);
+            Files.move(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // 文件留在收件目录，下一轮会被再次导入，导入是幂等的
+            log.error("[Ingestion] Failed to move {} to {}: {}", file.getFileName(), dir, e.getMessage());
+        }
+    }
+
+    /**
+     * 导入的通用流程，entityType 决定表头与实体字段的对应关系
+     */
+    private <T> IngestionResultVO ingest(String source, InputStream in, Class<T> entityType,
+                                         NavUpdatedEvent.DataType dataType, Consumer<List<T>> upsert) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IOException("导入文件为空：" + source);
+        }
+        if (headerLine.startsWith("\uFEFF")) {
+            headerLine = headerLine.substring(1);
+        }
+        RowBinder<T> binder = RowBinder.of(entityType, Csv.parseLine(headerLine));
+
+        IngestionRun run = new IngestionRun(parallelism * 2);
+        Map<String, TreeMap<LocalDateTime, T>> buffer = new HashMap<>();
+        long rowsRead = 0;
+        long rowsRejected = 0;
+        int buffered = 0;
+        int lineNo = 1;
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                rowsRead++;
+                T row;
+                try {
+                    row = binder.bind(Csv.parseLine(line));
+                } catch (RuntimeException e) {
+                    if (++rowsRejected <= MAX_LOGGED_REJECTS) {
+                        log.warn("[Ingestion] {} line {} rejected: {}", source, lineNo, e.getMessage());
+                    }
+                    continue;
+                }
+                String fundCode = binder.fundCode(row);
+                // 只在基金边界切块：缓冲区已满且这一行属于缓冲区之外的基金
+                if (buffered >= chunkSize && !buffer.containsKey(fundCode)) {
+                    submit(run, toChunk(buffer, binder), upsert, source);
+                    buffer = new HashMap<>();
+                    buffered = 0;
+                }
+                T previous = buffer.computeIfAbsent(fundCode, k -> new TreeMap<>()).put(binder.endDate(row), row);
+                if (previous == null) {
+                    buffered++;
+                }
+            }
+            if (!buffer.isEmpty()) {
+                submit(run, toChunk(buffer, binder), upsert, source);
+            }
+        } finally {
+            // 读取中途出错时也要等已提交的分块结束，保证已写入的基金会发布事件
+            run.awaitAll();
+        }
+
+        IngestionResultVO result = new IngestionResultVO();
+        result.setSource(source);
+        result.setDataType(dataType.name());
+        result.setRowsRead(rowsRead);
+        result.setRowsWritten(run.rowsWritten.get());
+        result.setRowsRejected(rowsRejected);
+        result.setFundCount(run.fundCodes.size());
+        result.setFailedChunks(run.failedChunks.get());
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        log.info("[Ingestion] {} ({}): read {}, written {}, rejected {}, funds {}, failed chunks {}, {} ms",
+            source, dataType, rowsRead, result.getRowsWritten(), rowsRejected,
+            result.getFundCount(), result.getFailedChunks(), result.getElapsedMs());
+
+        if (!run.fundCodes.isEmpty()) {
+            eventPublisher.publishEvent(new NavUpdatedEvent(dataType, source,
+                Set.copyOf(run.fundCodes), run.minDate, run.maxDate));
+        }
+        return result;
+    }
+
+    /**
+     * 把缓冲区中的基金打成一个分块，行按 (fund_code, end_date) 升序排列
+     */
+    private static <T> Chunk<T> toChunk(Map<String, TreeMap<LocalDateTime, T>> buffer, RowBinder<T> binder) {
+        List<String> fundCodes = new ArrayList<>(buffer.keySet());
+        fundCodes.sort(null);
+        List<T> rows = new ArrayList<>();
+        LocalDate minDate = null;
+        LocalDate maxDate = null;
+        for (String fundCode : fundCodes) {
+            TreeMap<LocalDateTime, T> byDate = buffer.get(fundCode);
+            rows.addAll(byDate.values());
+            LocalDate first = byDate.firstKey().toLocalDate();
+            LocalDate last = byDate.lastKey().toLocalDate();
+            minDate = minDate == null || first.isBefore(minDate) ? first : minDate;
+            maxDate = maxDate == null || last.isAfter(maxDate) ? last : maxDate;
+        }
+        return new Chunk<>(rows, fundCodes, minDate, maxDate);
+    }
+
+    private <T> void submit(IngestionRun run, Chunk<T> chunk, Consumer<List<T>> upsert, String source) throws IOException {
+        if (chunk.fundCodes().stream().anyMatch(run.submittedFunds::contains)) {
+            // 同一只基金再次出现（文件未按基金分组）：等包含它的分块写完，不与之并行写入
+            run.awaitAll();
+        }
+        run.submittedFunds.addAll(chunk.fundCodes());
+        try {
+            run.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("导入被中断：" + source, e);
+        }
+        run.pending.add(CompletableFuture
+            .runAsync(() -> writeChunk(run, chunk, upsert, source), writers)
+            .whenComplete((ignored, e) -> run.permits.release()));
+    }
+
+    /**
+     * 在一个事务中写入整个分块，死锁或锁等待超时时整块重试
+     */
+    private <T> void writeChunk(IngestionRun run, Chunk<T> chunk, Consumer<List<T>> upsert, String source) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    Lists.partition(chunk.rows(), STATEMENT_BATCH_SIZE).forEach(upsert));
+                run.recordSuccess(chunk);
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    log.error("[Ingestion] {} chunk of {} funds failed after {} attempts: {}",
+                        source, chunk.fundCodes().size(), attempt, e.getMessage());
+                    run.failedChunks.incrementAndGet();
+                    return;
+                }
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    run.failedChunks.incrementAndGet();
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("[Ingestion] {} chunk of {} funds failed: {}", source, chunk.fundCodes().size(), e.getMessage());
+                run.failedChunks.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 一个写入分块：一个事务内写入的若干只基金的全部行
+     */
+    private record Chunk<T>(List<T> rows, List<String> fundCodes, LocalDate minDate, LocalDate maxDate) {
+    }
+
+    /**
+     * 一次导入过程中各写入线程共享的状态
+     */
+    private static final class IngestionRun {
+        private final Semaphore permits;
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        // 已提交过的基金代码，只由导入线程访问
+        private final Set<String> submittedFunds = new HashSet<>();
+        private final Set<String> fundCodes = ConcurrentHashMap.newKeySet();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        // 只在 recordSuccess 中写入；导入线程在 awaitAll 之后读取，由 join 保证可见性
+        private LocalDate minDate;
+        private LocalDate maxDate;
+
+        private IngestionRun(int maxInFlight) {
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        private synchronized void recordSuccess(Chunk<?> chunk) {
+            fundCodes.addAll(chunk.fundCodes());
+            rowsWritten.addAndGet(chunk.rows().size());
+            minDate = minDate == null || chunk.minDate().isBefore(minDate) ? chunk.minDate() : minDate;
+            maxDate = maxDate == null || chunk.maxDate().isAfter(maxDate) ? chunk.maxDate() : maxDate;
+        }
+
+        private void awaitAll() {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        }
+    }
+
+    /**
+     * 根据 CSV 表头把一行文本绑定成实体。
+     * 表头列名与数据库字段名对应（取自 MyBatis-Plus 的表结构元数据），未知的列（例如 seq）会被忽略。
+     */
+    private static final class RowBinder<T> {
+        private final Class<T> entityType;
+        private final Field[] fieldsByColumn;
+        private final Field fundCodeField;
+        private final Field endDateField;
+
+        private RowBinder(Class<T> entityType, Field[] fieldsByColumn, Field fundCodeField, Field endDateField) {
+            this.entityType = entityType;
+            this.fieldsByColumn = fieldsByColumn;
+            this.fundCodeField = fundCodeField;
+            this.endDateField = endDateField;
+        }
+
+        static <T> RowBinder<T> of(Class<T> entityType, List<String> header) throws IOException {
+            TableInfo tableInfo = TableInfoHelper.getTableInfo(entityType);
+            if (tableInfo == null) {
+                throw new IOException("未找到实体的表结构信息：" + entityType.getSimpleName());
+            }
+            Map<String, Field> byColumn = new HashMap<>();
+            for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+                Field field = fieldInfo.getField();
+                ReflectionUtils.makeAccessible(field);
+                byColumn.put(fieldInfo.getColumn().toLowerCase(Locale.ROOT), field);
+            }
+            Field[] fields = new Field[header.size()];
+            Field fundCodeField = null;
+            Field endDateField = null;
+            for (int i = 0; i < header.size(); i++) {
+                Field field = byColumn.get(header.get(i).trim().toLowerCase(Locale.ROOT));
+                fields[i] = field;
+                if (field != null && "fundCode".equals(field.getName())) {
+                    fundCodeField = field;
+                } else if (field != null && "endDate".equals(field.getName())) {
+                    endDateField = field;
+                }
+            }
+            if (fundCodeField == null || endDateField == null) {
+                throw new IOException("导入文件的表头必须包含 fund_code 和 end_date 列");
+            }
+            return new RowBinder<>(entityType, fields, fundCodeField, endDateField);
+        }
+
+        T bind(List<String> cells) {
+            if (cells.size() != fieldsByColumn.length) {
+                throw new IllegalArgumentException("列数 " + cells.size() + " 与表头列数 " + fieldsByColumn.length + " 不一致");
+            }
+            T entity = BeanUtils.instantiateClass(entityType);
+            for (int i = 0; i < cells.size(); i++) {
+                Field field = fieldsByColumn[i];
+                String cell = cells.get(i).trim();
+                if (field != null && !cell.isEmpty()) {
+                    ReflectionUtils.setField(field, entity, convert(cell, field.getType()));
+                }
+            }
+            if (fundCode(entity) == null || endDate(entity) == null) {
+                throw new IllegalArgumentException("fund_code 和 end_date 不能为空");
+            }
+            return entity;
+        }
+
+        String fundCode(T entity) {
+            return (String) ReflectionUtils.getField(fundCodeField, entity);
+        }
+
+        LocalDateTime endDate(T entity) {
+            return (LocalDateTime) ReflectionUtils.getField(endDateField, entity);
+        }
+
+        private static Object convert(String text, Class<?> type) {
+            if (type == String.class) {
+                return text;
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(text);
+            }
+            if (type == Integer.class) {
+                return Integer.valueOf(text);
+            }
+            if (type == Long.class) {
+                return Long.valueOf(text);
+            }
+            if (type == LocalDateTime.class) {
+                // 兼容 2024-01-02、2024-01-02 15:00:00 和 2024-01-02T15:00:00
+                return text.length() == 10
+                    ? LocalDate.parse(text).atStartOfDay()
+                    : LocalDateTime.parse(text.replace(' ', 'T'));
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+            }
+            throw new IllegalArgumentException("不支持的字段类型：" + type.getSimpleName());
+        }
+    }
+}
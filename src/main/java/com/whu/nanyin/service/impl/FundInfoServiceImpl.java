@@ -2,21 +2,54 @@ package com.whu.nanyin.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.nanyin.common.Downsampling;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.whu.nanyin.event.NavUpdatedEvent;
 import com.whu.nanyin.mapper.FundBasicInfoMapper;
 import com.whu.nanyin.mapper.FundNetValueMapper;
-import com.whu.nanyin.mapper.FundNetValuePerfRankMapper;
 import com.whu.nanyin.pojo.entity.FundBasicInfo;
 import com.whu.nanyin.pojo.entity.FundNetValue;
 import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
 import com.whu.nanyin.pojo.vo.FundDetailVO;
+import com.whu.nanyin.pojo.vo.FundRiskMetricsVO;
 import com.whu.nanyin.service.FundInfoService;
+import com.whu.nanyin.service.FundLatestPerfService;
+import com.whu.nanyin.service.FundNavSeriesService;
+import com.whu.nanyin.service.FundRiskMetricsService;
+import com.whu.nanyin.service.FundSearchIndexService;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import com.whu.nanyin.pojo.vo.FundNetValueTrendVO;
 
@@ -28,7 +61,38 @@ public class FundInfoServiceImpl implements FundInfoService {
     @Autowired
     private FundNetValueMapper fundNetValueMapper;
     @Autowired
-    private FundNetValuePerfRankMapper fundNetValuePerfRankMapper;
+    private FundLatestPerfService fundLatestPerfService;
+    @Autowired
+    private FundSearchIndexService fundSearchIndexService;
+    @Autowired
+    private FundNavSeriesService fundNavSeriesService;
+    @Autowired
+    private FundRiskMetricsService fundRiskMetricsService;
+
+    /**
+     * 基金详情缓存的存活时间（秒）与最大条目数
+     */
+    @Value("${nanyin.fund-detail.cache-ttl-seconds:60}")
+    private long detailCacheTtlSeconds;
+    @Value("${nanyin.fund-detail.cache-max-size:2000}")
+    private long detailCacheMaxSize;
+
+    /**
+     * 缓存未命中时并行加载详情各部分数据的线程数
+     */
+    @Value("${nanyin.fund-detail.loader-threads:8}")
+    private int detailLoaderThreads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 流式输出净值走势时每行最多包含的点数
+     */
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private Cache<DetailKey, Optional<FundDetailVO>> detailCache;
+    private ExecutorService detailLoader;
 
     /**
      * 获取基金超市的列表页数据
@@ -40,6 +104,8 @@ public class FundInfoServiceImpl implements FundInfoService {
      * 
      * 采用高效的"先过滤ID，再分页查询，最后内存拼接"的策略，
      * 确保了数据正确性（只显示有净值的基金）和高性能（避免慢查询）。
+     * 关键词筛选与分页由进程内的 n-gram 搜索索引完成（见 FundSearchIndexService），
+     * 避免了 LIKE '%关键词%' 导致的全表扫描。
      * 
      * @param page 分页参数对象，包含当前页码和每页显示条数
      * @param fundCode 基金代码（可选，支持模糊查询）
@@ -50,40 +116,106 @@ public class FundInfoServiceImpl implements FundInfoService {
     @Override
     public Page<FundBasicInfo> getFundBasicInfoPage(Page<FundBasicInfo> page, String fundCode, String fundName, String fundType) {
 
-        // --- 步骤 1: 构建对 fund_basic_info 主表的查询条件 ---
-        QueryWrapper<FundBasicInfo> queryWrapper = new QueryWrapper<>();
+        // 将前端传来的中文类型名称转换为数据库中的代码，未知类型不进行筛选
+        String fundTypeCode = StringUtils.hasText(fundType) ? translateFundType(fundType) : null;
 
-        // 处理搜索框输入的关键词，支持同时匹配基金名称、简称和代码
-        // 这是基金超市页面的主要搜索功能，用户可以输入任意关键词进行模糊查询
-        if (StringUtils.hasText(fundName)) {
-            queryWrapper.and(wrapper -> wrapper.like("fund_name", fundName)  // 匹配基金全称
-                .or().like("abbreviation", fundName)                      // 匹配基金简称
-                .or().like("fund_code", fundName));                      // 匹配基金代码
+        // --- 步骤 1 & 2: 按条件筛选并分页 ---
+        // 优先走进程内的 n-gram 搜索索引，完全不访问 fund_basic_info 表；
+        // 索引尚未就绪时（例如刚启动、数据库暂时不可用）回退到数据库的 LIKE 查询
+        if (fundSearchIndexService.isReady()) {
+            fundSearchIndexService.search(page, fundName, fundTypeCode);
+        } else {
+            searchFromDatabase(page, fundName, fundTypeCode);
         }
-        
-        // 处理基金类型筛选条件
-        // 这是基金超市页面的分类筛选功能，用户可以选择特定类型的基金
-        if (StringUtils.hasText(fundType)) {
-            // 将前端传来的中文类型名称转换为数据库中的代码
-            String fundTypeCode = translateFundType(fundType);
-            if (fundTypeCode != null) {
-                queryWrapper.eq("fund_invest_type", fundTypeCode);
+
+        // --- 步骤 3: 在内存中，为当前页的数据拼接上最新业绩 ---
+        fillLatestPerformance(page.getRecords());
+
+        // 返回完整的分页结果，包含基金基本信息和最新业绩数据
+        return page;
+    }
+
+
+
+    /**
+     * 以游标（Keyset）分页方式为"基金超市"提供条件搜索
+     *
+     * 与 getFundBasicInfoPage 的区别：
+     * 1. 不使用 OFFSET，而是以上一页最后一条记录的基金代码为起点向后"定位"，翻页深度不影响单页代价
+     * 2. 默认不计算总数，只有 withTotal 为 true 时才返回一个估算值，彻底省掉 COUNT(*)
+     *
+     * @param cursor 上一页返回的游标（即上一页最后一条记录的基金代码），为空表示第一页
+     * @param size 每页显示条数
+     * @param fundName 基金名称或搜索关键词（可选，支持模糊查询）
+     * @param fundType 基金类型（可选，精确匹配）
+     * @param withTotal 是否需要返回估算的总记录数
+     * @return 游标分页结果
+     */
+    @Override
+    public CursorPageVO<FundBasicInfo> getFundBasicInfoCursorPage(String cursor, int size, String fundName, String fundType, boolean withTotal) {
+        String fundTypeCode = StringUtils.hasText(fundType) ? translateFundType(fundType) : null;
+
+        CursorPageVO<FundBasicInfo> result;
+        if (fundSearchIndexService.isReady()) {
+            // 索引中的命中数是精确且免费的，直接作为"估算值"返回
+            result = fundSearchIndexService.searchAfter(cursor, size, fundName, fundTypeCode);
+            if (!withTotal) {
+                result.setEstimatedTotal(null);
             }
+        } else {
+            result = seekFromDatabase(cursor, size, fundName, fundTypeCode, withTotal);
         }
-        
-        // 默认按基金代码升序排列，保证列表顺序稳定
-        queryWrapper.orderByAsc("fund_code");
 
-        // --- 步骤 2: 对 fund_basic_info 表执行快速的分页查询 ---
-        // 这一步使用MyBatis-Plus的分页插件进行高效分页
-        // 只查询基本信息表，不包含净值和涨跌幅数据
-        fundBasicInfoMapper.selectPage(page, queryWrapper);
+        // 为当前页的数据拼接上最新业绩，逻辑与普通分页完全一致
+        fillLatestPerformance(result.getRecords());
+        return result;
+    }
 
-        // --- 步骤 3: 在内存中，为当前页的数据拼接上最新业绩 ---
-        // 获取当前页的基金列表
-        List<FundBasicInfo> basicInfoRecords = page.getRecords();
-        if (basicInfoRecords.isEmpty()) {
-            return page; // 如果当前页没有数据，直接返回空列表
+    /**
+     * 游标分页的数据库查询方式，仅在搜索索引未就绪时使用。
+     * 通过 fund_code > 游标 + ORDER BY fund_code + LIMIT size+1 实现 seek，
+     * 多查的一条只用来判断是否还有下一页。
+     */
+    private CursorPageVO<FundBasicInfo> seekFromDatabase(String cursor, int size, String keyword, String fundTypeCode, boolean withTotal) {
+        QueryWrapper<FundBasicInfo> queryWrapper = new QueryWrapper<>();
+        if (StringUtils.hasText(keyword)) {
+            queryWrapper.and(wrapper -> wrapper.like("fund_name", keyword)
+                .or().like("abbreviation", keyword)
+                .or().like("fund_code", keyword));
+        }
+        if (fundTypeCode != null) {
+            queryWrapper.eq("fund_invest_type", fundTypeCode);
+        }
+        if (StringUtils.hasText(cursor)) {
+            queryWrapper.gt("fund_code", cursor);
+        }
+        queryWrapper.orderByAsc("fund_code").last("LIMIT " + (size + 1));
+
+        // 使用selectList而不是selectPage，分页插件不会再追加COUNT(*)查询
+        List<FundBasicInfo> rows = fundBasicInfoMapper.selectList(queryWrapper);
+        boolean hasMore = rows.size() > size;
+        List<FundBasicInfo> records = hasMore ? new ArrayList<>(rows.subList(0, size)) : rows;
+
+        CursorPageVO<FundBasicInfo> result = new CursorPageVO<>();
+        result.setRecords(records);
+        result.setSize(size);
+        result.setHasMore(hasMore);
+        result.setNextCursor(hasMore ? records.get(records.size() - 1).getFundCode() : null);
+        // 只有无筛选条件时，表统计信息中的行数才有参考意义；有筛选条件时宁可不给也不给错的
+        if (withTotal && !StringUtils.hasText(keyword) && fundTypeCode == null) {
+            result.setEstimatedTotal(fundBasicInfoMapper.estimateRowCount());
+        }
+        return result;
+    }
+
+    /**
+     * 为基金列表补充最新的净值和涨跌幅数据（直接修改传入的对象）
+     *
+     * @param basicInfoRecords 当前页的基金列表
+     */
+    private void fillLatestPerformance(List<FundBasicInfo> basicInfoRecords) {
+        if (basicInfoRecords == null || basicInfoRecords.isEmpty()) {
+            return; // 如果当前页没有数据，无需补充
         }
 
         // 提取当前页所有基金的代码，用于批量查询最新业绩
@@ -91,11 +223,9 @@ public class FundInfoServiceImpl implements FundInfoService {
                 .map(FundBasicInfo::getFundCode)
                 .collect(Collectors.toList());
 
-        // 批量查询当前页所有基金的最新业绩数据（净值和涨跌幅）
-        // 这里使用自定义SQL查询，一次性获取所有基金的最新业绩，避免N+1查询问题
-        Map<String, FundNetValuePerfRank> perfRankMap = fundNetValuePerfRankMapper.findLatestPerfRankByFundCodes(fundCodesOnPage)
-                .stream()
-                .collect(Collectors.toMap(FundNetValuePerfRank::getFundCode, perf -> perf));
+        // 批量获取当前页所有基金的最新业绩数据（净值和涨跌幅）
+        // 直接命中内存中的最新业绩快照，不再对业绩历史表做 MAX(end_date) 聚合
+        Map<String, FundNetValuePerfRank> perfRankMap = fundLatestPerfService.getLatest(fundCodesOnPage);
 
         // 在Java内存中将业绩数据关联到基金基本信息对象
         // 这是基金超市页面显示最新净值和涨跌幅的数据来源
@@ -108,69 +238,189 @@ public class FundInfoServiceImpl implements FundInfoService {
                 basicInfo.setDailyGrowthRate(performance.getDailyGrowthRate());
             }
         }
-
-        // 返回完整的分页结果，包含基金基本信息和最新业绩数据
-        return page;
     }
 
+    /**
+     * 基金超市列表的数据库查询方式，仅在搜索索引未就绪时使用。
+     *
+     * @param page 分页参数对象
+     * @param keyword 搜索关键词，同时匹配基金全称、简称和代码
+     * @param fundTypeCode 基金类型代码（可选，精确匹配）
+     */
+    private void searchFromDatabase(Page<FundBasicInfo> page, String keyword, String fundTypeCode) {
+        // --- 构建对 fund_basic_info 主表的查询条件 ---
+        QueryWrapper<FundBasicInfo> queryWrapper = new QueryWrapper<>();
+
+        // 处理搜索框输入的关键词，支持同时匹配基金名称、简称和代码
+        if (StringUtils.hasText(keyword)) {
+            queryWrapper.and(wrapper -> wrapper.like("fund_name", keyword)  // 匹配基金全称
+                .or().like("abbreviation", keyword)                      // 匹配基金简称
+                .or().like("fund_code", keyword));                      // 匹配基金代码
+        }
+
+        // 处理基金类型筛选条件
+        if (fundTypeCode != null) {
+            queryWrapper.eq("fund_invest_type", fundTypeCode);
+        }
+
+        // 默认按基金代码升序排列，保证列表顺序稳定
+        queryWrapper.orderByAsc("fund_code");
+
+        // 使用MyBatis-Plus的分页插件进行分页，只查询基本信息表
+        fundBasicInfoMapper.selectPage(page, queryWrapper);
+    }
 
+    /**
+     * 获取基金详情（默认附带过去一年的净值历史）
+     *
+     * @param fundCode 基金代码
+     * @return 包含完整基金详情数据的FundDetailVO对象，基金不存在时返回null
+     */
+    @Override
+    public FundDetailVO getFundDetail(String fundCode) {
+        return getFundDetail(fundCode, LocalDate.now().minusYears(1), null);
+    }
 
     /**
      * 获取基金详情
      * 
      * 该方法是基金详情页的核心业务逻辑，负责聚合基金的所有相关数据：
      * 1. 从fund_basic_info表获取基金的基本信息
-     * 2. 从fund_net_value_perf_rank表获取最新的业绩表现与排名数据
-     * 3. 从fund_net_value表获取过去一年的净值历史数据
+     * 2. 从最新业绩快照获取最新的业绩表现与排名数据
+     * 3. 从fund_net_value表获取调用方指定区间的净值历史数据
      * 
-     * 这些数据被组装到FundDetailVO对象中，用于在基金详情页展示
+     * 组装好的详情按（基金代码, 历史区间）缓存，缓存未命中时三部分数据并行加载。
+     * 缓存中的对象会被多个请求共享，调用方不应修改返回值。
      * 
      * @param fundCode 基金代码
-     * @return 包含完整基金详情数据的FundDetailVO对象
+     * @param historyStart 净值历史的开始日期（含），为null表示不需要净值历史
+     * @param historyEnd 净值历史的结束日期（含），为null表示截至最新
+     * @return 包含基金详情数据的FundDetailVO对象，基金不存在时返回null
      */
     @Override
-    public FundDetailVO getFundDetail(String fundCode) {
-        // 创建返回对象
-        FundDetailVO detailVO = new FundDetailVO();
-        
-        // 1. 获取基金基本信息
-        FundBasicInfo basicInfo = fundBasicInfoMapper.selectOne(
-            new QueryWrapper<FundBasicInfo>().eq("fund_code", fundCode)
-        );
+    public FundDetailVO getFundDetail(String fundCode, LocalDate historyStart, LocalDate historyEnd) {
+        if (!StringUtils.hasText(fundCode)) {
+            return null;
+        }
+        DetailKey key = new DetailKey(fundCode, historyStart, historyStart == null ? null : historyEnd);
+        try {
+            return detailCache.get(key, () -> Optional.ofNullable(loadFundDetail(key))).orElse(null);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public void evictFundDetail(String fundCode) {
+        if (fundCode != null) {
+            detailCache.asMap().keySet().removeIf(key -> fundCode.equals(key.fundCode()));
+        }
+    }
+
+    @Override
+    public void evictAllFundDetails() {
+        detailCache.invalidateAll();
+    }
+
+    /**
+     * 净值或业绩数据导入后，使受影响基金的详情缓存失效（一次遍历缓存，与导入的基金数量无关）
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        Set<String> fundCodes = event.getFundCodes();
+        detailCache.asMap().keySet().removeIf(key -> fundCodes.contains(key.fundCode()));
+    }
+
+    /**
+     * 缓存未命中时并行加载基本信息、最新业绩、净值历史和风险指标，再组装成详情对象。
+     */
+    private FundDetailVO loadFundDetail(DetailKey key) {
+        String fundCode = key.fundCode();
+
+        // 1. 基金基本信息
+        CompletableFuture<FundBasicInfo> basicInfoFuture = CompletableFuture.supplyAsync(() ->
+            fundBasicInfoMapper.selectOne(new QueryWrapper<FundBasicInfo>().eq("fund_code", fundCode)), detailLoader);
+
+        // 2. 最新业绩表现与排名，从最新业绩快照中读取
+        CompletableFuture<FundNetValuePerfRank> perfFuture = CompletableFuture.supplyAsync(() ->
+            fundLatestPerfService.getLatest(fundCode), detailLoader);
+
+        // 3. 指定区间的净值历史，按日期升序排列，便于前端直接绘制图表
+        //    列式存储就绪时直接在内存映射的序列上截取区间，无需访问数据库
+        CompletableFuture<List<FundNetValue>> historyFuture = key.historyStart() == null
+            ? CompletableFuture.completedFuture(List.of())
+            : fundNavSeriesService.isReady()
+            ? CompletableFuture.completedFuture(fundNavSeriesService.getHistory(fundCode, key.historyStart(), key.historyEnd()))
+            : CompletableFuture.supplyAsync(() -> {
+                QueryWrapper<FundNetValue> wrapper = new QueryWrapper<FundNetValue>()
+                    .eq("fund_code", fundCode)
+                    .ge("end_date", key.historyStart());
+                if (key.historyEnd() != null) {
+                    wrapper.lt("end_date", key.historyEnd().plusDays(1));
+                }
+                return fundNetValueMapper.selectList(wrapper.orderByAsc("end_date"));
+            }, detailLoader);
+
+        // 4. 风险指标，由缓存的流式累加器增量计算
+        CompletableFuture<FundRiskMetricsVO> riskFuture = CompletableFuture.supplyAsync(() ->
+            fundRiskMetricsService.getRiskMetrics(fundCode), detailLoader);
+
+        try {
+            CompletableFuture.allOf(basicInfoFuture, perfFuture, historyFuture, riskFuture).join();
+        } catch (CompletionException e) {
+            throw propagate(e.getCause());
+        }
+
+        FundBasicInfo basicInfo = basicInfoFuture.join();
         // 如果基金不存在，返回null
         if (basicInfo == null) {
             return null;
         }
-        // 设置基金基本信息
+        FundDetailVO detailVO = new FundDetailVO();
         detailVO.setBasicInfo(basicInfo);
-        
-        // 2. 获取基金最新的业绩表现与排名数据
-        // 通过按日期倒序并限制为1条记录，获取最新的业绩数据
-        FundNetValuePerfRank latestPerf = fundNetValuePerfRankMapper.selectOne(
-            new QueryWrapper<FundNetValuePerfRank>()
-                .eq("fund_code", fundCode)
-                .orderByDesc("end_date")
-                .last("LIMIT 1")
-        );
-        // 设置业绩表现数据
-        detailVO.setPerformance(latestPerf);
-        
-        // 3. 获取过去一年的净值历史数据，用于绘制净值走势图
-        List<FundNetValue> netValueHistory = fundNetValueMapper.selectList(
-            new QueryWrapper<FundNetValue>()
-                .eq("fund_code", fundCode)
-                // 只查询过去一年的数据，减少数据量
-                .ge("end_date", LocalDate.now().minusYears(1))
-                // 按日期升序排列，便于前端直接绘制图表
-                .orderByAsc("end_date")
-        );
-        // 设置净值历史数据
-        detailVO.setNetValueHistory(netValueHistory);
-        
-        // 返回完整的基金详情数据
+        detailVO.setPerformance(perfFuture.join());
+        detailVO.setNetValueHistory(historyFuture.join());
+        detailVO.setRiskMetrics(riskFuture.join());
         return detailVO;
     }
 
+    /**
+     * 将异步加载中抛出的异常原样抛给调用方
+     */
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException("加载基金详情失败", cause);
+    }
+
+    @PostConstruct
+    public void initDetailCache() {
+        detailCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(detailCacheTtlSeconds))
+            .maximumSize(detailCacheMaxSize)
+            .build();
+        // 队列满时由调用线程自己执行加载，起到限流作用，不会丢弃任务
+        detailLoader = new ThreadPoolExecutor(detailLoaderThreads, detailLoaderThreads,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1000),
+            new ThreadFactoryBuilder().setNameFormat("fund-detail-loader-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdownDetailLoader() {
+        detailLoader.shutdown();
+    }
+
+    /**
+     * 详情缓存的 key：基金代码 + 净值历史区间
+     */
+    private record DetailKey(String fundCode, LocalDate historyStart, LocalDate historyEnd) {
+    }
+
     /**
      * 获取所有基金的基础信息列表。
      */
@@ -185,11 +435,30 @@ public class FundInfoServiceImpl implements FundInfoService {
         LocalDateTime startDate,
         LocalDateTime endDate
     ) {
+        return getFundNetValueTrends(fundCodes, startDate, endDate, null);
+    }
+
+    /**
+     * 获取净值走势数据，并可按每只基金的最大点数做 LTTB 降采样。
+     * 降采样保留首尾两点和走势中的主要拐点，使多年、多基金的对比图返回的数据量有上限。
+     */
+    @Override
+    public Map<String, List<FundNetValueTrendVO>> getFundNetValueTrends(
+        List<String> fundCodes,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        Integer maxPoints
+    ) {
+        // 列式存储就绪时直接按日期区间二分截取，不再逐行创建实体再分组
+        if (fundNavSeriesService.isReady()) {
+            return fundNavSeriesService.getTrends(fundCodes, startDate, endDate, maxPoints);
+        }
+
         // 获取原始净值数据
         List<FundNetValue> netValues = fundNetValueMapper.findNetValueTrendByDateRange(fundCodes, startDate, endDate);
         
         // 转换为VO对象并按基金代码分组
-        return netValues.stream()
+        Map<String, List<FundNetValueTrendVO>> trends = netValues.stream()
             .map(nv -> {
                 FundNetValueTrendVO vo = new FundNetValueTrendVO();
                 vo.setFundCode(nv.getFundCode());
@@ -202,6 +471,80 @@ public class FundInfoServiceImpl implements FundInfoService {
                 FundNetValueTrendVO::getFundCode,
                 Collectors.toList()
             ));
+        if (maxPoints != null) {
+            trends.replaceAll((code, points) -> downsample(points, maxPoints));
+        }
+        return trends;
+    }
+
+    /**
+     * 以 NDJSON 流输出净值走势。
+     * 游标逐行读取，当前基金累计到 STREAM_CHUNK_SIZE 个点或切换到下一只基金时写出一行并刷新，
+     * 任意时刻内存中最多只保留一个分块。游标需要在只读事务内保持连接打开。
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamFundNetValueTrends(
+        List<String> fundCodes,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        OutputStream out
+    ) throws IOException {
+        try (Cursor<FundNetValue> cursor = fundNetValueMapper.cursorNetValueTrendByDateRange(fundCodes, startDate, endDate)) {
+            String currentFund = null;
+            List<FundNetValueTrendVO> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            for (FundNetValue nv : cursor) {
+                if (!nv.getFundCode().equals(currentFund) || chunk.size() == STREAM_CHUNK_SIZE) {
+                    writeTrendChunk(out, currentFund, chunk);
+                    currentFund = nv.getFundCode();
+                }
+                FundNetValueTrendVO vo = new FundNetValueTrendVO();
+                vo.setFundCode(nv.getFundCode());
+                vo.setDate(nv.getEndDate());
+                vo.setUnitNetValue(nv.getUnitNetValue());
+                vo.setAccumNetValue(nv.getAccumNetValue());
+                chunk.add(vo);
+            }
+            writeTrendChunk(out, currentFund, chunk);
+        }
+    }
+
+    /**
+     * 写出一行 NDJSON 并清空分块
+     */
+    private void writeTrendChunk(OutputStream out, String fundCode, List<FundNetValueTrendVO> chunk) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("fundCode", fundCode);
+        line.put("points", chunk);
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+        out.flush();
+        chunk.clear();
+    }
+
+    /**
+     * 对单只基金按日期升序的走势点做 LTTB 降采样
+     */
+    private static List<FundNetValueTrendVO> downsample(List<FundNetValueTrendVO> points, int maxPoints) {
+        int[] selected = Downsampling.lttb(points.size(),
+            i -> points.get(i).getDate().toLocalDate().toEpochDay(),
+            i -> {
+                FundNetValueTrendVO p = points.get(i);
+                BigDecimal nav = p.getUnitNetValue() != null ? p.getUnitNetValue() : p.getAccumNetValue();
+                return nav == null ? 0 : nav.doubleValue();
+            },
+            maxPoints);
+        if (selected.length == points.size()) {
+            return points;
+        }
+        List<FundNetValueTrendVO> result = new ArrayList<>(selected.length);
+        for (int i : selected) {
+            result.add(points.get(i));
+        }
+        return result;
     }
 
     /**
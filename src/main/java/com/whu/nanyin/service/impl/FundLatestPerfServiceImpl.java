@@ -0,0 +1,241 @@
+package com.whu.nanyin.service.impl;
+
+import com.google.common.collect.Lists;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValuePerfRankMapper;
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+import com.whu.nanyin.service.FundInfoService;
+import com.whu.nanyin.service.FundLatestPerfService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 基金最新业绩快照服务实现类
+ *
+ * 快照本身是一个以基金代码为 key 的 ConcurrentHashMap，读操作无锁；
+ * 新行合并时使用 compute 保证"只有日期不早于现有记录的行才会覆盖"，并发写入也不会回退到旧数据。
+ * 增量来源有两个：
+ * 1. 调用方（例如数据导入流程）直接调用 applyNewRanks 推送新行
+ * 2. 定时任务按 seq 水位从 fund_net_value_perf_rank 表拉取新行，兜底外部直接写库的场景
+ */
+@Slf4j
+@Service
+public class FundLatestPerfServiceImpl implements FundLatestPerfService {
+
+    /**
+     * 增量拉取与批量写入快照表时的单批行数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private FundNetValuePerfRankMapper fundNetValuePerfRankMapper;
+
+    /**
+     * 基金信息服务（懒加载），新业绩生效后使对应基金的详情缓存失效。
+     * FundInfoService 本身依赖本快照，这里使用 @Lazy 避免循环依赖。
+     */
+    @Autowired
+    @Lazy
+    private FundInfoService fundInfoService;
+
+    /**
+     * 是否将快照同步持久化到 fund_latest_perf_rank 表
+     */
+    @Value("${nanyin.perf-snapshot.persist:false}")
+    private boolean persist;
+
+    /**
+     * 当前生效的快照，为 null 表示尚未加载
+     */
+    private volatile ConcurrentHashMap<String, FundNetValuePerfRank> snapshot;
+
+    /**
+     * 已合并进快照的最大 seq，作为增量拉取的水位
+     */
+    private final AtomicLong seqWatermark = new AtomicLong();
+
+    /**
+     * 应用启动完成后加载快照，失败时读请求回退到数据库聚合查询，由定时任务稍后重试。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("[FundLatestPerf] Initial load failed, reads fall back to database: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @Override
+    public FundNetValuePerfRank getLatest(String fundCode) {
+        if (fundCode == null) {
+            return null;
+        }
+        Map<String, FundNetValuePerfRank> current = snapshot;
+        if (current != null) {
+            return current.get(fundCode);
+        }
+        List<FundNetValuePerfRank> rows = fundNetValuePerfRankMapper.aggregateLatestPerfRankByFundCodes(List.of(fundCode));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public Map<String, FundNetValuePerfRank> getLatest(Collection<String> fundCodes) {
+        Map<String, FundNetValuePerfRank> result = new HashMap<>();
+        if (fundCodes == null || fundCodes.isEmpty()) {
+            return result;
+        }
+        Map<String, FundNetValuePerfRank> current = snapshot;
+        if (current != null) {
+            for (String fundCode : fundCodes) {
+                FundNetValuePerfRank perf = current.get(fundCode);
+                if (perf != null) {
+                    result.put(fundCode, perf);
+                }
+            }
+            return result;
+        }
+        // 快照未就绪时退回到原来的聚合查询
+        return fundNetValuePerfRankMapper.aggregateLatestPerfRankByFundCodes(new ArrayList<>(fundCodes)).stream()
+                .collect(Collectors.toMap(FundNetValuePerfRank::getFundCode, perf -> perf, (a, b) -> a));
+    }
+
+    @Override
+    public void applyNewRanks(Collection<FundNetValuePerfRank> ranks) {
+        ConcurrentHashMap<String, FundNetValuePerfRank> current = snapshot;
+        if (current == null || ranks == null || ranks.isEmpty()) {
+            return;
+        }
+        List<FundNetValuePerfRank> accepted = new ArrayList<>();
+        for (FundNetValuePerfRank rank : ranks) {
+            if (rank.getFundCode() == null || rank.getEndDate() == null) {
+                continue;
+            }
+            FundNetValuePerfRank merged = current.compute(rank.getFundCode(), (code, existing) ->
+                    existing == null || !rank.getEndDate().isBefore(existing.getEndDate()) ? rank : existing);
+            if (merged == rank) {
+                accepted.add(rank);
+            }
+            if (rank.getSeq() != null) {
+                seqWatermark.accumulateAndGet(rank.getSeq(), Math::max);
+            }
+        }
+        if (persist && !accepted.isEmpty()) {
+            persistSnapshot(accepted);
+        }
+        accepted.forEach(rank -> fundInfoService.evictFundDetail(rank.getFundCode()));
+    }
+
+    @Override
+    public void refresh(Collection<String> fundCodes) {
+        if (snapshot == null || fundCodes == null || fundCodes.isEmpty()) {
+            return;
+        }
+        for (List<String> part : Lists.partition(new ArrayList<>(fundCodes), BATCH_SIZE)) {
+            applyNewRanks(fundNetValuePerfRankMapper.aggregateLatestPerfRankByFundCodes(part));
+        }
+    }
+
+    /**
+     * 业绩排名导入完成后按基金代码刷新快照，覆盖对已有日期的修正（这类更新不会推进 seq 水位）
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (event.getDataType() != NavUpdatedEvent.DataType.PERF_RANK) {
+            return;
+        }
+        // 先按水位合并新插入的行，使之后重新聚合出的行不会把水位推过尚未拉取的行
+        refreshIncrementally();
+        try {
+            refresh(event.getFundCodes());
+        } catch (Exception e) {
+            log.warn("[FundLatestPerf] Refresh after ingestion of {} failed: {}", event.getSource(), e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        List<FundNetValuePerfRank> rows = persist ? fundNetValuePerfRankMapper.selectLatestSnapshot() : List.of();
+        boolean seeded = false;
+        if (rows.isEmpty()) {
+            // 快照表为空（首次上线）或未启用持久化：对历史表做一次全量聚合
+            rows = fundNetValuePerfRankMapper.aggregateAllLatestPerfRank();
+            seeded = true;
+        }
+
+        ConcurrentHashMap<String, FundNetValuePerfRank> loaded = new ConcurrentHashMap<>(rows.size() * 2);
+        long maxSeq = 0;
+        for (FundNetValuePerfRank row : rows) {
+            loaded.merge(row.getFundCode(), row, (a, b) -> a.getEndDate().isBefore(b.getEndDate()) ? b : a);
+            if (row.getSeq() != null && row.getSeq() > maxSeq) {
+                maxSeq = row.getSeq();
+            }
+        }
+        if (persist && seeded && !loaded.isEmpty()) {
+            persistSnapshot(new ArrayList<>(loaded.values()));
+        }
+
+        seqWatermark.set(maxSeq);
+        snapshot = loaded;
+        log.info("[FundLatestPerf] Loaded latest performance of {} funds in {} ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.perf-snapshot.refresh-interval-ms:60000}",
+               initialDelayString = "${nanyin.perf-snapshot.refresh-interval-ms:60000}")
+    public void refreshIncrementally() {
+        try {
+            if (snapshot == null) {
+                reload();
+                return;
+            }
+            int merged = 0;
+            List<FundNetValuePerfRank> batch;
+            do {
+                batch = fundNetValuePerfRankMapper.findPerfRankAfterSeq(seqWatermark.get(), BATCH_SIZE);
+                applyNewRanks(batch);
+                merged += batch.size();
+            } while (batch.size() == BATCH_SIZE);
+            if (merged > 0) {
+                log.info("[FundLatestPerf] Merged {} new performance rows into snapshot", merged);
+            }
+        } catch (Exception e) {
+            log.warn("[FundLatestPerf] Incremental refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 分批写入快照表。写入失败只记录日志：内存快照仍然是正确的，
+     * 快照表会在下一次该基金有新数据时被覆盖，或在重启时重新聚合。
+     */
+    private void persistSnapshot(List<FundNetValuePerfRank> rows) {
+        try {
+            for (int i = 0; i < rows.size(); i += BATCH_SIZE) {
+                fundNetValuePerfRankMapper.upsertLatestSnapshot(rows.subList(i, Math.min(i + BATCH_SIZE, rows.size())));
+            }
+        } catch (Exception e) {
+            log.error("[FundLatestPerf] Failed to persist {} snapshot rows: {}", rows.size(), e.getMessage());
+        }
+    }
+}
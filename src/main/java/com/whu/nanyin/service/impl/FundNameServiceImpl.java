@@ -0,0 +1,128 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Lists;
+import com.whu.nanyin.mapper.FundBasicInfoMapper;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.service.FundNameService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基金名称字典服务实现类
+ *
+ * 应用启动后只读取 fund_code、fund_name 两列全量预热字典，读操作无锁；
+ * 字典未命中的代码（新上架的基金，或预热失败时的全部代码）合并成一次 IN 查询，查到的名称随即补进字典。
+ * 不存在的基金不缓存，上架后下一次查询即可命中。基金更名由每日全量重新加载吸收。
+ */
+@Slf4j
+@Service
+public class FundNameServiceImpl implements FundNameService {
+
+    /**
+     * IN 查询的单批代码数
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private FundBasicInfoMapper fundBasicInfoMapper;
+
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * 应用启动完成后预热字典，失败时由未命中查询逐步补齐，并由定时任务稍后重新加载。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("[FundName] Initial load failed, names are loaded on demand: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName(String fundCode) {
+        if (fundCode == null) {
+            return null;
+        }
+        return getNames(List.of(fundCode)).get(fundCode);
+    }
+
+    @Override
+    public Map<String, String> getNames(Collection<String> fundCodes) {
+        Map<String, String> result = new HashMap<>();
+        if (fundCodes == null || fundCodes.isEmpty()) {
+            return result;
+        }
+        List<String> misses = new ArrayList<>();
+        for (String fundCode : new LinkedHashSet<>(fundCodes)) {
+            if (fundCode == null) {
+                continue;
+            }
+            String name = names.get(fundCode);
+            if (name != null) {
+                result.put(fundCode, name);
+            } else {
+                misses.add(fundCode);
+            }
+        }
+        for (List<String> batch : Lists.partition(misses, BATCH_SIZE)) {
+            for (FundBasicInfo info : fundBasicInfoMapper.selectList(new QueryWrapper<FundBasicInfo>()
+                    .select("fund_code", "fund_name")
+                    .in("fund_code", batch))) {
+                if (info.getFundName() != null) {
+                    names.put(info.getFundCode(), info.getFundName());
+                    result.put(info.getFundCode(), info.getFundName());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getCachedNames(Collection<String> fundCodes) {
+        Map<String, String> result = new HashMap<>();
+        if (fundCodes == null) {
+            return result;
+        }
+        for (String fundCode : fundCodes) {
+            String name = fundCode == null ? null : names.get(fundCode);
+            if (name != null) {
+                result.put(fundCode, name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 每天凌晨全量重新加载，用于吸收基金更名。
+     */
+    @Override
+    @Scheduled(cron = "${nanyin.fund-name.reload-cron:0 40 2 * * ?}")
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<FundBasicInfo> rows = fundBasicInfoMapper.selectList(new QueryWrapper<FundBasicInfo>().select("fund_code", "fund_name"));
+        Map<String, String> loaded = new HashMap<>(rows.size() * 2);
+        for (FundBasicInfo info : rows) {
+            if (info.getFundCode() != null && info.getFundName() != null) {
+                loaded.put(info.getFundCode(), info.getFundName());
+            }
+        }
+        names.putAll(loaded);
+        names.keySet().retainAll(loaded.keySet());
+        log.info("[FundName] Loaded {} fund names in {} ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+}
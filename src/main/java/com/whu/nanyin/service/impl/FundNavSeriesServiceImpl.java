@@ -0,0 +1,502 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.nanyin.common.Downsampling;
+import com.whu.nanyin.common.NavSeries;
+import com.whu.nanyin.common.NavSeriesFile;
+import com.google.common.collect.Lists;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.vo.FundNetValueTrendVO;
+import com.whu.nanyin.service.FundNavSeriesService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基金净值时间序列存储服务实现类
+ *
+ * 数据布局见 NavSeries 与 NavSeriesFile。运行时维护一个 基金代码 -> NavSeries 的 ConcurrentHashMap：
+ * - 读：直接取出不可变的序列对象，在日期列上二分定位区间，全程无锁
+ * - 写：追加、合并、重建都在 writeLock 下替换 map 中的序列对象，并发读看到的要么是旧序列要么是新序列
+ *
+ * 耗时的全量重建和文件合并都在单独的后台线程中执行，不占用定时任务线程；
+ * 写文件期间新到达的净值仍会正常追加，合并完成后这些基金保留其最新的序列，留待下一次合并。
+ */
+@Slf4j
+@Service
+public class FundNavSeriesServiceImpl implements FundNavSeriesService {
+
+    /**
+     * 增量拉取时的单批行数
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    /**
+     * 是否启用列式存储，关闭后所有查询都走数据库
+     */
+    @Value("${nanyin.nav-series.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 列式文件的存放目录
+     */
+    @Value("${nanyin.nav-series.dir:./data/nav-series}")
+    private String dir;
+
+    /**
+     * 当前生效的序列，为 null 表示尚未加载
+     */
+    private volatile ConcurrentHashMap<String, NavSeries> seriesByFund;
+
+    /**
+     * 已合并进存储的最大 seq，作为增量拉取的水位
+     */
+    private final AtomicLong seqWatermark = new AtomicLong();
+
+    /**
+     * 是否有初始加载任务正在执行
+     */
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    /**
+     * 所有对序列 map 的修改都在此锁下进行
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * 执行全量重建与文件合并的后台线程，单线程保证两者不会同时进行
+     */
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("nav-series-builder").setDaemon(true).build());
+
+    /**
+     * 应用启动完成后在后台加载：优先映射磁盘上最新的一代文件，没有可用文件时从数据库全量构建。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            submitInitialLoad();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    @Override
+    public boolean isReady() {
+        return seriesByFund != null;
+    }
+
+    @Override
+    public NavSeries getSeries(String fundCode) {
+        NavSeries series = currentSeries().get(fundCode);
+        return series == null || series.size() == 0 ? null : series;
+    }
+
+    @Override
+    public Map<String, List<FundNetValueTrendVO>> getTrends(List<String> fundCodes, LocalDateTime startDate, LocalDateTime endDate, Integer maxPoints) {
+        Map<String, NavSeries> current = currentSeries();
+        // 存储中的点都是当天零点，开始时间不是零点时当天的点不在区间内
+        int startDay = (int) startDate.toLocalDate().toEpochDay() + (startDate.toLocalTime().equals(LocalTime.MIDNIGHT) ? 0 : 1);
+        int endDay = (int) endDate.toLocalDate().toEpochDay();
+
+        Map<String, List<FundNetValueTrendVO>> result = new LinkedHashMap<>();
+        for (String fundCode : new LinkedHashSet<>(fundCodes)) {
+            NavSeries series = current.get(fundCode);
+            if (series == null) {
+                continue;
+            }
+            int from = series.lowerBound(startDay);
+            int to = series.upperBound(endDay);
+            if (from >= to) {
+                continue;
+            }
+            // 降采样直接在列数据上进行，只为最终保留的点创建对象
+            int[] selected = Downsampling.lttb(to - from,
+                k -> series.day(from + k),
+                k -> navAsDouble(series, from + k),
+                maxPoints == null ? Integer.MAX_VALUE : maxPoints);
+            List<FundNetValueTrendVO> points = new ArrayList<>(selected.length);
+            for (int k : selected) {
+                int i = from + k;
+                FundNetValueTrendVO vo = new FundNetValueTrendVO();
+                vo.setFundCode(fundCode);
+                vo.setDate(LocalDate.ofEpochDay(series.day(i)).atStartOfDay());
+                vo.setUnitNetValue(NavSeries.unscale(series.unitNav(i)));
+                vo.setAccumNetValue(NavSeries.unscale(series.accumNav(i)));
+                points.add(vo);
+            }
+            result.put(fundCode, points);
+        }
+        return result;
+    }
+
+    @Override
+    public List<FundNetValue> getHistory(String fundCode, LocalDate startDate, LocalDate endDate) {
+        NavSeries series = currentSeries().get(fundCode);
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        int from = series.lowerBound((int) startDate.toEpochDay());
+        int to = endDate == null ? series.size() : series.upperBound((int) endDate.toEpochDay());
+        List<FundNetValue> history = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            FundNetValue nv = new FundNetValue();
+            nv.setFundCode(fundCode);
+            nv.setEndDate(LocalDate.ofEpochDay(series.day(i)).atStartOfDay());
+            nv.setUnitNetValue(NavSeries.unscale(series.unitNav(i)));
+            nv.setAccumNetValue(NavSeries.unscale(series.accumNav(i)));
+            history.add(nv);
+        }
+        return history;
+    }
+
+    @Override
+    public void append(Collection<FundNetValue> netValues) {
+        if (seriesByFund == null || netValues == null || netValues.isEmpty()) {
+            return;
+        }
+        Map<String, List<FundNetValue>> byFund = new HashMap<>();
+        long maxSeq = 0;
+        for (FundNetValue nv : netValues) {
+            if (nv.getFundCode() != null && nv.getEndDate() != null) {
+                byFund.computeIfAbsent(nv.getFundCode(), k -> new ArrayList<>()).add(nv);
+            }
+            if (nv.getSeq() != null) {
+                maxSeq = Math.max(maxSeq, nv.getSeq());
+            }
+        }
+
+        synchronized (writeLock) {
+            ConcurrentHashMap<String, NavSeries> current = seriesByFund;
+            for (Map.Entry<String, List<FundNetValue>> entry : byFund.entrySet()) {
+                String fundCode = entry.getKey();
+                List<FundNetValue> rows = entry.getValue();
+                rows.sort(Comparator.comparing(FundNetValue::getEndDate));
+
+                NavSeries series = current.get(fundCode);
+                int lastDay = series == null ? Integer.MIN_VALUE : series.lastDay();
+                int[] days = new int[rows.size()];
+                long[] unit = new long[rows.size()];
+                long[] accum = new long[rows.size()];
+                int count = 0;
+                boolean needsReload = false;
+                for (FundNetValue row : rows) {
+                    int day = (int) row.getEndDate().toLocalDate().toEpochDay();
+                    long unitNav = NavSeries.scale(row.getUnitNetValue());
+                    long accumNav = NavSeries.scale(row.getAccumNetValue());
+                    if (day > lastDay && (count == 0 || day > days[count - 1])) {
+                        days[count] = day;
+                        unit[count] = unitNav;
+                        accum[count] = accumNav;
+                        count++;
+                    } else if (!alreadyStored(series, day, unitNav, accumNav)
+                            && !(count > 0 && day == days[count - 1] && unitNav == unit[count - 1] && accumNav == accum[count - 1])) {
+                        // 历史日期的补录或修正，无法只靠追加表达
+                        needsReload = true;
+                    }
+                }
+
+                if (needsReload) {
+                    current.put(fundCode, loadFromDatabase(fundCode));
+                } else if (count > 0) {
+                    current.put(fundCode, series == null
+                        ? NavSeries.ofArrays(Arrays.copyOf(days, count), Arrays.copyOf(unit, count), Arrays.copyOf(accum, count))
+                        : series.append(days, unit, accum, count));
+                }
+            }
+            seqWatermark.accumulateAndGet(maxSeq, Math::max);
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "${nanyin.nav-series.full-rebuild-cron:0 0 3 * * ?}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        builder.execute(() -> {
+            try {
+                rebuildFromDatabase();
+            } catch (Exception e) {
+                log.warn("[NavSeries] Full rebuild failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.nav-series.compact-interval-ms:3600000}",
+               initialDelayString = "${nanyin.nav-series.compact-interval-ms:3600000}")
+    public void compact() {
+        if (!enabled || seriesByFund == null) {
+            return;
+        }
+        builder.execute(() -> {
+            try {
+                compactTails();
+            } catch (Exception e) {
+                log.warn("[NavSeries] Compaction failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.nav-series.refresh-interval-ms:60000}",
+               initialDelayString = "${nanyin.nav-series.refresh-interval-ms:60000}")
+    public void refreshIncrementally() {
+        if (!enabled) {
+            return;
+        }
+        if (seriesByFund == null) {
+            // 启动时加载失败（例如数据库暂不可用），在这里重试
+            submitInitialLoad();
+            return;
+        }
+        try {
+            int merged = 0;
+            List<FundNetValue> batch;
+            do {
+                batch = fundNetValueMapper.findNetValueAfterSeq(seqWatermark.get(), BATCH_SIZE);
+                append(batch);
+                merged += batch.size();
+            } while (batch.size() == BATCH_SIZE);
+            if (merged > 0) {
+                log.info("[NavSeries] Appended {} new net value rows", merged);
+            }
+        } catch (Exception e) {
+            log.warn("[NavSeries] Incremental refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 净值导入完成后，先按水位追加新行，再重新读取导入日期范围内受影响基金的净值交给 append：
+     * 已存在且未变化的点被忽略，对历史日期的修正（不会推进 seq 水位）触发该基金的序列重载。
+     * 排在其他监听器之前执行，使依赖净值序列的计算（例如业绩排名）能读到本次导入的数据。
+     */
+    @EventListener
+    @Order(0)
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (!enabled || seriesByFund == null || event.getDataType() != NavUpdatedEvent.DataType.NET_VALUE
+                || event.getStartDate() == null) {
+            return;
+        }
+        refreshIncrementally();
+        try {
+            LocalDateTime from = event.getStartDate().atStartOfDay();
+            LocalDateTime to = event.getEndDate().atTime(LocalTime.MAX);
+            for (List<String> part : Lists.partition(new ArrayList<>(event.getFundCodes()), BATCH_SIZE)) {
+                List<FundNetValue> rows = fundNetValueMapper.selectList(new QueryWrapper<FundNetValue>()
+                    .in("fund_code", part)
+                    .between("end_date", from, to));
+                // 这些行已经在水位之内，不参与推进水位
+                rows.forEach(row -> row.setSeq(null));
+                append(rows);
+            }
+        } catch (Exception e) {
+            log.warn("[NavSeries] Refresh after ingestion of {} failed: {}", event.getSource(), e.getMessage());
+        }
+    }
+
+    private Map<String, NavSeries> currentSeries() {
+        Map<String, NavSeries> current = seriesByFund;
+        if (current == null) {
+            throw new IllegalStateException("净值序列存储尚未就绪");
+        }
+        return current;
+    }
+
+    private void submitInitialLoad() {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        builder.execute(() -> {
+            try {
+                Path latest = NavSeriesFile.findLatestGeneration(root());
+                if (latest != null) {
+                    try {
+                        long start = System.currentTimeMillis();
+                        NavSeriesFile.Generation generation = NavSeriesFile.load(latest);
+                        install(generation, null);
+                        log.info("[NavSeries] Mapped {} funds from {} in {} ms",
+                            generation.getSeries().size(), latest, System.currentTimeMillis() - start);
+                        return;
+                    } catch (IOException e) {
+                        log.warn("[NavSeries] Failed to map {}, rebuilding from database: {}", latest, e.getMessage());
+                    }
+                }
+                rebuildFromDatabase();
+            } catch (Exception e) {
+                log.warn("[NavSeries] Initial load failed, queries fall back to database: {}", e.getMessage());
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    /**
+     * 从数据库流式读取整张净值表写成新一代文件，再映射并替换当前存储
+     */
+    private void rebuildFromDatabase() throws IOException {
+        long start = System.currentTimeMillis();
+        // 先取水位再读取：读取期间新写入的行会在之后的增量拉取中补上
+        Long maxSeq = fundNetValueMapper.selectMaxSeq();
+        Path published;
+        try (NavSeriesFile.Writer writer = NavSeriesFile.newWriter(root())) {
+            fundNetValueMapper.streamAllNetValues(context -> {
+                FundNetValue nv = context.getResultObject();
+                if (nv.getFundCode() == null || nv.getEndDate() == null) {
+                    return;
+                }
+                try {
+                    writer.add(nv.getFundCode(), (int) nv.getEndDate().toLocalDate().toEpochDay(),
+                        NavSeries.scale(nv.getUnitNetValue()), NavSeries.scale(nv.getAccumNetValue()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            published = writer.finish(maxSeq == null ? 0 : maxSeq);
+        }
+        NavSeriesFile.Generation generation = NavSeriesFile.load(published);
+        install(generation, null);
+        log.info("[NavSeries] Rebuilt {} funds from database in {} ms",
+            generation.getSeries().size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 把所有基金当前的完整序列（映射段 + 尾部）写成新一代文件
+     */
+    private void compactTails() throws IOException {
+        Map<String, NavSeries> snapshot;
+        long maxSeq;
+        synchronized (writeLock) {
+            snapshot = new HashMap<>(seriesByFund);
+            maxSeq = seqWatermark.get();
+        }
+        long tailPoints = snapshot.values().stream().mapToLong(NavSeries::tailSize).sum();
+        if (tailPoints == 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Path published;
+        try (NavSeriesFile.Writer writer = NavSeriesFile.newWriter(root())) {
+            for (Map.Entry<String, NavSeries> entry : new TreeMap<>(snapshot).entrySet()) {
+                writer.addAll(entry.getKey(), entry.getValue());
+            }
+            published = writer.finish(maxSeq);
+        }
+        install(NavSeriesFile.load(published), snapshot);
+        log.info("[NavSeries] Compacted {} tail points into {} in {} ms",
+            tailPoints, published, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 用新加载的一代数据替换当前存储
+     * @param generation 新一代数据
+     * @param basedOn 生成这一代文件时使用的序列快照；为 null 表示全量替换（初始加载或从数据库重建）
+     */
+    private void install(NavSeriesFile.Generation generation, Map<String, NavSeries> basedOn) {
+        synchronized (writeLock) {
+            ConcurrentHashMap<String, NavSeries> installed = new ConcurrentHashMap<>(generation.getSeries());
+            ConcurrentHashMap<String, NavSeries> current = seriesByFund;
+            if (basedOn == null || current == null) {
+                seqWatermark.set(generation.getMaxSeq());
+            } else {
+                // 写文件期间发生过变化的基金保留当前序列，留待下一次合并
+                current.forEach((fundCode, series) -> {
+                    if (basedOn.get(fundCode) != series) {
+                        installed.put(fundCode, series);
+                    }
+                });
+            }
+            seriesByFund = installed;
+        }
+        NavSeriesFile.deleteOtherGenerations(root(), generation.getDir());
+    }
+
+    /**
+     * 降采样使用的纵坐标：单位净值，缺失时取累计净值，都缺失时按0处理
+     */
+    private static double navAsDouble(NavSeries series, int i) {
+        long nav = series.unitNav(i);
+        if (nav == NavSeries.NULL_VALUE) {
+            nav = series.accumNav(i);
+        }
+        return nav == NavSeries.NULL_VALUE ? 0 : nav / 1e6;
+    }
+
+    private static boolean alreadyStored(NavSeries series, int day, long unitNav, long accumNav) {
+        if (series == null) {
+            return false;
+        }
+        int i = series.indexOf(day);
+        return i >= 0 && series.unitNav(i) == unitNav && series.accumNav(i) == accumNav;
+    }
+
+    /**
+     * 从数据库重新加载单只基金的完整序列（仅用于补录、修正等少见场景）
+     */
+    private NavSeries loadFromDatabase(String fundCode) {
+        List<FundNetValue> rows = fundNetValueMapper.selectList(
+            new QueryWrapper<FundNetValue>().eq("fund_code", fundCode).orderByAsc("end_date"));
+        int[] days = new int[rows.size()];
+        long[] unit = new long[rows.size()];
+        long[] accum = new long[rows.size()];
+        int count = 0;
+        for (FundNetValue row : rows) {
+            if (row.getEndDate() == null) {
+                continue;
+            }
+            int day = (int) row.getEndDate().toLocalDate().toEpochDay();
+            if (count > 0 && day <= days[count - 1]) {
+                continue;
+            }
+            days[count] = day;
+            unit[count] = NavSeries.scale(row.getUnitNetValue());
+            accum[count] = NavSeries.scale(row.getAccumNetValue());
+            count++;
+        }
+        return NavSeries.ofArrays(Arrays.copyOf(days, count), Arrays.copyOf(unit, count), Arrays.copyOf(accum, count));
+    }
+
+    private Path root() {
+        return Paths.get(dir).toAbsolutePath();
+    }
+}
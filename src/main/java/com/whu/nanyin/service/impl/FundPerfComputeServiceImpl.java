@@ -0,0 +1,421 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Lists;
+import com.whu.nanyin.common.NavSeries;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundBasicInfoMapper;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.mapper.FundNetValuePerfRankMapper;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+import com.whu.nanyin.service.FundNavSeriesService;
+import com.whu.nanyin.service.FundPerfComputeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 基金业绩与同类排名计算服务实现类
+ *
+ * 计算分两个阶段，都在独立的 ForkJoinPool 中并行执行：
+ * 1. 按基金并行：在该基金的净值序列上二分定位各区间的起点，计算各区间增长率。
+ *    优先使用内存映射的净值列式存储；存储不可用时流式读取整张净值表，逐只基金计算后即丢弃其数据。
+ * 2. 按（投资类型, 区间）并行：把同类基金该区间的增长率排序，再对每只基金二分得到排名。
+ *    排名采用"并列同名次"规则：名次 = 同类中增长率严格更高的基金数 + 1。
+ *
+ * 增长率优先使用累计净值计算（包含分红），累计净值缺失时退回单位净值。
+ */
+@Slf4j
+@Service
+public class FundPerfComputeServiceImpl implements FundPerfComputeService {
+
+    /**
+     * 单条 upsert 语句包含的行数
+     */
+    private static final int STATEMENT_BATCH_SIZE = 500;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    /**
+     * 增长率保留的小数位数（百分比）
+     */
+    private static final int GROWTH_SCALE = 4;
+
+    /**
+     * 发布 NavUpdatedEvent 时使用的来源标识
+     */
+    private static final String SOURCE = "perf-compute";
+
+    @Autowired
+    private FundNavSeriesService fundNavSeriesService;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    @Autowired
+    private FundNetValuePerfRankMapper fundNetValuePerfRankMapper;
+
+    @Autowired
+    private FundBasicInfoMapper fundBasicInfoMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 是否启用计算。外部业绩数据源仍在使用时保持关闭，避免两边互相覆盖。
+     */
+    @Value("${nanyin.perf-compute.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 净值文件导入完成后是否立即为该批数据的最新日期计算业绩与排名
+     */
+    @Value("${nanyin.perf-compute.on-ingestion:true}")
+    private boolean onIngestion;
+
+    /**
+     * 并行度，0 表示使用 CPU 核数
+     */
+    @Value("${nanyin.perf-compute.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    /**
+     * 计算的各个区间：区间起点、增长率字段、排名字段、参与排名基金数字段
+     */
+    private enum Window {
+        WEEK(d -> d.minusWeeks(1), FundNetValuePerfRank::getWeeklyGrowthRate, FundNetValuePerfRank::setWeeklyGrowthRate,
+            FundNetValuePerfRank::setRank1w, FundNetValuePerfRank::setRankBase1w),
+        MONTH_1(d -> d.minusMonths(1), FundNetValuePerfRank::getMonthly1mGrowthRate, FundNetValuePerfRank::setMonthly1mGrowthRate,
+            FundNetValuePerfRank::setRank1m, FundNetValuePerfRank::setRankBase1m),
+        MONTH_3(d -> d.minusMonths(3), FundNetValuePerfRank::getMonthly3mGrowthRate, FundNetValuePerfRank::setMonthly3mGrowthRate,
+            FundNetValuePerfRank::setRank3m, FundNetValuePerfRank::setRankBase3m),
+        MONTH_6(d -> d.minusMonths(6), FundNetValuePerfRank::getMonthly6mGrowthRate, FundNetValuePerfRank::setMonthly6mGrowthRate,
+            FundNetValuePerfRank::setRank6m, FundNetValuePerfRank::setRankBase6m),
+        YEAR_1(d -> d.minusYears(1), FundNetValuePerfRank::getYearly1yGrowthRate, FundNetValuePerfRank::setYearly1yGrowthRate,
+            FundNetValuePerfRank::setRank1y, FundNetValuePerfRank::setRankBase1y),
+        YEAR_2(d -> d.minusYears(2), FundNetValuePerfRank::getYearly2yGrowthRate, FundNetValuePerfRank::setYearly2yGrowthRate,
+            FundNetValuePerfRank::setRank2y, FundNetValuePerfRank::setRankBase2y),
+        YEAR_3(d -> d.minusYears(3), FundNetValuePerfRank::getYearly3yGrowthRate, FundNetValuePerfRank::setYearly3yGrowthRate,
+            FundNetValuePerfRank::setRank3y, FundNetValuePerfRank::setRankBase3y),
+        YEAR_5(d -> d.minusYears(5), FundNetValuePerfRank::getYearly5yGrowthRate, FundNetValuePerfRank::setYearly5yGrowthRate,
+            FundNetValuePerfRank::setRank5y, FundNetValuePerfRank::setRankBase5y),
+        ESTABLISHMENT(null, FundNetValuePerfRank::getFromEstablishmentGrowthRate, FundNetValuePerfRank::setFromEstablishmentGrowthRate,
+            FundNetValuePerfRank::setRankEstablishment, FundNetValuePerfRank::setRankBaseEstablishment);
+
+        /**
+         * 由计算日期得到区间起点，为 null 表示从第一个净值开始（成立以来）
+         */
+        private final UnaryOperator<LocalDate> start;
+        private final Function<FundNetValuePerfRank, BigDecimal> growth;
+        private final BiConsumer<FundNetValuePerfRank, BigDecimal> setGrowth;
+        private final BiConsumer<FundNetValuePerfRank, Integer> setRank;
+        private final BiConsumer<FundNetValuePerfRank, Integer> setRankBase;
+
+        Window(UnaryOperator<LocalDate> start,
+               Function<FundNetValuePerfRank, BigDecimal> growth,
+               BiConsumer<FundNetValuePerfRank, BigDecimal> setGrowth,
+               BiConsumer<FundNetValuePerfRank, Integer> setRank,
+               BiConsumer<FundNetValuePerfRank, Integer> setRankBase) {
+            this.start = start;
+            this.growth = growth;
+            this.setGrowth = setGrowth;
+            this.setRank = setRank;
+            this.setRankBase = setRankBase;
+        }
+    }
+
+    @PostConstruct
+    public void initPool() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Override
+    public List<FundNetValuePerfRank> compute(LocalDate asOfDate) {
+        long start = System.currentTimeMillis();
+        int asOfDay = (int) asOfDate.toEpochDay();
+        Map<String, String> investTypeByFund = loadInvestTypes();
+
+        List<FundNetValuePerfRank> rows;
+        if (fundNavSeriesService.isReady()) {
+            rows = pool.submit(() -> investTypeByFund.keySet().parallelStream()
+                .map(fundCode -> {
+                    NavSeries series = fundNavSeriesService.getSeries(fundCode);
+                    return series == null ? null : computeFund(fundCode, series, asOfDay);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())).join();
+        } else {
+            rows = computeFromDatabase(investTypeByFund.keySet(), asOfDay);
+        }
+        long computed = System.currentTimeMillis();
+
+        rank(rows, investTypeByFund);
+        log.info("[PerfCompute] Computed {} funds for {}: growth {} ms, ranking {} ms",
+            rows.size(), asOfDate, computed - start, System.currentTimeMillis() - computed);
+        return rows;
+    }
+
+    @Override
+    public int computeAndSave(LocalDate asOfDate) {
+        List<FundNetValuePerfRank> rows = compute(asOfDate);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        // 整个市场的排名在一个事务中写入，读者不会看到一半新一半旧的排名
+        transactionTemplate.executeWithoutResult(status ->
+            Lists.partition(rows, STATEMENT_BATCH_SIZE).forEach(fundNetValuePerfRankMapper::upsertPerfRanks));
+        Set<String> fundCodes = rows.stream().map(FundNetValuePerfRank::getFundCode).collect(Collectors.toSet());
+        eventPublisher.publishEvent(new NavUpdatedEvent(NavUpdatedEvent.DataType.PERF_RANK, SOURCE,
+            fundCodes, asOfDate, asOfDate));
+        return rows.size();
+    }
+
+    @Override
+    @Scheduled(cron = "${nanyin.perf-compute.cron:0 0 22 * * ?}")
+    public void computeForToday() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            computeAndSave(LocalDate.now());
+        } catch (Exception e) {
+            log.warn("[PerfCompute] Scheduled computation failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 净值导入完成后，为该批数据中的最新日期重新计算业绩与排名。
+     * 净值列式存储的监听器排在最前面，这里读取到的序列已经包含本次导入的数据。
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (!enabled || !onIngestion || event.getDataType() != NavUpdatedEvent.DataType.NET_VALUE
+                || event.getEndDate() == null) {
+            return;
+        }
+        try {
+            computeAndSave(event.getEndDate());
+        } catch (Exception e) {
+            log.warn("[PerfCompute] Computation after ingestion of {} failed: {}", event.getSource(), e.getMessage());
+        }
+    }
+
+    /**
+     * 基金代码 -> 投资类型，没有投资类型的基金照常计算增长率但不参与排名
+     */
+    private Map<String, String> loadInvestTypes() {
+        List<FundBasicInfo> infos = fundBasicInfoMapper.selectList(
+            new QueryWrapper<FundBasicInfo>().select("fund_code", "fund_invest_type"));
+        Map<String, String> investTypeByFund = new HashMap<>(infos.size() * 2);
+        for (FundBasicInfo info : infos) {
+            if (info.getFundCode() != null) {
+                investTypeByFund.put(info.getFundCode(), info.getFundInvestType());
+            }
+        }
+        return investTypeByFund;
+    }
+
+    /**
+     * 计算单只基金在 asOfDay 的全部增长率，该日没有净值时返回 null
+     */
+    private static FundNetValuePerfRank computeFund(String fundCode, NavSeries series, int asOfDay) {
+        int end = series.upperBound(asOfDay) - 1;
+        if (end < 0 || series.day(end) != asOfDay) {
+            return null;
+        }
+        LocalDate asOfDate = LocalDate.ofEpochDay(asOfDay);
+        FundNetValuePerfRank row = new FundNetValuePerfRank();
+        row.setFundCode(fundCode);
+        row.setEndDate(asOfDate.atStartOfDay());
+        row.setUnitNetValue(NavSeries.unscale(series.unitNav(end)));
+        row.setAccumNetValue(NavSeries.unscale(series.accumNav(end)));
+        row.setDailyGrowthRate(end > 0 ? growth(series, end - 1, end) : null);
+
+        for (Window window : Window.values()) {
+            int base;
+            if (window.start == null) {
+                base = 0;
+            } else {
+                int startDay = (int) window.start.apply(asOfDate).toEpochDay();
+                // 成立时间短于区间长度的基金，该区间没有增长率
+                if (series.day(0) > startDay) {
+                    continue;
+                }
+                // 区间起点当天不是交易日时，取起点之前最近的一个净值
+                base = series.upperBound(startDay) - 1;
+            }
+            if (base < end) {
+                window.setGrowth.accept(row, growth(series, base, end));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 下标 base 到 end 的增长率（百分比）
+     */
+    private static BigDecimal growth(NavSeries series, int base, int end) {
+        long from = series.accumNav(base);
+        long to = series.accumNav(end);
+        if (from == NavSeries.NULL_VALUE || to == NavSeries.NULL_VALUE || from <= 0) {
+            from = series.unitNav(base);
+            to = series.unitNav(end);
+        }
+        if (from == NavSeries.NULL_VALUE || to == NavSeries.NULL_VALUE || from <= 0) {
+            return null;
+        }
+        // 两个净值放大倍数相同，直接用放大后的整数计算比值
+        return BigDecimal.valueOf(to - from).multiply(HUNDRED)
+            .divide(BigDecimal.valueOf(from), GROWTH_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 净值列式存储不可用时的回退路径：按 (fund_code, end_date) 顺序流式读取整张净值表，
+     * 每读完一只基金就计算并丢弃其数据，内存中只保留一只基金的序列。
+     */
+    private List<FundNetValuePerfRank> computeFromDatabase(Set<String> fundCodes, int asOfDay) {
+        List<FundNetValuePerfRank> rows = new ArrayList<>();
+        SeriesAccumulator accumulator = new SeriesAccumulator();
+        fundNetValueMapper.streamAllNetValues(context -> {
+            FundNetValue nv = context.getResultObject();
+            if (nv.getFundCode() == null || nv.getEndDate() == null) {
+                return;
+            }
+            if (!nv.getFundCode().equals(accumulator.fundCode)) {
+                accumulator.flush(fundCodes, asOfDay, rows);
+                accumulator.fundCode = nv.getFundCode();
+            }
+            int day = (int) nv.getEndDate().toLocalDate().toEpochDay();
+            if (day <= asOfDay) {
+                accumulator.add(day, NavSeries.scale(nv.getUnitNetValue()), NavSeries.scale(nv.getAccumNetValue()));
+            }
+        });
+        accumulator.flush(fundCodes, asOfDay, rows);
+        return rows;
+    }
+
+    /**
+     * 流式读取时累积当前这只基金的净值点，数组在基金之间复用
+     */
+    private static final class SeriesAccumulator {
+        private String fundCode;
+        private int[] days = new int[1024];
+        private long[] unit = new long[1024];
+        private long[] accum = new long[1024];
+        private int count;
+
+        private void add(int day, long unitNav, long accumNav) {
+            if (count > 0 && day <= days[count - 1]) {
+                return;
+            }
+            if (count == days.length) {
+                days = Arrays.copyOf(days, count * 2);
+                unit = Arrays.copyOf(unit, count * 2);
+                accum = Arrays.copyOf(accum, count * 2);
+            }
+            days[count] = day;
+            unit[count] = unitNav;
+            accum[count] = accumNav;
+            count++;
+        }
+
+        private void flush(Set<String> fundCodes, int asOfDay, List<FundNetValuePerfRank> rows) {
+            if (fundCode != null && count > 0 && fundCodes.contains(fundCode)) {
+                NavSeries series = NavSeries.ofArrays(Arrays.copyOf(days, count),
+                    Arrays.copyOf(unit, count), Arrays.copyOf(accum, count));
+                FundNetValuePerfRank row = computeFund(fundCode, series, asOfDay);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+            fundCode = null;
+            count = 0;
+        }
+    }
+
+    /**
+     * 在每个投资类型内按各区间增长率排名，（类型, 区间）组合之间并行
+     */
+    private void rank(List<FundNetValuePerfRank> rows, Map<String, String> investTypeByFund) {
+        Map<String, List<FundNetValuePerfRank>> peerGroups = rows.stream()
+            .filter(row -> investTypeByFund.get(row.getFundCode()) != null)
+            .collect(Collectors.groupingBy(row -> investTypeByFund.get(row.getFundCode())));
+        List<Runnable> tasks = new ArrayList<>();
+        for (List<FundNetValuePerfRank> group : peerGroups.values()) {
+            for (Window window : Window.values()) {
+                tasks.add(() -> rankWindow(group, window));
+            }
+        }
+        pool.submit(() -> tasks.parallelStream().forEach(Runnable::run)).join();
+    }
+
+    /**
+     * 同一投资类型、同一区间内的排名：名次 = 增长率严格更高的基金数 + 1，参与排名的只有该区间增长率非空的基金
+     */
+    private static void rankWindow(List<FundNetValuePerfRank> group, Window window) {
+        BigDecimal[] sorted = group.stream()
+            .map(window.growth)
+            .filter(Objects::nonNull)
+            .sorted()
+            .toArray(BigDecimal[]::new);
+        for (FundNetValuePerfRank row : group) {
+            BigDecimal value = window.growth.apply(row);
+            if (value == null) {
+                continue;
+            }
+            window.setRank.accept(row, sorted.length - upperBound(sorted, value) + 1);
+            window.setRankBase.accept(row, sorted.length);
+        }
+    }
+
+    /**
+     * 升序数组中第一个大于 value 的下标
+     */
+    private static int upperBound(BigDecimal[] sorted, BigDecimal value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid].compareTo(value) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
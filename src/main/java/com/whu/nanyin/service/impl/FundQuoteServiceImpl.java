@@ -0,0 +1,93 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.whu.nanyin.mapper.FundBasicInfoMapper;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.entity.FundNetValuePerfRank;
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
+import com.whu.nanyin.service.FundLatestPerfService;
+import com.whu.nanyin.service.FundQuoteService;
+import com.whu.nanyin.service.FundSearchIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基金报价服务实现类
+ *
+ * 基础信息优先从搜索索引中按代码二分查找，索引未就绪或尚未收录（新上架基金）时才查询 fund_basic_info；
+ * 净值取自最新业绩快照，与原先 getFundDetail().getPerformance().getUnitNetValue() 的口径一致。
+ */
+@Service
+public class FundQuoteServiceImpl implements FundQuoteService {
+
+    @Autowired
+    private FundSearchIndexService fundSearchIndexService;
+
+    @Autowired
+    private FundLatestPerfService fundLatestPerfService;
+
+    @Autowired
+    private FundBasicInfoMapper fundBasicInfoMapper;
+
+    @Override
+    public FundQuoteVO getQuote(String fundCode) {
+        if (fundCode == null) {
+            return null;
+        }
+        return getQuotes(List.of(fundCode)).get(fundCode);
+    }
+
+    @Override
+    public Map<String, FundQuoteVO> getQuotes(Collection<String> fundCodes) {
+        Map<String, FundQuoteVO> quotes = new HashMap<>();
+        if (fundCodes == null || fundCodes.isEmpty()) {
+            return quotes;
+        }
+        Set<String> codes = new LinkedHashSet<>(fundCodes);
+
+        // 1. 基金基础信息：索引命中的直接使用，未命中的合并成一次 IN 查询
+        Map<String, FundBasicInfo> basicInfos = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        boolean indexReady = fundSearchIndexService.isReady();
+        for (String code : codes) {
+            FundBasicInfo info = indexReady ? fundSearchIndexService.getBasicInfo(code) : null;
+            if (info != null) {
+                basicInfos.put(code, info);
+            } else {
+                misses.add(code);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (FundBasicInfo info : fundBasicInfoMapper.selectList(new QueryWrapper<FundBasicInfo>().in("fund_code", misses))) {
+                basicInfos.putIfAbsent(info.getFundCode(), info);
+            }
+        }
+        if (basicInfos.isEmpty()) {
+            return quotes;
+        }
+
+        // 2. 最新净值：从最新业绩快照中批量读取
+        Map<String, FundNetValuePerfRank> perfs = fundLatestPerfService.getLatest(basicInfos.keySet());
+        for (FundBasicInfo info : basicInfos.values()) {
+            FundQuoteVO quote = new FundQuoteVO();
+            quote.setFundCode(info.getFundCode());
+            quote.setFundName(info.getFundName());
+            quote.setFundInvestType(info.getFundInvestType());
+            FundNetValuePerfRank perf = perfs.get(info.getFundCode());
+            if (perf != null) {
+                quote.setUnitNetValue(perf.getUnitNetValue());
+                quote.setAsOfDate(perf.getEndDate());
+            }
+            quotes.put(info.getFundCode(), quote);
+        }
+        return quotes;
+    }
+}
@@ -0,0 +1,172 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.whu.nanyin.common.NavSeries;
+import com.whu.nanyin.common.RiskMetricsAccumulator;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.vo.FundRiskMetricsVO;
+import com.whu.nanyin.service.FundNavSeriesService;
+import com.whu.nanyin.service.FundRiskMetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 基金风险指标服务实现类
+ *
+ * 缓存 基金代码 -> 累加器。查询时取出缓存的累加器，复制一份后只追加它已处理日期之后的净值点：
+ * - 列式存储就绪时在内存映射的序列上二分定位起点
+ * - 否则只从数据库读取该日期之后的净值
+ * 追加完成后再放回缓存（若期间已有更新的累加器则保留较新的那个），已发布的累加器不会被修改，读取无需加锁。
+ *
+ * 历史净值被修正时追加无法表达，通过 NavUpdatedEvent 丢弃对应基金的累加器；
+ * 缓存设有写入后过期时间，用来兜底直接改库等无法感知的修正。
+ */
+@Service
+public class FundRiskMetricsServiceImpl implements FundRiskMetricsService {
+
+    /**
+     * 百分比类指标与比率保留的小数位数
+     */
+    private static final int SCALE = 4;
+
+    @Autowired
+    private FundNavSeriesService fundNavSeriesService;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    /**
+     * 年化无风险利率（小数）
+     */
+    @Value("${nanyin.risk-metrics.risk-free-rate:0.015}")
+    private double riskFreeRate;
+
+    @Value("${nanyin.risk-metrics.cache-max-size:50000}")
+    private long cacheMaxSize;
+
+    @Value("${nanyin.risk-metrics.cache-ttl-hours:24}")
+    private long cacheTtlHours;
+
+    private Cache<String, RiskMetricsAccumulator> accumulators;
+
+    @PostConstruct
+    public void initCache() {
+        accumulators = CacheBuilder.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfterWrite(Duration.ofHours(cacheTtlHours))
+            .build();
+    }
+
+    @Override
+    public FundRiskMetricsVO getRiskMetrics(String fundCode) {
+        if (fundCode == null) {
+            return null;
+        }
+        RiskMetricsAccumulator cached = accumulators.getIfPresent(fundCode);
+        RiskMetricsAccumulator current = catchUp(fundCode, cached);
+        if (current != cached) {
+            // 并发查询可能各自追加出了新的累加器，保留处理到更晚日期的那个
+            current = accumulators.asMap().merge(fundCode, current,
+                (existing, incoming) -> incoming.processedDay() >= existing.processedDay() ? incoming : existing);
+        }
+        return toVO(current);
+    }
+
+    @Override
+    public void evict(Collection<String> fundCodes) {
+        if (fundCodes != null) {
+            accumulators.invalidateAll(fundCodes);
+        }
+    }
+
+    /**
+     * 净值导入后丢弃受影响基金的累加器，导入中可能包含对历史净值的修正
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (event.getDataType() == NavUpdatedEvent.DataType.NET_VALUE) {
+            evict(event.getFundCodes());
+        }
+    }
+
+    /**
+     * 把 cached 已处理日期之后的净值点追加到它的副本上，没有新数据时原样返回 cached
+     */
+    private RiskMetricsAccumulator catchUp(String fundCode, RiskMetricsAccumulator cached) {
+        RiskMetricsAccumulator next = cached == null ? new RiskMetricsAccumulator(riskFreeRate) : cached.copy();
+        int after = next.processedDay();
+
+        if (fundNavSeriesService.isReady()) {
+            NavSeries series = fundNavSeriesService.getSeries(fundCode);
+            if (series == null || series.lastDay() <= after) {
+                return cached;
+            }
+            for (int i = series.upperBound(after); i < series.size(); i++) {
+                long accumNav = series.accumNav(i);
+                next.add(series.day(i), accumNav == NavSeries.NULL_VALUE ? Double.NaN : accumNav);
+            }
+            return next;
+        }
+
+        QueryWrapper<FundNetValue> wrapper = new QueryWrapper<FundNetValue>()
+            .select("end_date", "accum_net_value")
+            .eq("fund_code", fundCode);
+        if (after != Integer.MIN_VALUE) {
+            wrapper.ge("end_date", LocalDate.ofEpochDay(after + 1L).atStartOfDay());
+        }
+        List<FundNetValue> rows = fundNetValueMapper.selectList(wrapper.orderByAsc("end_date"));
+        if (rows.isEmpty()) {
+            return cached;
+        }
+        for (FundNetValue row : rows) {
+            if (row.getEndDate() != null) {
+                // 与列式存储使用同一放大倍数，两种来源追加到同一个累加器时净值可比
+                next.add((int) row.getEndDate().toLocalDate().toEpochDay(),
+                    row.getAccumNetValue() == null ? Double.NaN : NavSeries.scale(row.getAccumNetValue()));
+            }
+        }
+        return next;
+    }
+
+    private static FundRiskMetricsVO toVO(RiskMetricsAccumulator accumulator) {
+        if (accumulator == null || accumulator.lastDay() == Integer.MIN_VALUE) {
+            return null;
+        }
+        FundRiskMetricsVO vo = new FundRiskMetricsVO();
+        vo.setStartDate(LocalDate.ofEpochDay(accumulator.firstDay()));
+        vo.setEndDate(LocalDate.ofEpochDay(accumulator.lastDay()));
+        vo.setSampleCount(accumulator.count());
+        vo.setAnnualizedVolatility(percent(accumulator.annualizedVolatility()));
+        vo.setMaxDrawdown(percent(accumulator.maxDrawdown()));
+        if (accumulator.maxDrawdownTroughDay() != Integer.MIN_VALUE) {
+            vo.setMaxDrawdownPeakDate(LocalDate.ofEpochDay(accumulator.maxDrawdownPeakDay()));
+            vo.setMaxDrawdownTroughDate(LocalDate.ofEpochDay(accumulator.maxDrawdownTroughDay()));
+        }
+        vo.setDownsideDeviation(percent(accumulator.downsideDeviation()));
+        vo.setSharpeRatio(decimal(accumulator.sharpeRatio()));
+        vo.setSortinoRatio(decimal(accumulator.sortinoRatio()));
+        return vo;
+    }
+
+    private static BigDecimal percent(double value) {
+        return Double.isFinite(value) ? decimal(value * 100) : null;
+    }
+
+    private static BigDecimal decimal(double value) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_UP) : null;
+    }
+}
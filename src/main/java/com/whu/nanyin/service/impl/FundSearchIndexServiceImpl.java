@@ -0,0 +1,435 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.whu.nanyin.mapper.FundBasicInfoMapper;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+import com.whu.nanyin.service.FundInfoService;
+import com.whu.nanyin.service.FundSearchIndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 基金超市搜索索引服务实现类
+ *
+ * 索引结构：
+ * 1. 所有基金按基金代码升序排列成文档数组，文档下标即排序位置，因此倒排表天然有序，检索结果无需再排序
+ * 2. 每个文档的可搜索文本 = 小写(全称) + 分隔符 + 小写(简称) + 分隔符 + 小写(代码)，分隔符保证不会产生跨字段的 n-gram
+ * 3. 为每个字符（1-gram）和相邻字符对（2-gram）建立倒排表，查询时对关键词的所有 2-gram 倒排表求交集，
+ *    再用 contains 对候选文档做最终校验，语义与原来的 LIKE '%关键词%' 保持一致
+ *
+ * 索引采用"写时复制"：每次重建或增量合并都生成一个新的不可变快照，再通过 volatile 引用原子替换，
+ * 读请求全程无锁。
+ */
+@Slf4j
+@Service
+public class FundSearchIndexServiceImpl implements FundSearchIndexService {
+
+    /**
+     * 字段分隔符，用户输入中不会出现该字符
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    @Autowired
+    private FundBasicInfoMapper fundBasicInfoMapper;
+
+    /**
+     * 基金信息服务（懒加载），全量构建时通过 listAllBasicInfos() 获取基金目录。
+     * FundInfoService 本身依赖本索引，这里使用 @Lazy 避免循环依赖。
+     */
+    @Autowired
+    @Lazy
+    private FundInfoService fundInfoService;
+
+    /**
+     * 当前生效的索引快照，为 null 表示索引尚未构建
+     */
+    private volatile IndexSnapshot snapshot;
+
+    /**
+     * 应用启动完成后构建索引。
+     * 构建失败（例如数据库暂不可用）只记录日志，搜索会自动回退到数据库，并由定时任务稍后重试。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("[FundSearchIndex] Initial build failed, search falls back to database: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @Override
+    public Page<FundBasicInfo> search(Page<FundBasicInfo> page, String keyword, String fundTypeCode) {
+        IndexSnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("基金搜索索引尚未就绪");
+        }
+
+        int[] matched = current.match(keyword, fundTypeCode);
+        page.setTotal(matched.length);
+
+        // size <= 0 时与 MyBatis-Plus 的约定保持一致，表示不分页；页码小于1时按第一页处理（同 Page.offset()）
+        long size = page.getSize();
+        long offset = Math.max(page.getCurrent() - 1, 0) * size;
+        int from = size > 0 ? (int) Math.min(offset, matched.length) : 0;
+        int to = size > 0 ? (int) Math.min(from + size, matched.length) : matched.length;
+
+        page.setRecords(copyOf(current, matched, from, to));
+        return page;
+    }
+
+    @Override
+    public CursorPageVO<FundBasicInfo> searchAfter(String afterFundCode, int size, String keyword, String fundTypeCode) {
+        IndexSnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("基金搜索索引尚未就绪");
+        }
+
+        int[] matched = current.match(keyword, fundTypeCode);
+        int from = StringUtils.hasText(afterFundCode) ? current.firstAfter(matched, afterFundCode) : 0;
+        int to = (int) Math.min((long) from + size, matched.length);
+
+        CursorPageVO<FundBasicInfo> result = new CursorPageVO<>();
+        result.setRecords(copyOf(current, matched, from, to));
+        result.setSize(size);
+        result.setHasMore(to < matched.length);
+        result.setNextCursor(result.isHasMore() ? current.docs[matched[to - 1]].getFundCode() : null);
+        result.setEstimatedTotal((long) matched.length);
+        return result;
+    }
+
+    @Override
+    public FundBasicInfo getBasicInfo(String fundCode) {
+        IndexSnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("基金搜索索引尚未就绪");
+        }
+        FundBasicInfo doc = fundCode == null ? null : current.find(fundCode);
+        if (doc == null) {
+            return null;
+        }
+        FundBasicInfo copy = new FundBasicInfo();
+        BeanUtils.copyProperties(doc, copy);
+        return copy;
+    }
+
+    /**
+     * 拷贝命中结果中 [from, to) 区间的文档，避免调用方补充业绩字段时修改索引中的共享对象
+     */
+    private static List<FundBasicInfo> copyOf(IndexSnapshot current, int[] matched, int from, int to) {
+        List<FundBasicInfo> records = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            FundBasicInfo copy = new FundBasicInfo();
+            BeanUtils.copyProperties(current.docs[matched[i]], copy);
+            records.add(copy);
+        }
+        return records;
+    }
+
+    /**
+     * 每天凌晨全量重建一次，用于吸收已有基金的名称、类型等字段变更。
+     */
+    @Override
+    @Scheduled(cron = "${nanyin.fund-search.full-rebuild-cron:0 30 2 * * ?}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        List<FundBasicInfo> all = fundInfoService.listAllBasicInfos();
+        Map<String, FundBasicInfo> catalog = new HashMap<>(all.size() * 2);
+        for (FundBasicInfo info : all) {
+            if (info.getFundCode() != null) {
+                catalog.put(info.getFundCode(), info);
+            }
+        }
+        snapshot = IndexSnapshot.build(catalog.values());
+        // 全量重建意味着基金字段可能有变更，同步清空基金详情缓存
+        fundInfoService.evictAllFundDetails();
+        log.info("[FundSearchIndex] Built index of {} funds in {} ms", catalog.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 定时按 seq 水位增量拉取新上架的基金。
+     * 若索引还未构建成功（例如启动时数据库不可用），则改为尝试全量构建。
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.fund-search.refresh-interval-ms:300000}",
+               initialDelayString = "${nanyin.fund-search.refresh-interval-ms:300000}")
+    public void refreshIncrementally() {
+        try {
+            IndexSnapshot current = snapshot;
+            if (current == null) {
+                rebuild();
+                return;
+            }
+            List<FundBasicInfo> added = fundBasicInfoMapper.selectList(
+                new QueryWrapper<FundBasicInfo>()
+                    .gt("seq", current.maxSeq)
+                    .orderByAsc("seq")
+            );
+            if (!added.isEmpty()) {
+                upsert(added);
+                // 新上架的基金可能已经以"不存在"的结果进入了详情缓存
+                added.forEach(info -> fundInfoService.evictFundDetail(info.getFundCode()));
+                log.info("[FundSearchIndex] Merged {} new funds into index", added.size());
+            }
+        } catch (Exception e) {
+            log.warn("[FundSearchIndex] Incremental refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void upsert(Collection<FundBasicInfo> basicInfos) {
+        IndexSnapshot current = snapshot;
+        if (current == null || basicInfos == null || basicInfos.isEmpty()) {
+            return;
+        }
+        Map<String, FundBasicInfo> catalog = new HashMap<>(current.docs.length * 2);
+        for (FundBasicInfo doc : current.docs) {
+            catalog.put(doc.getFundCode(), doc);
+        }
+        for (FundBasicInfo info : basicInfos) {
+            if (info.getFundCode() != null) {
+                catalog.put(info.getFundCode(), info);
+            }
+        }
+        snapshot = IndexSnapshot.build(catalog.values());
+    }
+
+    /**
+     * 不可变的索引快照
+     */
+    private static final class IndexSnapshot {
+
+        private static final int[] EMPTY = new int[0];
+
+        /** 按基金代码升序排列的文档 */
+        private final FundBasicInfo[] docs;
+        /** 与 docs 一一对应的小写可搜索文本 */
+        private final String[] texts;
+        /** 单字符倒排表 */
+        private final Map<Integer, int[]> unigrams;
+        /** 相邻字符对倒排表，key 为 (c1 << 16) | c2 */
+        private final Map<Integer, int[]> bigrams;
+        /** 基金类型代码 -> 文档列表 */
+        private final Map<String, int[]> byType;
+        /** 当前索引包含的最大 seq，用作增量刷新的水位 */
+        private final long maxSeq;
+
+        private IndexSnapshot(FundBasicInfo[] docs, String[] texts, Map<Integer, int[]> unigrams,
+                              Map<Integer, int[]> bigrams, Map<String, int[]> byType, long maxSeq) {
+            this.docs = docs;
+            this.texts = texts;
+            this.unigrams = unigrams;
+            this.bigrams = bigrams;
+            this.byType = byType;
+            this.maxSeq = maxSeq;
+        }
+
+        static IndexSnapshot build(Collection<FundBasicInfo> catalog) {
+            FundBasicInfo[] docs = catalog.toArray(new FundBasicInfo[0]);
+            Arrays.sort(docs, Comparator.comparing(FundBasicInfo::getFundCode));
+
+            String[] texts = new String[docs.length];
+            Map<Integer, IntList> unigramBuilder = new HashMap<>();
+            Map<Integer, IntList> bigramBuilder = new HashMap<>();
+            Map<String, IntList> typeBuilder = new LinkedHashMap<>();
+            long maxSeq = 0;
+
+            for (int id = 0; id < docs.length; id++) {
+                FundBasicInfo doc = docs[id];
+                String text = normalize(doc.getFundName()) + FIELD_SEPARATOR
+                        + normalize(doc.getAbbreviation()) + FIELD_SEPARATOR
+                        + normalize(doc.getFundCode());
+                texts[id] = text;
+
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == FIELD_SEPARATOR) {
+                        continue;
+                    }
+                    unigramBuilder.computeIfAbsent((int) c, k -> new IntList()).addDistinct(id);
+                    if (i + 1 < text.length() && text.charAt(i + 1) != FIELD_SEPARATOR) {
+                        bigramBuilder.computeIfAbsent(bigramKey(c, text.charAt(i + 1)), k -> new IntList()).addDistinct(id);
+                    }
+                }
+                if (doc.getFundInvestType() != null) {
+                    typeBuilder.computeIfAbsent(doc.getFundInvestType(), k -> new IntList()).addDistinct(id);
+                }
+                if (doc.getSeq() != null && doc.getSeq() > maxSeq) {
+                    maxSeq = doc.getSeq();
+                }
+            }
+            return new IndexSnapshot(docs, texts, freeze(unigramBuilder), freeze(bigramBuilder), freeze(typeBuilder), maxSeq);
+        }
+
+        /**
+         * 返回同时满足关键词与类型条件的文档下标（升序，即基金代码升序）
+         */
+        int[] match(String keyword, String fundTypeCode) {
+            int[] byKeyword = StringUtils.hasText(keyword) ? matchKeyword(normalize(keyword.trim())) : null;
+            int[] byFundType = StringUtils.hasText(fundTypeCode) ? byType.getOrDefault(fundTypeCode, EMPTY) : null;
+
+            if (byKeyword == null && byFundType == null) {
+                int[] all = new int[docs.length];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = i;
+                }
+                return all;
+            }
+            if (byKeyword == null) {
+                return byFundType;
+            }
+            if (byFundType == null) {
+                return byKeyword;
+            }
+            return intersect(byKeyword, byFundType);
+        }
+
+        /**
+         * 在按代码排序的文档数组中二分查找指定基金
+         */
+        FundBasicInfo find(String fundCode) {
+            int lo = 0, hi = docs.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = docs[mid].getFundCode().compareTo(fundCode);
+                if (cmp == 0) {
+                    return docs[mid];
+                } else if (cmp < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 在命中结果中二分查找第一个基金代码严格大于 fundCode 的位置
+         */
+        int firstAfter(int[] matched, String fundCode) {
+            int lo = 0, hi = matched.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (docs[matched[mid]].getFundCode().compareTo(fundCode) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int[] matchKeyword(String query) {
+            if (query.length() == 1) {
+                return unigrams.getOrDefault((int) query.charAt(0), EMPTY);
+            }
+
+            // 收集关键词的所有 2-gram 倒排表，任一缺失即说明不可能命中
+            List<int[]> postings = new ArrayList<>(query.length() - 1);
+            for (int i = 0; i + 1 < query.length(); i++) {
+                int[] list = bigrams.get(bigramKey(query.charAt(i), query.charAt(i + 1)));
+                if (list == null) {
+                    return EMPTY;
+                }
+                postings.add(list);
+            }
+            // 从最短的倒排表开始求交集，尽快缩小候选集
+            postings.sort(Comparator.comparingInt(list -> list.length));
+            int[] candidates = postings.get(0);
+            for (int i = 1; i < postings.size() && candidates.length > 0; i++) {
+                candidates = intersect(candidates, postings.get(i));
+            }
+
+            // 2-gram 全部命中不代表子串连续出现，用 contains 做最终校验
+            int[] verified = new int[candidates.length];
+            int n = 0;
+            for (int id : candidates) {
+                if (texts[id].contains(query)) {
+                    verified[n++] = id;
+                }
+            }
+            return n == verified.length ? verified : Arrays.copyOf(verified, n);
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] out = new int[Math.min(a.length, b.length)];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    out[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+
+        private static int bigramKey(char c1, char c2) {
+            return (c1 << 16) | c2;
+        }
+
+        private static String normalize(String s) {
+            return s == null ? "" : s.toLowerCase(Locale.ROOT);
+        }
+
+        private static <K> Map<K, int[]> freeze(Map<K, IntList> builder) {
+            Map<K, int[]> frozen = new HashMap<>(builder.size() * 2);
+            builder.forEach((key, list) -> frozen.put(key, list.toArray()));
+            return Collections.unmodifiableMap(frozen);
+        }
+    }
+
+    /**
+     * 构建倒排表时使用的简易 int 动态数组，避免 List&lt;Integer&gt; 的装箱开销
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        /**
+         * 文档按下标递增的顺序写入，只需和末尾元素比较即可去重
+         */
+        void addDistinct(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.mapper.FundTransactionMapper;
+import com.whu.nanyin.mapper.UserHoldingMapper;
+import com.whu.nanyin.mapper.UserMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
+import com.whu.nanyin.pojo.vo.SettlementResultVO;
+import com.whu.nanyin.service.FundQuoteService;
+import com.whu.nanyin.service.FundSettlementService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待确认订单的按净值批量确认服务实现类
+ *
+ * 每只基金的确认过程：
+ * 1. 一次查出该基金的全部待确认订单（按下单时间升序），以及最早交易日之后的全部单位净值（按日期升序）
+ * 2. 订单与净值双指针归并，一遍为每笔订单找到成交净值并算出份额或金额；交易日净值尚未公布的订单留待下次
+ * 3. 按分块写入，每块一个事务：一条语句回填订单，申购按用户合并后一条 upsert 写持仓，赎回按用户合并后一条语句入账
+ * 多只基金在固定大小的线程池中并行确认；同一用户在不同基金上的入账可能互相等锁，死锁失败的分块整体重试。
+ */
+@Slf4j
+@Service
+public class FundSettlementServiceImpl implements FundSettlementService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private FundTransactionMapper fundTransactionMapper;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private UserHoldingMapper userHoldingMapper;
+
+    @Autowired
+    private FundQuoteService fundQuoteService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${nanyin.settlement.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 交易日截止时间，此后下单的订单按下一天的净值成交
+     */
+    @Value("${nanyin.settlement.cutoff:15:00}")
+    private String cutoffText;
+
+    @Value("${nanyin.settlement.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 每个事务写入的订单数
+     */
+    @Value("${nanyin.settlement.chunk-size:2000}")
+    private int chunkSize;
+
+    private LocalTime cutoff;
+
+    /**
+     * 按基金并行确认的线程池
+     */
+    private ExecutorService settlers;
+
+    /**
+     * 净值到达或定时任务触发的确认在这里排队执行，不阻塞事件发布方，也不占用 settlers 的线程
+     */
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("settlement-dispatcher").setDaemon(true).build());
+
+    /**
+     * 正在确认中的基金，同一只基金不会被两个线程同时确认
+     */
+    private final Set<String> settling = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 一只基金的确认结果
+     */
+    private record FundOutcome(long settled, long waiting, boolean failed) {
+    }
+
+    @PostConstruct
+    public void initSettlers() {
+        cutoff = LocalTime.parse(cutoffText);
+        settlers = new ThreadPoolExecutor(parallelism, parallelism,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("settlement-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        settlers.shutdown();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public SettlementResultVO settle(Collection<String> fundCodes) {
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<FundOutcome>> futures = new ArrayList<>();
+        for (String fundCode : new LinkedHashSet<>(fundCodes)) {
+            futures.add(CompletableFuture.supplyAsync(() -> settleFund(fundCode), settlers));
+        }
+        SettlementResultVO result = new SettlementResultVO();
+        result.setFundCount(futures.size());
+        for (CompletableFuture<FundOutcome> future : futures) {
+            FundOutcome outcome = future.join();
+            result.setSettledOrders(result.getSettledOrders() + outcome.settled());
+            result.setWaitingOrders(result.getWaitingOrders() + outcome.waiting());
+            if (outcome.failed()) {
+                result.setFailedFunds(result.getFailedFunds() + 1);
+            }
+        }
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    @Override
+    public SettlementResultVO settleAll() {
+        return settle(fundTransactionMapper.listPendingFundCodes());
+    }
+
+    /**
+     * 每日收盘、净值公布后确认全部待确认订单，兜底非导入渠道（直接写库）到达的净值
+     */
+    @Scheduled(cron = "${nanyin.settlement.cron:0 30 21 * * ?}")
+    public void scheduledSettle() {
+        if (!enabled) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            try {
+                log.info("[Settlement] Scheduled run finished: {}", settleAll());
+            } catch (Exception e) {
+                log.warn("[Settlement] Scheduled run failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 净值导入完成后，确认这批基金中等待该净值的订单
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (!enabled || event.getDataType() != NavUpdatedEvent.DataType.NET_VALUE) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            try {
+                Set<String> fundCodes = new HashSet<>(fundTransactionMapper.listPendingFundCodes());
+                fundCodes.retainAll(event.getFundCodes());
+                if (!fundCodes.isEmpty()) {
+                    log.info("[Settlement] Run after ingestion of {} finished: {}", event.getSource(), settle(fundCodes));
+                }
+            } catch (Exception e) {
+                log.warn("[Settlement] Run after ingestion of {} failed: {}", event.getSource(), e.getMessage());
+            }
+        });
+    }
+
+    private FundOutcome settleFund(String fundCode) {
+        if (!settling.add(fundCode)) {
+            return new FundOutcome(0, 0, false);
+        }
+        // 放在 try 之外，异常时仍能把未写入的订单计入等待数
+        List<FundTransaction> orders = List.of();
+        long written = 0;
+        try {
+            orders = fundTransactionMapper.listPendingOrders(fundCode);
+            if (orders.isEmpty()) {
+                return new FundOutcome(0, 0, false);
+            }
+            // 订单按下单时间升序，交易日随之单调不减，第一笔的交易日最早
+            List<FundNetValue> navs = fundNetValueMapper.selectList(new QueryWrapper<FundNetValue>()
+                .select("end_date", "unit_net_value")
+                .eq("fund_code", fundCode)
+                .ge("end_date", tradeDate(orders.get(0).getTransactionTime()).atStartOfDay())
+                .isNotNull("unit_net_value")
+                .orderByAsc("end_date"));
+            if (navs.isEmpty()) {
+                return new FundOutcome(0, orders.size(), false);
+            }
+
+            List<FundTransaction> settled = new ArrayList<>(orders.size());
+            int j = 0;
+            for (FundTransaction order : orders) {
+                LocalDate tradeDate = tradeDate(order.getTransactionTime());
+                while (j < navs.size() && navs.get(j).getEndDate().toLocalDate().isBefore(tradeDate)) {
+                    j++;
+                }
+                if (j == navs.size()) {
+                    // 之后的订单交易日只会更晚，净值同样尚未公布
+                    break;
+                }
+                settled.add(price(order, navs.get(j).getUnitNetValue()));
+            }
+            if (settled.isEmpty()) {
+                return new FundOutcome(0, orders.size(), false);
+            }
+
+            // 持仓市值按该基金最新的净值计算
+            BigDecimal latestNetValue = navs.get(navs.size() - 1).getUnitNetValue();
+            FundQuoteVO quote = fundQuoteService.getQuote(fundCode);
+            String fundName = quote == null ? null : quote.getFundName();
+            for (List<FundTransaction> chunk : Lists.partition(settled, chunkSize)) {
+                if (!writeChunk(fundCode, fundName, latestNetValue, chunk)) {
+                    return new FundOutcome(written, orders.size() - written, true);
+                }
+                written += chunk.size();
+            }
+            return new FundOutcome(written, orders.size() - written, false);
+        } catch (Exception e) {
+            log.error("[Settlement] Fund {} failed: {}", fundCode, e.getMessage());
+            return new FundOutcome(written, orders.size() - written, true);
+        } finally {
+            settling.remove(fundCode);
+        }
+    }
+
+    /**
+     * 按成交净值计算订单结果：申购算份额（4位小数），赎回算金额（2位小数）
+     */
+    private static FundTransaction price(FundTransaction order, BigDecimal netValue) {
+        FundTransaction settled = new FundTransaction();
+        settled.setId(order.getId());
+        settled.setUserId(order.getUserId());
+        settled.setTransactionType(order.getTransactionType());
+        settled.setSharePrice(netValue);
+        if ("申购".equals(order.getTransactionType())) {
+            settled.setTransactionAmount(order.getTransactionAmount());
+            settled.setTransactionShares(order.getTransactionAmount().divide(netValue, 4, RoundingMode.HALF_UP));
+        } else {
+            settled.setTransactionShares(order.getTransactionShares());
+            settled.setTransactionAmount(order.getTransactionShares().multiply(netValue).setScale(2, RoundingMode.HALF_UP));
+        }
+        return settled;
+    }
+
+    /**
+     * 在一个事务中写入一个分块，死锁或锁等待超时时整块重试
+     * @return 是否写入成功
+     */
+    private boolean writeChunk(String fundCode, String fundName, BigDecimal latestNetValue, List<FundTransaction> chunk) {
+        // 按用户合并，并按用户ID排序，让并行的各基金以相同顺序获取 users / user_holdings 的行锁
+        Map<Long, FundTransaction> purchases = new TreeMap<>();
+        Map<Long, FundTransaction> credits = new TreeMap<>();
+        for (FundTransaction order : chunk) {
+            Map<Long, FundTransaction> target = "申购".equals(order.getTransactionType()) ? purchases : credits;
+            target.merge(order.getUserId(), copyForMerge(order), (a, b) -> {
+                a.setTransactionShares(a.getTransactionShares().add(b.getTransactionShares()));
+                a.setTransactionAmount(a.getTransactionAmount().add(b.getTransactionAmount()));
+                return a;
+            });
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    int updated = fundTransactionMapper.settleOrders(chunk);
+                    if (updated != chunk.size()) {
+                        // 有订单已被其他实例确认，回滚本块，下次确认时重新计算
+                        throw new IllegalStateException("订单状态已变化，预期 " + chunk.size() + " 笔，实际 " + updated + " 笔");
+                    }
+                    if (!purchases.isEmpty()) {
+                        userHoldingMapper.upsertAfterPurchases(fundCode, fundName, latestNetValue, new ArrayList<>(purchases.values()));
+                    }
+                    if (!credits.isEmpty()) {
+                        userMapper.creditBalances(new ArrayList<>(credits.values()));
+                    }
+                });
+                return true;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    log.error("[Settlement] Fund {} chunk of {} orders failed after {} attempts: {}",
+                        fundCode, chunk.size(), attempt, e.getMessage());
+                    return false;
+                }
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                log.error("[Settlement] Fund {} chunk of {} orders failed: {}", fundCode, chunk.size(), e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private static FundTransaction copyForMerge(FundTransaction order) {
+        FundTransaction copy = new FundTransaction();
+        copy.setUserId(order.getUserId());
+        copy.setTransactionShares(order.getTransactionShares());
+        copy.setTransactionAmount(order.getTransactionAmount());
+        return copy;
+    }
+
+    /**
+     * 交易日：截止时间之前下单为当天，之后为下一天
+     */
+    private LocalDate tradeDate(LocalDateTime transactionTime) {
+        LocalDate date = transactionTime.toLocalDate();
+        return transactionTime.toLocalTime().isBefore(cutoff) ? date : date.plusDays(1);
+    }
+}
@@ -2,15 +2,20 @@ package com.whu.nanyin.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.whu.nanyin.common.TradeTransactionRunner;
 import com.whu.nanyin.exception.InsufficientFundsException;
 import com.whu.nanyin.mapper.FundTransactionMapper;
+import com.whu.nanyin.mapper.TransactionArchiveMapper;
 import com.whu.nanyin.mapper.UserMapper;
+import com.whu.nanyin.pojo.dto.FundBatchOrderDTO;
 import com.whu.nanyin.pojo.dto.FundPurchaseDTO;
 import com.whu.nanyin.pojo.dto.FundRedeemDTO;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.entity.TransactionArchiveSummary;
 import com.whu.nanyin.pojo.entity.User;
 import com.whu.nanyin.pojo.entity.UserHolding;
-import com.whu.nanyin.pojo.entity.FundTransaction;
-import com.whu.nanyin.pojo.vo.FundDetailVO;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
 import com.whu.nanyin.pojo.vo.FundTransactionVO;
 import com.whu.nanyin.service.*;
 import org.springframework.beans.BeanUtils;
@@ -18,13 +23,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -42,7 +57,7 @@ import lombok.extern.slf4j.Slf4j;
  * 
  * <h3>业务特点：</h3>
  * <ul>
- *   <li><strong>事务管理</strong>：关键操作使用@Transactional确保数据一致性</li>
+ *   <li><strong>事务管理</strong>：交易按用户排队后再开启事务（可选组提交），确保数据一致性</li>
  *   <li><strong>精度控制</strong>：使用BigDecimal进行金融计算，避免精度丢失</li>
  *   <li><strong>安全校验</strong>：严格的权限控制和数据校验机制</li>
  *   <li><strong>实时净值</strong>：基于最新基金净值进行交易计算</li>
@@ -51,7 +66,8 @@ import lombok.extern.slf4j.Slf4j;
  * <h3>依赖关系：</h3>
  * <ul>
  *   <li>继承MyBatis-Plus的ServiceImpl，提供基础CRUD功能</li>
- *   <li>依赖FundInfoService获取基金信息和净值数据</li>
+ *   <li>依赖FundQuoteService获取交易使用的基金报价（最新净值）</li>
+ *   <li>依赖FundNameService补充交易记录的基金名称</li>
  *   <li>依赖UserHoldingService管理用户持仓信息</li>
  *   <li>依赖UserMapper进行用户账户操作</li>
  * </ul>
@@ -69,24 +85,35 @@ import lombok.extern.slf4j.Slf4j;
 public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMapper, FundTransaction> implements FundTransactionService {
 
     /**
-     * 基金信息服务
+     * 基金名称字典服务
      * 
-     * <p>用于获取基金的详细信息，包括：</p>
-     * <ul>
-     *   <li>基金基本信息（名称、代码等）</li>
-     *   <li>基金业绩数据（净值、收益率等）</li>
-     *   <li>基金状态信息（是否可交易等）</li>
-     * </ul>
+     * <p>交易查询时批量补充基金名称，命中内存字典，不再逐行加载基金详情。</p>
+     */
+    @Autowired
+    private FundNameService fundNameService;
+
+    /**
+     * 交易记录冷热分离服务
      * 
-     * <p><strong>业务用途：</strong></p>
-     * <ul>
-     *   <li>申购时获取最新净值计算份额</li>
-     *   <li>赎回时获取最新净值计算金额</li>
-     *   <li>交易查询时补充基金名称信息</li>
-     * </ul>
+     * <p>读取历史交易时判断该用户是否有归档交易、归档到了哪一天，决定是否需要读取归档表。</p>
+     */
+    @Autowired
+    private TransactionArchiveService transactionArchiveService;
+
+    /**
+     * 归档表数据访问
      */
     @Autowired
-    private FundInfoService fundInfoService;
+    private TransactionArchiveMapper transactionArchiveMapper;
+
+    /**
+     * 基金报价服务
+     * 
+     * <p>交易链路中唯一的净值来源：每笔申购/赎回只解析一次报价（名称、类型、最新单位净值），
+     * 并将其一路传递到持仓更新，不再为读取一个净值而加载完整的基金详情和一年的净值历史。</p>
+     */
+    @Autowired
+    private FundQuoteService fundQuoteService;
 
     /**
      * 用户持仓服务（懒加载）
@@ -116,21 +143,39 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * 
      * <p>直接操作用户表，主要用于账户余额管理：</p>
      * <ul>
-     *   <li><strong>申购时</strong>：扣除用户账户余额</li>
-     *   <li><strong>赎回时</strong>：增加用户账户余额</li>
-     *   <li><strong>校验时</strong>：检查用户余额是否充足</li>
+     *   <li><strong>申购时</strong>：条件扣款（debitBalance），余额校验与扣减在同一条 UPDATE 中完成</li>
+     *   <li><strong>赎回时</strong>：入账（creditBalance），在数据库内累加余额</li>
      * </ul>
      * 
      * <p><strong>数据安全：</strong></p>
      * <ul>
      *   <li>所有余额操作都在事务内执行</li>
      *   <li>使用BigDecimal确保金额计算精度</li>
-     *   <li>操作前进行充分的数据校验</li>
+     *   <li>不在 Java 中"先读后写"余额，并发交易不会超扣或丢失更新</li>
      * </ul>
      */
     @Autowired
     private UserMapper userMapper;
 
+    /**
+     * 交易执行入口
+     * 
+     * <p>同一用户的交易先在内存中排队，再开启数据库事务，避免在 MySQL 内部等待 users / user_holdings 的行锁；
+     * 开启组提交时，多个用户的交易合并在同一个事务中提交。</p>
+     * 
+     * <p>事务必须在取得用户锁之后开启（排队期间不占用数据库连接），因此申购、赎回不再使用@Transactional。</p>
+     */
+    @Autowired
+    private TradeTransactionRunner tradeTransactionRunner;
+
+    /**
+     * 待确认订单确认服务
+     * 
+     * <p>开启待确认模式时，申购、赎回以“待确认”状态入库，按交易日净值批量确认。</p>
+     */
+    @Autowired
+    private FundSettlementService fundSettlementService;
+
     /**
      * 创建基金申购交易
      * 
@@ -138,10 +183,9 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * 
      * <h3>业务流程：</h3>
      * <ol>
-     *   <li><strong>用户校验</strong>：验证用户存在性和账户余额充足性</li>
-     *   <li><strong>余额扣除</strong>：从用户账户扣除申购金额</li>
      *   <li><strong>基金校验</strong>：验证基金存在性和可交易性</li>
      *   <li><strong>净值获取</strong>：获取基金最新单位净值</li>
+     *   <li><strong>条件扣款</strong>：一条 UPDATE 完成余额校验与扣减，余额不足时不修改任何数据</li>
      *   <li><strong>份额计算</strong>：根据申购金额和净值计算可获得份额</li>
      *   <li><strong>交易记录</strong>：创建并保存交易记录</li>
      *   <li><strong>持仓更新</strong>：同步更新用户持仓信息</li>
@@ -167,25 +211,25 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * @throws RuntimeException 当交易记录保存失败时抛出
      * @see FundPurchaseDTO
      * @see FundTransaction
-     * @see #saveTransactionAndUpdateHolding(FundTransaction)
+     * @see #saveTransactionAndUpdateHolding(FundTransaction, FundQuoteVO)
      */
     @Override
-    @Transactional
     public FundTransaction createPurchaseTransaction(FundPurchaseDTO dto) {
-        // 1. 校验并扣除用户余额
-        User user = userMapper.selectById(dto.getUserId());
-        if (user == null || user.getBalance().compareTo(dto.getTransactionAmount()) < 0) {
+        return tradeTransactionRunner.execute(dto.getUserId(), () -> doCreatePurchaseTransaction(dto));
+    }
+
+    /**
+     * 申购的事务内逻辑，调用方负责按用户排队并开启事务
+     */
+    private FundTransaction doCreatePurchaseTransaction(FundPurchaseDTO dto) {
+        // 1. 获取基金报价（先于扣款，缩短用户行锁的持有时间）
+        FundQuoteVO quote = resolveTradableQuote(dto.getFundCode());
+        BigDecimal sharePrice = quote.getUnitNetValue();
+
+        // 2. 条件扣款：余额校验和扣减在一条 UPDATE 中完成，受影响行数为0即余额不足（或用户不存在）
+        if (userMapper.debitBalance(dto.getUserId(), dto.getTransactionAmount()) == 0) {
             throw new InsufficientFundsException("购买失败：账户余额不足。");
         }
-        user.setBalance(user.getBalance().subtract(dto.getTransactionAmount()));
-        userMapper.updateById(user);
-
-        // 2. 获取基金信息
-        FundDetailVO fundDetail = fundInfoService.getFundDetail(dto.getFundCode());
-        Assert.notNull(fundDetail, "找不到对应的基金信息：" + dto.getFundCode());
-        Assert.notNull(fundDetail.getPerformance(), "该基金暂无有效的业绩信息，无法交易。");
-        BigDecimal sharePrice = fundDetail.getPerformance().getUnitNetValue();
-        Assert.notNull(sharePrice, "该基金暂无有效的净值信息，无法交易。");
 
         // 3. 创建交易实体并手动赋值
         FundTransaction transaction = new FundTransaction();
@@ -198,6 +242,13 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         transaction.setBankAccountNumber(dto.getBankAccountNumber());
 
         transaction.setTransactionType("申购");
+
+        // 待确认模式：已扣款，份额在交易日净值公布后由 FundSettlementService 计算并计入持仓
+        if (fundSettlementService.isEnabled()) {
+            transaction.setStatus("待确认");
+            return saveTransaction(transaction);
+        }
+
         transaction.setSharePrice(sharePrice);
         transaction.setStatus("成功");
 
@@ -206,7 +257,7 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         transaction.setTransactionShares(shares);
 
         // 4. 保存交易并更新持仓
-        return saveTransactionAndUpdateHolding(transaction);
+        return saveTransactionAndUpdateHolding(transaction, quote);
     }
 
     /**
@@ -214,6 +265,8 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * 
      * <p>用于获取用户购买指定基金时使用的银行卡号，以便在赎回时使用相同的银行卡。</p>
      * 
+     * <p>先查热表；热表中没有（申购早于热数据窗口）且该用户有归档交易时，再查归档表。</p>
+     * 
      * @param userId 用户唯一标识ID
      * @param fundCode 基金代码
      * @return 最近的申购交易记录，如果没有找到则返回null
@@ -226,7 +279,11 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
                    .eq("transaction_type", "申购")
                    .orderByDesc("create_time")
                    .last("LIMIT 1");
-        return this.getOne(queryWrapper);
+        FundTransaction latest = this.getOne(queryWrapper);
+        if (latest == null && transactionArchiveService.getSummary(userId) != null) {
+            latest = transactionArchiveMapper.selectLatestArchivedPurchase(userId, fundCode);
+        }
+        return latest;
     }
 
     /**
@@ -236,61 +293,44 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * 
      * <h3>业务流程：</h3>
      * <ol>
-     *   <li><strong>持仓校验</strong>：验证用户持有足够的基金份额</li>
-     *   <li><strong>银行卡查询</strong>：自动获取购买时使用的银行卡号</li>
      *   <li><strong>净值获取</strong>：获取基金最新单位净值</li>
      *   <li><strong>金额计算</strong>：根据赎回份额和净值计算可获得金额</li>
-     *   <li><strong>资金返还</strong>：将赎回金额加入用户账户余额</li>
+     *   <li><strong>条件扣减份额</strong>：一条 UPDATE 完成份额校验与扣减，份额不足时不修改任何数据</li>
+     *   <li><strong>银行卡查询</strong>：自动获取购买时使用的银行卡号</li>
+     *   <li><strong>资金返还</strong>：以一条 UPDATE 在数据库内累加赎回金额</li>
      *   <li><strong>交易记录</strong>：创建并保存交易记录</li>
-     *   <li><strong>持仓更新</strong>：同步减少用户持仓份额</li>
      * </ol>
      * 
+     * <p>份额校验不再先查询持仓再比较：并发的两笔赎回会同时通过先读后写的校验，
+     * 条件扣减则由数据库行锁串行化，后到的一笔看到已扣减的份额。</p>
+     * 
      * @param dto 赎回请求数据传输对象，包含用户ID、基金代码、赎回份额、交易时间等信息
      * @return 创建并保存的交易记录实体，包含数据库生成的交易ID和计算得出的赎回金额
      * @throws InsufficientFundsException 当用户持仓份额不足时抛出
      * @throws IllegalArgumentException 当基金信息无效或找不到购买记录时抛出
      */
     @Override
-    @Transactional
     public FundTransaction createRedeemTransaction(FundRedeemDTO dto) {
-        // 1. 校验用户持仓份额是否足够
-        QueryWrapper<UserHolding> holdingQuery = new QueryWrapper<>();
-        holdingQuery.eq("user_id", dto.getUserId()).eq("fund_code", dto.getFundCode());
-        UserHolding currentHolding = userHoldingService.getOne(holdingQuery);
-        if (currentHolding == null || dto.getTransactionShares().compareTo(currentHolding.getTotalShares()) > 0) {
-            String availableShares = (currentHolding != null) ? currentHolding.getTotalShares().toPlainString() : "0";
-            throw new InsufficientFundsException("赎回失败：份额不足。当前持有 " + availableShares + " 份，尝试赎回 " + dto.getTransactionShares().toPlainString() + " 份。");
-        }
-
-        // 2. 自动获取购买时使用的银行卡号
-        FundTransaction latestPurchase = getLatestPurchaseTransaction(dto.getUserId(), dto.getFundCode());
-        if (latestPurchase == null || latestPurchase.getBankAccountNumber() == null) {
-            throw new IllegalArgumentException("赎回失败：找不到该基金的购买记录或银行卡信息。");
-        }
-        String bankAccountNumber = latestPurchase.getBankAccountNumber();
+        return tradeTransactionRunner.execute(dto.getUserId(), () -> doCreateRedeemTransaction(dto));
+    }
 
-        // 3. 获取基金最新净值
-        FundDetailVO fundDetail = fundInfoService.getFundDetail(dto.getFundCode());
-        Assert.notNull(fundDetail, "找不到对应的基金信息：" + dto.getFundCode());
-        Assert.notNull(fundDetail.getPerformance(), "该基金暂无有效的业绩信息，无法交易。");
-        BigDecimal sharePrice = fundDetail.getPerformance().getUnitNetValue();
-        Assert.notNull(sharePrice, "该基金暂无有效的净值信息，无法交易。");
+    /**
+     * 赎回的事务内逻辑，调用方负责按用户排队并开启事务
+     */
+    private FundTransaction doCreateRedeemTransaction(FundRedeemDTO dto) {
+        // 1. 获取基金最新净值
+        FundQuoteVO quote = resolveTradableQuote(dto.getFundCode());
+        BigDecimal sharePrice = quote.getUnitNetValue();
 
-        // 4. 计算赎回可获得的金额 (份额 × 净值)，保留2位小数
+        // 2. 计算赎回可获得的金额 (份额 × 净值)，保留2位小数
         BigDecimal redeemAmount = dto.getTransactionShares().multiply(sharePrice).setScale(2, RoundingMode.HALF_UP);
 
-        // 5. 将赎回金额增加到用户的可用余额中
-        User user = userMapper.selectById(dto.getUserId());
-        user.setBalance(user.getBalance().add(redeemAmount));
-        userMapper.updateById(user);
-
-        // 6. 创建并保存交易记录实体
+        // 3. 创建交易记录实体
         FundTransaction transaction = new FundTransaction();
         transaction.setUserId(dto.getUserId());
         transaction.setFundCode(dto.getFundCode());
         transaction.setTransactionShares(dto.getTransactionShares());
         transaction.setTransactionTime(LocalDateTime.now()); // 使用服务器当前时间
-        transaction.setBankAccountNumber(bankAccountNumber); // 使用购买时的银行卡号
         transaction.setTransactionType("赎回");
         transaction.setSharePrice(sharePrice);
         transaction.setStatus("成功");
@@ -298,8 +338,211 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         // 设置计算出的赎回金额（重要：确保金额准确性）
         transaction.setTransactionAmount(redeemAmount);
 
-        // 7. 保存交易记录并触发持仓更新
-        return saveTransactionAndUpdateHolding(transaction);
+        // 4. 条件扣减持仓份额：份额不足（或没有持仓）时抛出 InsufficientFundsException，最先失败、不产生任何写入
+        userHoldingService.updateHoldingAfterNewTransaction(transaction, quote);
+
+        // 5. 自动获取购买时使用的银行卡号
+        FundTransaction latestPurchase = getLatestPurchaseTransaction(dto.getUserId(), dto.getFundCode());
+        if (latestPurchase == null || latestPurchase.getBankAccountNumber() == null) {
+            throw new IllegalArgumentException("赎回失败：找不到该基金的购买记录或银行卡信息。");
+        }
+        transaction.setBankAccountNumber(latestPurchase.getBankAccountNumber()); // 使用购买时的银行卡号
+
+        // 待确认模式：份额已冻结（扣减），金额在交易日净值公布后由 FundSettlementService 计算并入账
+        if (fundSettlementService.isEnabled()) {
+            transaction.setSharePrice(null);
+            transaction.setTransactionAmount(null);
+            transaction.setStatus("待确认");
+            return saveTransaction(transaction);
+        }
+
+        // 6. 将赎回金额增加到用户的可用余额中（数据库内累加，不再先读后写）
+        if (userMapper.creditBalance(dto.getUserId(), redeemAmount) == 0) {
+            throw new IllegalArgumentException("赎回失败：用户不存在。");
+        }
+
+        // 7. 保存交易记录（持仓已在第4步更新）
+        return saveTransaction(transaction);
+    }
+
+    /**
+     * 批量交易（组合调仓）
+     * 
+     * <p>一次调仓原本是 N 次独立的申购/赎回调用，每次都单独鉴权、查询报价并提交事务。
+     * 这里把全部交易腿合并为一笔交易处理：</p>
+     * 
+     * <h3>业务流程：</h3>
+     * <ol>
+     *   <li><strong>报价</strong>：一次批量查询全部基金的最新净值</li>
+     *   <li><strong>快照校验</strong>：读取一次余额与相关持仓，按基金汇总赎回份额、按净额校验余额，任何一条不满足即整体拒绝</li>
+     *   <li><strong>持仓</strong>：按基金合并交易腿，每只基金一条带条件的扣减或 upsert</li>
+     *   <li><strong>资金</strong>：申购扣款与赎回入账轧差后一条 UPDATE（即时成交时赎回所得可用于同批申购）</li>
+     *   <li><strong>交易记录</strong>：JDBC 批量插入全部交易记录</li>
+     * </ol>
+     * 
+     * <p>快照校验用于给出明确的失败原因，写入时的条件更新仍然兜底并发修改；全部写入在同一个事务中，任一失败整体回滚。</p>
+     * 
+     * @param dto 批量交易请求，包含用户ID、默认银行卡号与交易腿列表
+     * @return 保存后的交易记录，顺序与交易腿一致
+     * @throws InsufficientFundsException 当余额或某只基金的持仓份额不足时抛出
+     * @throws IllegalArgumentException 当交易腿参数不完整、基金信息无效或找不到银行卡信息时抛出
+     */
+    @Override
+    public List<FundTransaction> createBatchTransactions(FundBatchOrderDTO dto) {
+        return tradeTransactionRunner.execute(dto.getUserId(), () -> doCreateBatchTransactions(dto));
+    }
+
+    /**
+     * 批量交易的事务内逻辑，调用方负责按用户排队并开启事务
+     */
+    private List<FundTransaction> doCreateBatchTransactions(FundBatchOrderDTO dto) {
+        Long userId = dto.getUserId();
+        List<FundBatchOrderDTO.Leg> legs = dto.getLegs();
+        boolean pending = fundSettlementService.isEnabled();
+
+        // 1. 校验交易腿参数，并一次查询全部基金的报价
+        Set<String> fundCodes = new LinkedHashSet<>();
+        for (FundBatchOrderDTO.Leg leg : legs) {
+            if ("申购".equals(leg.getTransactionType())) {
+                Assert.notNull(leg.getTransactionAmount(), "申购 " + leg.getFundCode() + " 缺少申购金额。");
+                Assert.isTrue(leg.getBankAccountNumber() != null || dto.getBankAccountNumber() != null,
+                    "申购 " + leg.getFundCode() + " 缺少银行卡号。");
+            } else {
+                Assert.notNull(leg.getTransactionShares(), "赎回 " + leg.getFundCode() + " 缺少赎回份额。");
+            }
+            fundCodes.add(leg.getFundCode());
+        }
+        Map<String, FundQuoteVO> quotes = fundQuoteService.getQuotes(fundCodes);
+        for (String fundCode : fundCodes) {
+            FundQuoteVO quote = quotes.get(fundCode);
+            Assert.notNull(quote, "找不到对应的基金信息：" + fundCode);
+            Assert.notNull(quote.getUnitNetValue(), "基金 " + fundCode + " 暂无有效的净值信息，无法交易。");
+        }
+
+        // 2. 构建交易记录，并按基金汇总（同一基金的多条腿合并为一次持仓写入）
+        LocalDateTime now = LocalDateTime.now();
+        List<FundTransaction> transactions = new ArrayList<>(legs.size());
+        Map<String, FundTransaction> purchasesByFund = new LinkedHashMap<>();
+        Map<String, FundTransaction> redeemsByFund = new LinkedHashMap<>();
+        BigDecimal purchaseTotal = BigDecimal.ZERO;
+        BigDecimal redeemTotal = BigDecimal.ZERO;
+        for (FundBatchOrderDTO.Leg leg : legs) {
+            BigDecimal sharePrice = quotes.get(leg.getFundCode()).getUnitNetValue();
+            FundTransaction transaction = new FundTransaction();
+            transaction.setUserId(userId);
+            transaction.setFundCode(leg.getFundCode());
+            transaction.setTransactionType(leg.getTransactionType());
+            transaction.setTransactionTime(now);
+            transaction.setBankAccountNumber(leg.getBankAccountNumber() != null ? leg.getBankAccountNumber() : dto.getBankAccountNumber());
+            transaction.setStatus(pending ? "待确认" : "成功");
+            if ("申购".equals(leg.getTransactionType())) {
+                transaction.setTransactionAmount(leg.getTransactionAmount());
+                if (!pending) {
+                    transaction.setSharePrice(sharePrice);
+                    transaction.setTransactionShares(leg.getTransactionAmount().divide(sharePrice, 4, RoundingMode.HALF_UP));
+                }
+                purchaseTotal = purchaseTotal.add(leg.getTransactionAmount());
+                mergeByFund(purchasesByFund, transaction);
+            } else {
+                transaction.setTransactionShares(leg.getTransactionShares());
+                if (!pending) {
+                    BigDecimal redeemAmount = leg.getTransactionShares().multiply(sharePrice).setScale(2, RoundingMode.HALF_UP);
+                    transaction.setSharePrice(sharePrice);
+                    transaction.setTransactionAmount(redeemAmount);
+                    redeemTotal = redeemTotal.add(redeemAmount);
+                }
+                mergeByFund(redeemsByFund, transaction);
+            }
+            transactions.add(transaction);
+        }
+
+        // 3. 基于同一份余额/持仓快照整体校验
+        User user = userMapper.selectById(userId);
+        Assert.notNull(user, "交易失败：用户不存在。");
+        Map<String, BigDecimal> heldShares = new HashMap<>();
+        if (!redeemsByFund.isEmpty()) {
+            for (UserHolding holding : userHoldingService.list(new QueryWrapper<UserHolding>()
+                    .eq("user_id", userId).in("fund_code", redeemsByFund.keySet()))) {
+                heldShares.put(holding.getFundCode(), holding.getTotalShares());
+            }
+        }
+        for (FundTransaction redeem : redeemsByFund.values()) {
+            BigDecimal available = heldShares.getOrDefault(redeem.getFundCode(), BigDecimal.ZERO);
+            if (redeem.getTransactionShares().compareTo(available) > 0) {
+                throw new InsufficientFundsException("批量交易失败：基金 " + redeem.getFundCode() + " 份额不足。当前持有 "
+                    + available.toPlainString() + " 份，尝试赎回 " + redeem.getTransactionShares().toPlainString() + " 份。");
+            }
+        }
+        // 即时成交时赎回所得当场入账，可抵扣同批申购；待确认模式下赎回金额要等净值确认后才入账
+        BigDecimal netDebit = purchaseTotal.subtract(redeemTotal);
+        BigDecimal balance = user.getBalance() == null ? BigDecimal.ZERO : user.getBalance();
+        if (netDebit.compareTo(balance) > 0) {
+            throw new InsufficientFundsException("批量交易失败：账户余额不足。需要 " + netDebit.toPlainString()
+                + "，可用 " + balance.toPlainString() + "。");
+        }
+
+        // 4. 赎回腿缺少银行卡号时，每只基金取最近一笔申购使用的银行卡号（LIMIT 1，热表没有时再查归档表）
+        Map<String, String> accounts = new HashMap<>();
+        for (FundTransaction transaction : transactions) {
+            if (transaction.getBankAccountNumber() == null) {
+                String account = accounts.computeIfAbsent(transaction.getFundCode(), fundCode -> {
+                    FundTransaction latestPurchase = getLatestPurchaseTransaction(userId, fundCode);
+                    return latestPurchase == null ? null : latestPurchase.getBankAccountNumber();
+                });
+                if (account == null) {
+                    throw new IllegalArgumentException("赎回失败：找不到基金 " + transaction.getFundCode() + " 的购买记录或银行卡信息。");
+                }
+                transaction.setBankAccountNumber(account);
+            }
+        }
+
+        // 5. 持仓：先做带条件的赎回扣减（快照之后被并发修改时在这里失败），再写申购
+        for (FundTransaction redeem : redeemsByFund.values()) {
+            userHoldingService.updateHoldingAfterNewTransaction(redeem, quotes.get(redeem.getFundCode()));
+        }
+        if (!pending) {
+            for (FundTransaction purchase : purchasesByFund.values()) {
+                userHoldingService.updateHoldingAfterNewTransaction(purchase, quotes.get(purchase.getFundCode()));
+            }
+        }
+
+        // 6. 资金：轧差后一条 UPDATE，扣款带余额条件
+        if (netDebit.signum() > 0) {
+            if (userMapper.debitBalance(userId, netDebit) == 0) {
+                throw new InsufficientFundsException("批量交易失败：账户余额不足。");
+            }
+        } else if (netDebit.signum() < 0) {
+            userMapper.creditBalance(userId, netDebit.negate());
+        }
+
+        // 7. 批量插入交易记录
+        if (!this.saveBatch(transactions)) {
+            log.error("[Transaction] Save batch of {} transactions failed, userId={}", transactions.size(), userId);
+            throw new RuntimeException("保存交易失败");
+        }
+        return transactions;
+    }
+
+    /**
+     * 把一条交易腿累加到所属基金的汇总交易上（份额与金额分别求和，缺失的一方保持为空）
+     */
+    private static void mergeByFund(Map<String, FundTransaction> byFund, FundTransaction leg) {
+        FundTransaction total = byFund.computeIfAbsent(leg.getFundCode(), fundCode -> {
+            FundTransaction merged = new FundTransaction();
+            merged.setUserId(leg.getUserId());
+            merged.setFundCode(fundCode);
+            merged.setTransactionType(leg.getTransactionType());
+            return merged;
+        });
+        total.setTransactionShares(sum(total.getTransactionShares(), leg.getTransactionShares()));
+        total.setTransactionAmount(sum(total.getTransactionAmount(), leg.getTransactionAmount()));
+    }
+
+    private static BigDecimal sum(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.add(b);
     }
 
     /**
@@ -312,6 +555,7 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      *   <li><strong>用户隔离</strong>：只返回指定用户的交易记录</li>
      *   <li><strong>顺序排列</strong>：按ID升序排序，确保时间顺序</li>
      *   <li><strong>完整信息</strong>：返回交易的所有字段信息</li>
+     *   <li><strong>包含归档</strong>：该用户有归档交易时合并归档表中的记录</li>
      * </ul>
      * 
      * <h3>使用场景：</h3>
@@ -330,7 +574,15 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         QueryWrapper<FundTransaction> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("user_id", userId);
         queryWrapper.orderByAsc("id"); // 按ID升序排序，确保从1开始
-        return this.list(queryWrapper);
+        List<FundTransaction> transactions = this.list(queryWrapper);
+        // 先读热表再读归档汇总，读取期间恰好被归档的交易会在归档表中读到，按ID去重
+        if (transactionArchiveService.getSummary(userId) != null) {
+            Map<Long, FundTransaction> merged = new TreeMap<>();
+            transactionArchiveMapper.listArchivedByUserId(userId).forEach(t -> merged.put(t.getId(), t));
+            transactions.forEach(t -> merged.put(t.getId(), t));
+            transactions = new ArrayList<>(merged.values());
+        }
+        return transactions;
     }
 
     /**
@@ -348,9 +600,9 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * <h3>处理逻辑：</h3>
      * <ol>
      *   <li>查询用户的所有交易记录</li>
-     *   <li>遍历每条交易记录</li>
-     *   <li>根据基金代码查询基金详细信息</li>
-     *   <li>提取基金名称并设置到VO对象</li>
+     *   <li>将每条交易记录转换为VO对象</li>
+     *   <li>收集全部不重复的基金代码，从基金名称字典中一次批量取出名称</li>
+     *   <li>将基金名称设置到VO对象</li>
      *   <li>返回包含基金名称的VO列表</li>
      * </ol>
      * 
@@ -363,24 +615,154 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * @param userId 用户唯一标识ID
      * @return 包含基金名称的交易记录VO列表，如果用户无交易记录则返回空列表
      * @see FundTransactionVO
-     * @see FundDetailVO
+     * @see FundNameService
      * @see #listByUserId(Long)
      */
     @Override
     public List<FundTransactionVO> listByUserIdWithFundName(Long userId) {
-        List<FundTransaction> transactions = listByUserId(userId);
-        return transactions.stream().map(transaction -> {
+        List<FundTransactionVO> records = listByUserId(userId).stream().map(transaction -> {
             FundTransactionVO vo = new FundTransactionVO();
             BeanUtils.copyProperties(transaction, vo);
-            
-            // 根据fund_code查询基金名称
-            FundDetailVO fundDetail = fundInfoService.getFundDetail(transaction.getFundCode());
-            if (fundDetail != null && fundDetail.getBasicInfo() != null) {
-                vo.setFundName(fundDetail.getBasicInfo().getFundName());
-            }
-            
             return vo;
         }).collect(Collectors.toList());
+        fillFundNames(records);
+        return records;
+    }
+
+    /**
+     * 按游标分页查询用户交易记录（包含基金名称）
+     * 
+     * <p>按交易时间倒序（时间相同再按ID倒序）排列，以上一页最后一条记录的 (交易时间, ID) 为起点向后定位，
+     * 不使用 OFFSET，也不执行 COUNT(*)，翻到多深单页代价都一样。
+     * 走 (user_id, transaction_time, id) 复合索引，见 resources/sql/user_transactions_history_index.sql。</p>
+     * 
+     * <p>有归档数据时，只有热表凑不满一页、或这一页已经翻到该用户已归档的时间范围内时，
+     * 才以相同的条件和游标在归档表上再定位一次并合并，最近的交易历史只读热表。</p>
+     * 
+     * @param userId 用户唯一标识ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页记录数
+     * @param startDate 交易日期下限（可选，包含）
+     * @param endDate 交易日期上限（可选，包含）
+     * @param fundCode 基金代码（可选，精确匹配）
+     * @param transactionType 交易类型（可选，申购/赎回）
+     * @return 游标分页结果
+     * @throws IllegalArgumentException 当游标格式不正确时抛出
+     */
+    @Override
+    public CursorPageVO<FundTransactionVO> listByUserIdCursorPage(Long userId, String cursor, int size, LocalDate startDate,
+                                                                  LocalDate endDate, String fundCode, String transactionType) {
+        QueryWrapper<FundTransaction> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("user_id", userId);
+        if (startDate != null) {
+            queryWrapper.ge("transaction_time", startDate.atStartOfDay());
+        }
+        if (endDate != null) {
+            queryWrapper.lt("transaction_time", endDate.plusDays(1).atStartOfDay());
+        }
+        if (StringUtils.hasText(fundCode)) {
+            queryWrapper.eq("fund_code", fundCode);
+        }
+        if (StringUtils.hasText(transactionType)) {
+            queryWrapper.eq("transaction_type", transactionType);
+        }
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (StringUtils.hasText(cursor)) {
+            // 游标格式：交易时间_ID
+            int separator = cursor.lastIndexOf('_');
+            try {
+                afterTime = LocalDateTime.parse(cursor.substring(0, separator));
+                afterId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标：" + cursor);
+            }
+            LocalDateTime seekTime = afterTime;
+            Long seekId = afterId;
+            // 展开写法 t <= ? AND (t < ? OR id < ?)，第一个条件让优化器直接在索引上做范围扫描
+            queryWrapper.le("transaction_time", seekTime)
+                .and(wrapper -> wrapper.lt("transaction_time", seekTime)
+                    .or().lt("id", seekId));
+        }
+        queryWrapper.orderByDesc("transaction_time", "id").last("LIMIT " + (size + 1));
+
+        // 多查的一条只用来判断是否还有下一页
+        List<FundTransaction> rows = this.list(queryWrapper);
+
+        // 热表凑不满一页，或这一页已经翻到该用户已归档的时间范围内时，才需要读取归档表
+        TransactionArchiveSummary archive = transactionArchiveService.getSummary(userId);
+        if (archive != null && (rows.size() <= size
+                || !rows.get(rows.size() - 1).getTransactionTime().isAfter(archive.getArchivedThrough()))) {
+            List<FundTransaction> archived = transactionArchiveMapper.seekArchived(userId,
+                startDate == null ? null : startDate.atStartOfDay(),
+                endDate == null ? null : endDate.plusDays(1).atStartOfDay(),
+                StringUtils.hasText(fundCode) ? fundCode : null,
+                StringUtils.hasText(transactionType) ? transactionType : null,
+                afterTime, afterId, size + 1);
+            rows = mergeDescending(rows, archived, size + 1);
+        }
+        boolean hasMore = rows.size() > size;
+        List<FundTransaction> transactions = hasMore ? rows.subList(0, size) : rows;
+
+        List<FundTransactionVO> records = new ArrayList<>(transactions.size());
+        for (FundTransaction transaction : transactions) {
+            FundTransactionVO vo = new FundTransactionVO();
+            BeanUtils.copyProperties(transaction, vo);
+            records.add(vo);
+        }
+        fillFundNames(records);
+
+        CursorPageVO<FundTransactionVO> result = new CursorPageVO<>();
+        result.setRecords(records);
+        result.setSize(size);
+        result.setHasMore(hasMore);
+        if (hasMore) {
+            FundTransaction last = transactions.get(transactions.size() - 1);
+            result.setNextCursor(last.getTransactionTime() + "_" + last.getId());
+        }
+        return result;
+    }
+
+    /**
+     * 合并热表与归档表中各自按 (交易时间, ID) 倒序的两段记录，按ID去重后取前 limit 条
+     */
+    private static List<FundTransaction> mergeDescending(List<FundTransaction> hot, List<FundTransaction> archived, int limit) {
+        Comparator<FundTransaction> order = Comparator.comparing(FundTransaction::getTransactionTime)
+            .thenComparing(FundTransaction::getId).reversed();
+        Map<Long, FundTransaction> merged = new LinkedHashMap<>();
+        Stream.concat(hot.stream(), archived.stream())
+            .sorted(order)
+            .forEach(t -> merged.putIfAbsent(t.getId(), t));
+        return merged.values().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * 为交易记录补充基金名称：全部不重复的基金代码一次批量查询基金名称字典
+     * 
+     * @param records 交易记录VO列表（直接修改传入的对象）
+     */
+    private void fillFundNames(List<FundTransactionVO> records) {
+        Map<String, String> fundNames = fundNameService.getNames(
+            records.stream().map(FundTransactionVO::getFundCode).collect(Collectors.toSet()));
+        for (FundTransactionVO vo : records) {
+            vo.setFundName(fundNames.get(vo.getFundCode()));
+        }
+    }
+
+    /**
+     * 解析可交易的基金报价
+     * 
+     * <p>基金不存在或暂无净值时抛出IllegalArgumentException，使当前交易事务回滚。</p>
+     * 
+     * @param fundCode 基金代码
+     * @return 包含最新单位净值的基金报价
+     * @throws IllegalArgumentException 当基金信息无效或净值缺失时抛出
+     */
+    private FundQuoteVO resolveTradableQuote(String fundCode) {
+        FundQuoteVO quote = fundQuoteService.getQuote(fundCode);
+        Assert.notNull(quote, "找不到对应的基金信息：" + fundCode);
+        Assert.notNull(quote.getUnitNetValue(), "该基金暂无有效的净值信息，无法交易。");
+        return quote;
     }
 
     /**
@@ -410,20 +792,33 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
      * </ul>
      * 
      * @param transaction 已经构建好的交易实体，包含所有必要的交易信息
+     * @param quote 本次交易使用的基金报价，原样传给持仓更新
      * @return 保存后的交易实体，包含数据库生成的ID和完整的交易信息
      * @throws RuntimeException 当交易保存失败时抛出
-     * @see UserHoldingService#updateHoldingAfterNewTransaction(FundTransaction)
+     * @see UserHoldingService#updateHoldingAfterNewTransaction(FundTransaction, FundQuoteVO)
      */
-    private FundTransaction saveTransactionAndUpdateHolding(FundTransaction transaction) {
+    private FundTransaction saveTransactionAndUpdateHolding(FundTransaction transaction, FundQuoteVO quote) {
         // 步骤1：将交易记录保存到数据库
+        saveTransaction(transaction);
+        // 步骤2：调用客户持仓服务，根据这笔新交易实时更新持仓信息
+        userHoldingService.updateHoldingAfterNewTransaction(transaction, quote);
+        // 步骤3：返回包含ID的完整交易实体
+        return transaction;
+    }
+
+    /**
+     * 保存交易记录并校验数据库生成的ID
+     * 
+     * @param transaction 已经构建好的交易实体
+     * @return 保存后的交易实体
+     * @throws RuntimeException 当交易保存失败时抛出
+     */
+    private FundTransaction saveTransaction(FundTransaction transaction) {
         boolean ok = this.save(transaction);
         if (!ok || transaction.getId() == null) {
             log.error("[Transaction] Save transaction failed, tx={}", transaction);
             throw new RuntimeException("保存交易失败");
         }
-        // 步骤2：调用客户持仓服务，根据这笔新交易实时更新持仓信息
-        userHoldingService.updateHoldingAfterNewTransaction(transaction);
-        // 步骤3：返回包含ID的完整交易实体
         return transaction;
     }
 
@@ -464,6 +859,10 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
     @Override
     public FundTransaction getTransactionByIdAndUserId(Long transactionId, Long userId) {
         FundTransaction transaction = this.getById(transactionId);
+        // 热表中没有时，可能已经被归档
+        if (transaction == null && transactionArchiveService.isArchiveInUse()) {
+            transaction = transactionArchiveMapper.selectArchivedById(transactionId);
+        }
 
         // 安全校验：如果交易不存在，或者交易的userId与当前登录的userId不匹配
         if (transaction == null || !transaction.getUserId().equals(userId)) {
@@ -515,11 +914,8 @@ public class FundTransactionServiceImpl extends ServiceImpl<FundTransactionMappe
         FundTransactionVO vo = new FundTransactionVO();
         BeanUtils.copyProperties(transaction, vo);
         
-        // 根据fund_code查询基金名称
-        FundDetailVO fundDetail = fundInfoService.getFundDetail(transaction.getFundCode());
-        if (fundDetail != null && fundDetail.getBasicInfo() != null) {
-            vo.setFundName(fundDetail.getBasicInfo().getFundName());
-        }
+        // 从基金名称字典中读取基金名称
+        vo.setFundName(fundNameService.getName(transaction.getFundCode()));
         
         return vo;
     }
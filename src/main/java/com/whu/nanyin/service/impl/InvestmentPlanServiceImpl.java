@@ -0,0 +1,432 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.whu.nanyin.common.UserTradeSequencer;
+import com.whu.nanyin.mapper.InvestmentPlanMapper;
+import com.whu.nanyin.pojo.dto.FundBatchOrderDTO;
+import com.whu.nanyin.pojo.dto.InvestmentPlanDTO;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.entity.InvestmentPlan;
+import com.whu.nanyin.pojo.vo.PlanRunResultVO;
+import com.whu.nanyin.service.FundQuoteService;
+import com.whu.nanyin.service.FundTransactionService;
+import com.whu.nanyin.service.InvestmentPlanService;
+import lombok.extern.slf4j.Slf4j;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 定投计划服务实现类
+ *
+ * 批量执行的流程：
+ * 1. 按主键游标分页读取到期计划；每页按用户ID哈希分到固定数量的分区，同一用户的计划总在同一分区、由同一线程顺序处理
+ * 2. 各分区并行，分区内每 users-per-transaction 个用户一组：先一次获取这组用户的交易锁分段（UserTradeSequencer），
+ *    再开启一个事务处理整组；每个用户的多个计划合并为一次批量申购（FundTransactionService 的批量交易路径）
+ * 3. 每个用户申购前建立保存点：合并申购失败（通常是余额不够覆盖全部计划）时回滚到保存点，再逐个计划申购，失败只影响该计划
+ * 4. 整组计划的执行结果与下一次执行日期一条语句写回，与申购在同一事务中提交
+ * 5. 整组事务失败（如计划已被其他任务推进）时，逐个用户各开一个事务重试，只有出问题的用户被跳过、下次执行时重试
+ * 锁分段在事务之外一次获取完毕，事务中不会持有行锁去等待锁分段，
+ * 与组内用户（或同一分段上其他用户）的在线交易只会排队，不会互相等待。
+ * 读完一页、各分区都处理完才读下一页，同一用户的计划不会被两个线程同时处理。
+ */
+@Slf4j
+@Service
+public class InvestmentPlanServiceImpl extends ServiceImpl<InvestmentPlanMapper, InvestmentPlan> implements InvestmentPlanService {
+
+    /**
+     * 失败原因的最大长度，与表结构一致
+     */
+    private static final int MAX_MESSAGE_LENGTH = 255;
+
+    @Autowired
+    @Lazy
+    private FundTransactionService fundTransactionService;
+
+    @Autowired
+    private FundQuoteService fundQuoteService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserTradeSequencer userTradeSequencer;
+
+    @Autowired
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Value("${nanyin.investment-plan.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 并行分区数
+     */
+    @Value("${nanyin.investment-plan.parallelism:8}")
+    private int parallelism;
+
+    /**
+     * 每页读取的到期计划数
+     */
+    @Value("${nanyin.investment-plan.page-size:10000}")
+    private int pageSize;
+
+    /**
+     * 每个事务处理的用户数
+     */
+    @Value("${nanyin.investment-plan.users-per-transaction:100}")
+    private int usersPerTransaction;
+
+    private ExecutorService workers;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile RunProgress lastRun;
+
+    /**
+     * 执行任务的进度计数，各分区线程并发累加
+     */
+    private static final class RunProgress {
+        private final LocalDate runDate;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final long startMillis = System.currentTimeMillis();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private volatile String status = "执行中";
+        private volatile long endMillis;
+
+        private RunProgress(LocalDate runDate) {
+            this.runDate = runDate;
+        }
+
+        private PlanRunResultVO toVO() {
+            PlanRunResultVO vo = new PlanRunResultVO();
+            vo.setRunDate(runDate);
+            vo.setStatus(status);
+            vo.setStartTime(startTime);
+            vo.setSucceededPlans(succeeded.get());
+            vo.setFailedPlans(failed.get());
+            vo.setSkippedPlans(skipped.get());
+            vo.setProcessedPlans(vo.getSucceededPlans() + vo.getFailedPlans() + vo.getSkippedPlans());
+            vo.setElapsedMs((endMillis > 0 ? endMillis : System.currentTimeMillis()) - startMillis);
+            return vo;
+        }
+    }
+
+    @PostConstruct
+    public void initWorkers() {
+        workers = new ThreadPoolExecutor(parallelism, parallelism,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("investment-plan-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public List<InvestmentPlan> listByUserId(Long userId) {
+        return this.list(new QueryWrapper<InvestmentPlan>().eq("user_id", userId).orderByAsc("id"));
+    }
+
+    @Override
+    public InvestmentPlan createPlan(Long userId, InvestmentPlanDTO dto) {
+        validate(dto);
+        InvestmentPlan plan = new InvestmentPlan();
+        plan.setUserId(userId);
+        apply(plan, dto);
+        plan.setStatus(dto.getStatus() == null ? "生效" : dto.getStatus());
+        plan.setNextRunDate(nextRunDate(plan.getFrequency(), plan.getScheduleDay(), LocalDate.now()));
+        this.save(plan);
+        return plan;
+    }
+
+    @Override
+    public InvestmentPlan updatePlan(Long userId, Long planId, InvestmentPlanDTO dto) {
+        InvestmentPlan plan = getOwnedPlan(userId, planId);
+        validate(dto);
+        boolean scheduleChanged = !dto.getFrequency().equals(plan.getFrequency())
+            || !Objects.equals(normalizeScheduleDay(dto), plan.getScheduleDay());
+        boolean resumed = "生效".equals(dto.getStatus()) && !"生效".equals(plan.getStatus());
+        apply(plan, dto);
+        if (dto.getStatus() != null) {
+            plan.setStatus(dto.getStatus());
+        }
+        if (scheduleChanged || resumed) {
+            // 恢复时不补扣暂停期间错过的期数
+            plan.setNextRunDate(nextRunDate(plan.getFrequency(), plan.getScheduleDay(), LocalDate.now()));
+        }
+        this.updateById(plan);
+        return plan;
+    }
+
+    @Override
+    public void deletePlan(Long userId, Long planId) {
+        this.removeById(getOwnedPlan(userId, planId).getId());
+    }
+
+    @Override
+    public PlanRunResultVO getLastRunResult() {
+        RunProgress progress = lastRun;
+        return progress == null ? null : progress.toVO();
+    }
+
+    /**
+     * 工作日定时执行当天到期的计划；周末与节假日到期的计划在下一次执行时一并处理
+     */
+    @Scheduled(cron = "${nanyin.investment-plan.cron:0 0 10 ? * MON-FRI}")
+    public void scheduledExecute() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log.info("[InvestmentPlan] Scheduled run finished: {}", executeDuePlans(LocalDate.now()));
+        } catch (Exception e) {
+            log.warn("[InvestmentPlan] Scheduled run failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public PlanRunResultVO executeDuePlans(LocalDate runDate) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("定投任务正在执行中，请稍后再试。");
+        }
+        RunProgress progress = new RunProgress(runDate);
+        lastRun = progress;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<InvestmentPlan> page = baseMapper.listDuePlans(runDate, afterId, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+
+                // 按用户分区，同一用户的计划由同一线程处理
+                List<List<InvestmentPlan>> partitions = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    partitions.add(new ArrayList<>());
+                }
+                for (InvestmentPlan plan : page) {
+                    partitions.get(Math.floorMod(plan.getUserId().hashCode(), parallelism)).add(plan);
+                }
+                List<CompletableFuture<Void>> futures = new ArrayList<>(parallelism);
+                for (List<InvestmentPlan> partition : partitions) {
+                    if (!partition.isEmpty()) {
+                        futures.add(CompletableFuture.runAsync(() -> runPartition(partition, runDate, progress), workers));
+                    }
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                log.info("[InvestmentPlan] Progress: {}", progress.toVO());
+            }
+            progress.status = "已完成";
+        } catch (RuntimeException e) {
+            progress.status = "失败";
+            throw e;
+        } finally {
+            progress.endMillis = System.currentTimeMillis();
+            running.set(false);
+        }
+        return progress.toVO();
+    }
+
+    private void runPartition(List<InvestmentPlan> partition, LocalDate runDate, RunProgress progress) {
+        Map<Long, List<InvestmentPlan>> plansByUser = partition.stream()
+            .collect(Collectors.groupingBy(InvestmentPlan::getUserId, LinkedHashMap::new, Collectors.toList()));
+        for (List<Long> userIds : Lists.partition(new ArrayList<>(plansByUser.keySet()), usersPerTransaction)) {
+            try {
+                runUsers(userIds, plansByUser, runDate, progress);
+            } catch (RuntimeException e) {
+                if (userIds.size() == 1) {
+                    skip(userIds.get(0), plansByUser, progress, e);
+                    continue;
+                }
+                log.warn("[InvestmentPlan] Group of {} users failed, retrying user by user: {}", userIds.size(), e.getMessage());
+                for (Long userId : userIds) {
+                    try {
+                        runUsers(List.of(userId), plansByUser, runDate, progress);
+                    } catch (RuntimeException userError) {
+                        skip(userId, plansByUser, progress, userError);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中执行一组用户的计划，提交成功后才累加进度
+     */
+    private void runUsers(List<Long> userIds, Map<Long, List<InvestmentPlan>> plansByUser, LocalDate runDate, RunProgress progress) {
+        List<InvestmentPlan> outcomes = new ArrayList<>();
+        // 先排队再开启事务；事务内的批量申购再次获取同一分段时是重入，并加入本事务
+        userTradeSequencer.executeAll(userIds, () -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                outcomes.clear();
+                for (Long userId : userIds) {
+                    executeUserPlans(status, plansByUser.get(userId), runDate, outcomes);
+                }
+                int advanced = baseMapper.advancePlans(runDate, outcomes);
+                if (advanced != outcomes.size()) {
+                    throw new IllegalStateException("有计划已被其他任务执行，预期 " + outcomes.size() + " 个，实际 " + advanced + " 个");
+                }
+            });
+            return null;
+        });
+        for (InvestmentPlan outcome : outcomes) {
+            ("成功".equals(outcome.getLastStatus()) ? progress.succeeded : progress.failed).incrementAndGet();
+        }
+    }
+
+    private static void skip(Long userId, Map<Long, List<InvestmentPlan>> plansByUser, RunProgress progress, RuntimeException e) {
+        int plans = plansByUser.get(userId).size();
+        log.error("[InvestmentPlan] {} plans of user {} failed, will retry next run: {}", plans, userId, e.getMessage());
+        progress.skipped.addAndGet(plans);
+    }
+
+    /**
+     * 执行同一用户的一组计划：先合并为一次批量申购，失败时逐个计划申购以隔离失败
+     */
+    private void executeUserPlans(TransactionStatus status, List<InvestmentPlan> plans, LocalDate runDate, List<InvestmentPlan> outcomes) {
+        Object savepoint = status.createSavepoint();
+        try {
+            List<FundTransaction> transactions = fundTransactionService.createBatchTransactions(toBatchOrder(plans));
+            status.releaseSavepoint(savepoint);
+            for (int i = 0; i < plans.size(); i++) {
+                outcomes.add(outcome(plans.get(i), runDate, transactions.get(i), null));
+            }
+            return;
+        } catch (RuntimeException e) {
+            rollbackTo(status, savepoint);
+            if (plans.size() == 1) {
+                outcomes.add(outcome(plans.get(0), runDate, null, e));
+                return;
+            }
+        }
+        for (InvestmentPlan plan : plans) {
+            Object planSavepoint = status.createSavepoint();
+            try {
+                FundTransaction transaction = fundTransactionService.createBatchTransactions(toBatchOrder(List.of(plan))).get(0);
+                status.releaseSavepoint(planSavepoint);
+                outcomes.add(outcome(plan, runDate, transaction, null));
+            } catch (RuntimeException e) {
+                rollbackTo(status, planSavepoint);
+                outcomes.add(outcome(plan, runDate, null, e));
+            }
+        }
+    }
+
+    private void rollbackTo(TransactionStatus status, Object savepoint) {
+        status.rollbackToSavepoint(savepoint);
+        // 回滚到保存点后，会话一级缓存里可能留有失败申购读到的数据
+        sqlSessionTemplate.clearCache();
+    }
+
+    private static FundBatchOrderDTO toBatchOrder(List<InvestmentPlan> plans) {
+        FundBatchOrderDTO order = new FundBatchOrderDTO();
+        order.setUserId(plans.get(0).getUserId());
+        List<FundBatchOrderDTO.Leg> legs = new ArrayList<>(plans.size());
+        for (InvestmentPlan plan : plans) {
+            FundBatchOrderDTO.Leg leg = new FundBatchOrderDTO.Leg();
+            leg.setTransactionType("申购");
+            leg.setFundCode(plan.getFundCode());
+            leg.setTransactionAmount(plan.getAmount());
+            leg.setBankAccountNumber(plan.getBankAccountNumber());
+            legs.add(leg);
+        }
+        order.setLegs(legs);
+        return order;
+    }
+
+    /**
+     * 构建计划的本期执行结果（用于批量推进），失败的计划同样推进到下一期
+     */
+    private static InvestmentPlan outcome(InvestmentPlan plan, LocalDate runDate, FundTransaction transaction, RuntimeException error) {
+        InvestmentPlan outcome = new InvestmentPlan();
+        outcome.setId(plan.getId());
+        outcome.setNextRunDate(nextRunDate(plan.getFrequency(), plan.getScheduleDay(), runDate));
+        if (error == null) {
+            outcome.setLastStatus("成功");
+            outcome.setLastTransactionId(transaction.getId());
+        } else {
+            String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+            outcome.setLastStatus("失败");
+            outcome.setLastMessage(message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+        }
+        return outcome;
+    }
+
+    /**
+     * 计算 after 之后的第一个扣款日
+     */
+    private static LocalDate nextRunDate(String frequency, Integer scheduleDay, LocalDate after) {
+        switch (frequency) {
+            case "每日":
+                return after.plusDays(1);
+            case "每周":
+                return after.with(TemporalAdjusters.next(DayOfWeek.of(scheduleDay)));
+            default:
+                LocalDate candidate = after.withDayOfMonth(scheduleDay);
+                return candidate.isAfter(after) ? candidate : after.plusMonths(1).withDayOfMonth(scheduleDay);
+        }
+    }
+
+    private void validate(InvestmentPlanDTO dto) {
+        Assert.notNull(fundQuoteService.getQuote(dto.getFundCode()), "找不到对应的基金信息：" + dto.getFundCode());
+        if ("每周".equals(dto.getFrequency())) {
+            Assert.isTrue(dto.getScheduleDay() != null && dto.getScheduleDay() <= 7, "每周定投的扣款日必须为1-7。");
+        } else if ("每月".equals(dto.getFrequency())) {
+            Assert.notNull(dto.getScheduleDay(), "每月定投的扣款日不能为空。");
+        }
+    }
+
+    private static Integer normalizeScheduleDay(InvestmentPlanDTO dto) {
+        return "每日".equals(dto.getFrequency()) ? null : dto.getScheduleDay();
+    }
+
+    private static void apply(InvestmentPlan plan, InvestmentPlanDTO dto) {
+        plan.setFundCode(dto.getFundCode());
+        plan.setAmount(dto.getAmount());
+        plan.setFrequency(dto.getFrequency());
+        plan.setScheduleDay(normalizeScheduleDay(dto));
+        plan.setBankAccountNumber(dto.getBankAccountNumber());
+    }
+
+    private InvestmentPlan getOwnedPlan(Long userId, Long planId) {
+        InvestmentPlan plan = this.getById(planId);
+        if (plan == null || !plan.getUserId().equals(userId)) {
+            throw new AccessDeniedException("无权访问此定投计划");
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,189 @@
+package com.whu.nanyin.service.impl;
+
+import com.google.common.collect.Lists;
+import com.whu.nanyin.event.NavUpdatedEvent;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.service.LatestNavService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 基金最新净值查询服务实现类
+ *
+ * 缓存结构为 ConcurrentHashMap&lt;基金代码, 最新净值记录&gt;，读操作无锁。
+ * 启动时对净值表做一次全量聚合完成加载，之后按 seq 水位增量合并新写入的净值；
+ * 对于修正历史净值等非追加型变更，调用方可以通过 refresh 按基金代码精确刷新。
+ */
+@Slf4j
+@Service
+public class LatestNavServiceImpl implements LatestNavService {
+
+    /**
+     * 增量拉取时的单批行数
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private FundNetValueMapper fundNetValueMapper;
+
+    /**
+     * 当前生效的缓存，为 null 表示尚未加载
+     */
+    private volatile ConcurrentHashMap<String, FundNetValue> latestByFund;
+
+    /**
+     * 已合并进缓存的最大 seq，作为增量拉取的水位
+     */
+    private final AtomicLong seqWatermark = new AtomicLong();
+
+    /**
+     * 应用启动完成后加载缓存，失败时读请求回退到数据库查询，由定时任务稍后重试。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("[LatestNav] Initial load failed, reads fall back to database: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return latestByFund != null;
+    }
+
+    @Override
+    public FundNetValue getLatest(String fundCode) {
+        if (fundCode == null) {
+            return null;
+        }
+        return getLatest(List.of(fundCode)).get(fundCode);
+    }
+
+    @Override
+    public Map<String, FundNetValue> getLatest(Collection<String> fundCodes) {
+        Map<String, FundNetValue> result = new HashMap<>();
+        if (fundCodes == null || fundCodes.isEmpty()) {
+            return result;
+        }
+        Map<String, FundNetValue> current = latestByFund;
+        if (current != null) {
+            for (String fundCode : fundCodes) {
+                FundNetValue netValue = current.get(fundCode);
+                if (netValue != null) {
+                    result.put(fundCode, netValue);
+                }
+            }
+            return result;
+        }
+        // 缓存未就绪时只针对这几只基金查询数据库，走 (fund_code, end_date) 索引
+        return fundNetValueMapper.findLatestNetValueByFundCodes(new ArrayList<>(fundCodes)).stream()
+                .collect(Collectors.toMap(FundNetValue::getFundCode, nv -> nv, (a, b) -> a));
+    }
+
+    @Override
+    public void applyNewNetValues(Collection<FundNetValue> netValues) {
+        ConcurrentHashMap<String, FundNetValue> current = latestByFund;
+        if (current == null || netValues == null) {
+            return;
+        }
+        for (FundNetValue netValue : netValues) {
+            if (netValue.getFundCode() != null && netValue.getEndDate() != null) {
+                current.merge(netValue.getFundCode(), netValue,
+                        (existing, incoming) -> incoming.getEndDate().isBefore(existing.getEndDate()) ? existing : incoming);
+            }
+            if (netValue.getSeq() != null) {
+                seqWatermark.accumulateAndGet(netValue.getSeq(), Math::max);
+            }
+        }
+    }
+
+    @Override
+    public void refresh(Collection<String> fundCodes) {
+        ConcurrentHashMap<String, FundNetValue> current = latestByFund;
+        if (current == null || fundCodes == null || fundCodes.isEmpty()) {
+            return;
+        }
+        Map<String, FundNetValue> reloaded = fundNetValueMapper.findLatestNetValueByFundCodes(new ArrayList<>(fundCodes)).stream()
+                .collect(Collectors.toMap(FundNetValue::getFundCode, nv -> nv, (a, b) -> a));
+        for (String fundCode : fundCodes) {
+            FundNetValue netValue = reloaded.get(fundCode);
+            if (netValue != null) {
+                current.put(fundCode, netValue);
+            } else {
+                current.remove(fundCode);
+            }
+        }
+    }
+
+    /**
+     * 净值导入完成后按基金代码精确刷新，覆盖对已有日期的修正（这类更新不会推进 seq 水位）
+     */
+    @EventListener
+    public void onNavUpdated(NavUpdatedEvent event) {
+        if (event.getDataType() != NavUpdatedEvent.DataType.NET_VALUE) {
+            return;
+        }
+        try {
+            for (List<String> part : Lists.partition(new ArrayList<>(event.getFundCodes()), BATCH_SIZE)) {
+                refresh(part);
+            }
+        } catch (Exception e) {
+            log.warn("[LatestNav] Refresh after ingestion of {} failed: {}", event.getSource(), e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        // 先取水位再聚合：聚合期间新写入的行会在下一轮增量拉取中被合并，不会遗漏
+        Long maxSeq = fundNetValueMapper.selectMaxSeq();
+        List<FundNetValue> rows = fundNetValueMapper.findAllLatestNetValues();
+        ConcurrentHashMap<String, FundNetValue> loaded = new ConcurrentHashMap<>(rows.size() * 2);
+        for (FundNetValue row : rows) {
+            loaded.merge(row.getFundCode(), row, (a, b) -> a.getEndDate().isBefore(b.getEndDate()) ? b : a);
+        }
+        seqWatermark.set(maxSeq == null ? 0 : maxSeq);
+        latestByFund = loaded;
+        log.info("[LatestNav] Loaded latest net values of {} funds in {} ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${nanyin.latest-nav.refresh-interval-ms:60000}",
+               initialDelayString = "${nanyin.latest-nav.refresh-interval-ms:60000}")
+    public void refreshIncrementally() {
+        try {
+            if (latestByFund == null) {
+                reload();
+                return;
+            }
+            int merged = 0;
+            List<FundNetValue> batch;
+            do {
+                batch = fundNetValueMapper.findNetValueAfterSeq(seqWatermark.get(), BATCH_SIZE);
+                applyNewNetValues(batch);
+                merged += batch.size();
+            } while (batch.size() == BATCH_SIZE);
+            if (merged > 0) {
+                log.info("[LatestNav] Merged {} new net value rows into cache", merged);
+            }
+        } catch (Exception e) {
+            log.warn("[LatestNav] Incremental refresh failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.whu.nanyin.service.impl;
+
+import com.whu.nanyin.mapper.TransactionArchiveMapper;
+import com.whu.nanyin.pojo.entity.TransactionArchiveSummary;
+import com.whu.nanyin.service.TransactionArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 交易记录冷热分离服务实现类
+ *
+ * 每批一个事务：按交易时间挑选并锁定一批可归档的交易，复制到归档表、按用户累加汇总、再从热表删除，
+ * 三步同时提交或同时回滚，任何时刻一笔交易只会被统计一次。
+ * 待确认订单不归档，FundSettlementService 只需要读写热表。
+ *
+ * 读路由依赖汇总表中的 archived_through（该用户已归档交易的最晚交易时间）：
+ * 读请求先读热表、再读汇总表，热表读到的数据已经覆盖到 archived_through 之后时不再查询归档表。
+ * 先读热表再读汇总表，可以保证读取期间恰好被搬迁的交易一定能在归档表中读到（按ID去重）。
+ * 是否有归档数据由汇总表本身决定，不看任务开关：汇总表不存在或为空时读请求不查询它，
+ * 否定的探测结果最多缓存 probe-interval-ms，一旦发现有数据就不再探测。
+ */
+@Slf4j
+@Service
+public class TransactionArchiveServiceImpl implements TransactionArchiveService {
+
+    /**
+     * 遇到锁冲突（死锁、锁等待超时）时每批的最大尝试次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private TransactionArchiveMapper transactionArchiveMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 归档定时任务开关，不影响读路由
+     */
+    @Value("${nanyin.transaction-archive.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 尚未发现归档数据时，重新探测汇总表的间隔
+     */
+    @Value("${nanyin.transaction-archive.probe-interval-ms:60000}")
+    private long probeIntervalMs;
+
+    /**
+     * 热数据窗口的天数
+     */
+    @Value("${nanyin.transaction-archive.hot-days:180}")
+    private int hotDays;
+
+    /**
+     * 每个事务搬迁的交易笔数
+     */
+    @Value("${nanyin.transaction-archive.batch-size:1000}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 汇总表中已经有数据；只会从false变为true
+     */
+    private volatile boolean archiveInUse;
+
+    /**
+     * 下一次允许探测汇总表的时间
+     */
+    private volatile long nextProbeMillis;
+
+    @Override
+    public boolean isArchiveInUse() {
+        if (archiveInUse) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextProbeMillis) {
+            return false;
+        }
+        nextProbeMillis = now + probeIntervalMs;
+        try {
+            if (transactionArchiveMapper.countSummaryTables() > 0 && transactionArchiveMapper.existsSummary()) {
+                archiveInUse = true;
+                log.info("[TransactionArchive] Archive summary found, reads now include archived transactions");
+            }
+        } catch (Exception e) {
+            log.warn("[TransactionArchive] Failed to probe archive summary: {}", e.getMessage());
+        }
+        return archiveInUse;
+    }
+
+    @Override
+    public TransactionArchiveSummary getSummary(Long userId) {
+        return isArchiveInUse() ? transactionArchiveMapper.selectById(userId) : null;
+    }
+
+    /**
+     * 每日凌晨归档一次
+     */
+    @Scheduled(cron = "${nanyin.transaction-archive.cron:0 0 3 * * ?}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log.info("[TransactionArchive] Scheduled run archived {} transactions", archiveExpired());
+        } catch (Exception e) {
+            log.warn("[TransactionArchive] Scheduled run failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public long archiveExpired() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("归档任务正在执行中，请稍后再试。");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            LocalDateTime cutoff = LocalDate.now().minusDays(hotDays).atStartOfDay();
+            long archived = 0;
+            while (true) {
+                int moved = archiveBatch(cutoff);
+                archived += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+            log.info("[TransactionArchive] Archived {} transactions before {} in {} ms",
+                archived, cutoff, System.currentTimeMillis() - start);
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 搬迁一批交易
+     * @return 本批搬迁的笔数，小于批大小表示已经没有可归档的交易
+     */
+    private int archiveBatch(LocalDateTime cutoff) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Integer moved = transactionTemplate.execute(status -> {
+                    List<Long> ids = transactionArchiveMapper.lockArchivableIds(cutoff, batchSize);
+                    if (ids.isEmpty()) {
+                        return 0;
+                    }
+                    int copied = transactionArchiveMapper.copyToArchive(ids);
+                    transactionArchiveMapper.accumulateSummary(ids);
+                    int deleted = transactionArchiveMapper.deleteFromHot(ids);
+                    if (copied != ids.size() || deleted != ids.size()) {
+                        throw new IllegalStateException("归档行数不一致，预期 " + ids.size() + " 笔，复制 " + copied + " 笔，删除 " + deleted + " 笔");
+                    }
+                    return ids.size();
+                });
+                if (moved != null && moved > 0) {
+                    archiveInUse = true;
+                }
+                return moved == null ? 0 : moved;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.whu.nanyin.service.impl;
+
+import com.whu.nanyin.common.Csv;
+import com.whu.nanyin.common.XlsxStreamWriter;
+import com.whu.nanyin.mapper.FundTransactionMapper;
+import com.whu.nanyin.mapper.TransactionArchiveMapper;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.service.FundNameService;
+import com.whu.nanyin.service.TransactionArchiveService;
+import com.whu.nanyin.service.TransactionExportService;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 交易记录导出服务实现类
+ *
+ * 游标按分块消费：每攒满一块，从基金名称字典中批量取出这一块的基金名称，写出后立即刷新到输出流，
+ * 任意时刻内存中最多只保留一个分块。游标需要在只读事务内保持连接打开；
+ * 流式结果集读取期间同一连接上不能执行其他查询，因此基金名称只读内存字典：打开游标之前先把导出范围内的基金名称补进字典
+ * （单个用户按去重后的基金代码补查未命中的名称；全部用户导出时直接全量重新加载字典）。
+ * CSV 带 UTF-8 BOM，Excel 直接打开时中文不会乱码；XLSX 由 XlsxStreamWriter 边读边写。
+ * 有归档数据时先导出归档表、再导出热表（归档的交易更早）；两个游标在同一个只读事务中读取，
+ * InnoDB 可重复读隔离级别下看到的是同一个快照，导出期间归档任务搬迁的交易不会重复也不会遗漏。
+ */
+@Service
+public class TransactionExportServiceImpl implements TransactionExportService {
+
+    /**
+     * 每次批量补充基金名称并刷新输出流的行数
+     */
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    private static final List<String> HEADER = List.of(
+        "交易ID", "用户ID", "基金代码", "基金名称", "交易类型", "交易金额", "交易份额", "成交净值", "交易时间", "状态", "银行卡号");
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @Autowired
+    private FundTransactionMapper fundTransactionMapper;
+
+    @Autowired
+    private FundNameService fundNameService;
+
+    @Autowired
+    private TransactionArchiveService transactionArchiveService;
+
+    @Autowired
+    private TransactionArchiveMapper transactionArchiveMapper;
+
+    /**
+     * 一种导出格式的行写出方式
+     */
+    private interface RowSink {
+        void write(List<?> cells) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void export(Long userId, LocalDate startDate, LocalDate endDate, Format format, OutputStream out) throws IOException {
+        LocalDateTime startTime = startDate == null ? null : startDate.atStartOfDay();
+        LocalDateTime endTime = endDate == null ? null : endDate.plusDays(1).atStartOfDay();
+        if (format == Format.XLSX) {
+            try (XlsxStreamWriter xlsx = new XlsxStreamWriter(out, "交易记录", HEADER)) {
+                writeAll(userId, startTime, endTime, new RowSink() {
+                    @Override
+                    public void write(List<?> cells) throws IOException {
+                        xlsx.writeRow(cells);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        xlsx.flush();
+                    }
+                });
+            }
+        } else {
+            out.write(UTF8_BOM);
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(Csv.formatLine(HEADER));
+            writer.write("\r\n");
+            writeAll(userId, startTime, endTime, new RowSink() {
+                @Override
+                public void write(List<?> cells) throws IOException {
+                    writer.write(Csv.formatLine(cells));
+                    writer.write("\r\n");
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    writer.flush();
+                }
+            });
+        }
+        out.flush();
+    }
+
+    private void writeAll(Long userId, LocalDateTime startTime, LocalDateTime endTime, RowSink sink) throws IOException {
+        boolean includeArchive = userId == null
+            ? transactionArchiveService.isArchiveInUse()
+            : transactionArchiveService.getSummary(userId) != null;
+        preloadFundNames(userId, startTime, endTime, includeArchive);
+        if (includeArchive) {
+            try (Cursor<FundTransaction> cursor = transactionArchiveMapper.cursorForExport(userId, startTime, endTime)) {
+                writeRows(cursor, sink);
+            }
+        }
+        try (Cursor<FundTransaction> cursor = fundTransactionMapper.cursorForExport(userId, startTime, endTime)) {
+            writeRows(cursor, sink);
+        }
+    }
+
+    /**
+     * 在任何游标打开之前把导出范围内的基金名称补进字典，游标读取期间只需读内存字典
+     */
+    private void preloadFundNames(Long userId, LocalDateTime startTime, LocalDateTime endTime, boolean includeArchive) {
+        if (userId == null) {
+            fundNameService.reload();
+            return;
+        }
+        Set<String> fundCodes = new HashSet<>(fundTransactionMapper.listExportFundCodes(userId, startTime, endTime));
+        if (includeArchive) {
+            fundCodes.addAll(transactionArchiveMapper.listExportFundCodes(userId, startTime, endTime));
+        }
+        fundNameService.getNames(fundCodes);
+    }
+
+    private void writeRows(Cursor<FundTransaction> cursor, RowSink sink) throws IOException {
+        List<FundTransaction> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        for (FundTransaction transaction : cursor) {
+            chunk.add(transaction);
+            if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                writeChunk(chunk, sink);
+            }
+        }
+        writeChunk(chunk, sink);
+    }
+
+    /**
+     * 写出一个分块并清空
+     */
+    private void writeChunk(List<FundTransaction> chunk, RowSink sink) throws IOException {
+        Map<String, String> fundNames = fundNameService.getCachedNames(
+            chunk.stream().map(FundTransaction::getFundCode).collect(Collectors.toSet()));
+        for (FundTransaction t : chunk) {
+            sink.write(Arrays.asList(
+                t.getId(),
+                t.getUserId(),
+                t.getFundCode(),
+                fundNames.get(t.getFundCode()),
+                t.getTransactionType(),
+                t.getTransactionAmount(),
+                t.getTransactionShares(),
+                t.getSharePrice(),
+                t.getTransactionTime() == null ? null : TIME_FORMATTER.format(t.getTransactionTime()),
+                t.getStatus(),
+                t.getBankAccountNumber()));
+        }
+        sink.flush();
+        chunk.clear();
+    }
+}
@@ -0,0 +1,178 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.whu.nanyin.common.TradeTransactionRunner;
+import com.whu.nanyin.mapper.TransactionIdempotencyMapper;
+import com.whu.nanyin.pojo.entity.TransactionIdempotency;
+import com.whu.nanyin.pojo.vo.FundTransactionVO;
+import com.whu.nanyin.service.TransactionIdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * 交易幂等服务实现类
+ *
+ * 两级查找：
+ * 1. 进程内有界缓存（Guava Cache），命中即重放，重试风暴不会再打到数据库
+ * 2. transaction_idempotency 表，(user_id, idempotency_key) 唯一键保证同一个键只记录一次
+ *
+ * 首次执行时，通过 TradeTransactionRunner 在用户的交易锁分段内、同一个事务中：先查表确认未执行过，
+ * 再执行交易并写入幂等记录，交易与幂等记录同时提交（开启组提交时随所在批次一起提交）。
+ * 交易服务内部再次经过 TradeTransactionRunner 时直接加入当前事务，不会死锁或拆成两个事务。
+ * 多实例部署时同一个键的并发请求由唯一键兜底：插入冲突的一方整笔交易回滚，再读取胜出方的记录重放。
+ *
+ * 幂等记录同时保存请求指纹（请求关键字段的 SHA-256），重放前先比对：同一个键携带不同的请求内容
+ * （例如换了基金或金额）说明是客户端复用了键，直接拒绝，不会把上一笔交易的结果当作本次结果返回。
+ */
+@Slf4j
+@Service
+public class TransactionIdempotencyServiceImpl implements TransactionIdempotencyService {
+
+    /**
+     * 幂等键的最大长度，与表结构一致
+     */
+    private static final int MAX_KEY_LENGTH = 64;
+
+    @Autowired
+    private TransactionIdempotencyMapper transactionIdempotencyMapper;
+
+    @Autowired
+    private TradeTransactionRunner tradeTransactionRunner;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${nanyin.idempotency.cache-max-size:100000}")
+    private long cacheMaxSize;
+
+    @Value("${nanyin.idempotency.cache-ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
+    /**
+     * 幂等记录在数据库中的保留天数，超过后同一个键可以再次使用
+     */
+    @Value("${nanyin.idempotency.retention-days:7}")
+    private int retentionDays;
+
+    private Cache<String, TransactionIdempotency> records;
+
+    @PostConstruct
+    public void initCache() {
+        records = CacheBuilder.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+            .build();
+    }
+
+    @Override
+    public FundTransactionVO execute(Long userId, String idempotencyKey, String operation, String requestSignature,
+                                     Supplier<FundTransactionVO> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 长度不能超过 " + MAX_KEY_LENGTH + " 个字符。");
+        }
+        String cacheKey = userId + ":" + key;
+        String fingerprint = fingerprint(requestSignature);
+
+        // 1. 进程内缓存命中：直接重放
+        TransactionIdempotency cached = records.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, operation, fingerprint);
+        }
+
+        // 2. 在用户锁分段内查表或执行，交易与幂等记录在同一个事务中提交
+        TransactionIdempotency record;
+        try {
+            record = tradeTransactionRunner.execute(userId, () -> {
+                TransactionIdempotency existing = findRecord(userId, key);
+                if (existing != null) {
+                    return existing;
+                }
+                FundTransactionVO vo = action.get();
+                TransactionIdempotency created = new TransactionIdempotency();
+                created.setUserId(userId);
+                created.setIdempotencyKey(key);
+                created.setOperation(operation);
+                created.setRequestFingerprint(fingerprint);
+                created.setTransactionId(vo.getId());
+                created.setResponseBody(toJson(vo));
+                transactionIdempotencyMapper.insert(created);
+                return created;
+            });
+        } catch (DuplicateKeyException e) {
+            // 其他实例已用同一个键提交了交易，本次交易已回滚，改为重放对方的结果
+            log.info("[Idempotency] Concurrent request lost the race, userId={}, key={}", userId, key);
+            record = findRecord(userId, key);
+            if (record == null) {
+                throw e;
+            }
+        }
+        records.put(cacheKey, record);
+        return replay(record, operation, fingerprint);
+    }
+
+    /**
+     * 每日清理超过保留期的幂等记录，保持表的规模有界
+     */
+    @Scheduled(cron = "${nanyin.idempotency.cleanup-cron:0 30 4 * * ?}")
+    public void purgeExpired() {
+        try {
+            int deleted = transactionIdempotencyMapper.delete(new QueryWrapper<TransactionIdempotency>()
+                .lt("create_time", LocalDateTime.now().minusDays(retentionDays)));
+            log.info("[Idempotency] Purged {} records older than {} days", deleted, retentionDays);
+        } catch (Exception e) {
+            log.warn("[Idempotency] Purge failed: {}", e.getMessage());
+        }
+    }
+
+    private TransactionIdempotency findRecord(Long userId, String key) {
+        return transactionIdempotencyMapper.selectOne(new QueryWrapper<TransactionIdempotency>()
+            .eq("user_id", userId)
+            .eq("idempotency_key", key));
+    }
+
+    private FundTransactionVO replay(TransactionIdempotency record, String operation, String fingerprint) {
+        if (!record.getOperation().equals(operation)) {
+            throw new IllegalArgumentException("该 Idempotency-Key 已用于" + record.getOperation() + "交易，不能用于" + operation + "。");
+        }
+        // 补列之前写入的旧记录没有指纹，只按交易类型校验
+        if (record.getRequestFingerprint() != null && !record.getRequestFingerprint().equals(fingerprint)) {
+            throw new IllegalArgumentException("该 Idempotency-Key 已用于另一笔请求内容不同的交易，请为新交易使用新的幂等键。");
+        }
+        try {
+            return objectMapper.readValue(record.getResponseBody(), FundTransactionVO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("幂等记录解析失败：" + e.getOriginalMessage(), e);
+        }
+    }
+
+    private String fingerprint(String requestSignature) {
+        return Hashing.sha256().hashString(String.valueOf(requestSignature), StandardCharsets.UTF_8).toString();
+    }
+
+    private String toJson(FundTransactionVO vo) {
+        try {
+            return objectMapper.writeValueAsString(vo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("交易结果序列化失败：" + e.getOriginalMessage(), e);
+        }
+    }
+}
@@ -3,20 +3,23 @@ package com.whu.nanyin.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.whu.nanyin.exception.InsufficientFundsException;
 import com.whu.nanyin.mapper.UserHoldingMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
 import com.whu.nanyin.pojo.entity.FundTransaction;
 import com.whu.nanyin.pojo.entity.UserHolding;
-import com.whu.nanyin.pojo.vo.FundDetailVO;
-import com.whu.nanyin.service.FundInfoService;
+import com.whu.nanyin.pojo.vo.FundQuoteVO;
+import com.whu.nanyin.service.FundQuoteService;
+import com.whu.nanyin.service.LatestNavService;
 import com.whu.nanyin.service.UserHoldingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 // 继承自MyBatis-Plus的ServiceImpl，简化了与Mapper层的交互。
 @Service
@@ -24,7 +27,10 @@ public class UserHoldingServiceImpl extends ServiceImpl<UserHoldingMapper, UserH
 
 
     @Autowired
-    private FundInfoService fundInfoService;
+    private FundQuoteService fundQuoteService;
+
+    @Autowired
+    private LatestNavService latestNavService;
 
     /**
      * @description 根据用户ID查询其所有持仓记录。
@@ -36,7 +42,7 @@ public class UserHoldingServiceImpl extends ServiceImpl<UserHoldingMapper, UserH
         // baseMapper是来自MP的ServiceImpl父类提供的mapper 在继承ServiceImpl父类的时候传入了参数
         // <UserHoldingMapper, UserHolding> 表明是对UserHolding对象进行处理 并已自动注入UserHoldingMapper实例继承baseMapper
         // 因此这里直接使用baseMapper进行调用即可，也因此后面的方法是自己注入的UserHoldingMapper里写好的方法
-        return baseMapper.listByUserId(userId);
+        return fillLatestNetValue(baseMapper.listByUserId(userId));
     }
 
     /**
@@ -49,7 +55,7 @@ public class UserHoldingServiceImpl extends ServiceImpl<UserHoldingMapper, UserH
     @Override
     public List<UserHolding> listByUserIdAndFundInfo(Long userId, String fundCode, String fundName) {
         // 同上
-        return baseMapper.listByUserIdAndFundInfo(userId, fundCode, fundName);
+        return fillLatestNetValue(baseMapper.listByUserIdAndFundInfo(userId, fundCode, fundName));
     }
     
     /**
@@ -66,80 +72,84 @@ public class UserHoldingServiceImpl extends ServiceImpl<UserHoldingMapper, UserH
         // 创建分页对象
         Page<UserHolding> page = new Page<>(pageNum, pageSize);
         // 调用Mapper层的分页查询方法
-        return baseMapper.getHoldingsByPage(page, userId, fundCode, fundName);
+        Page<UserHolding> result = baseMapper.getHoldingsByPage(page, userId, fundCode, fundName);
+        fillLatestNetValue(result.getRecords());
+        return result;
+    }
+
+    /**
+     * @description 为持仓记录填充最新净值。
+     * 持仓查询只读取 user_holdings 表，最新净值统一从 LatestNavService 的内存缓存中按基金代码获取。
+     * @param holdings 持仓记录列表。
+     * @return 填充后的同一个列表。
+     */
+    private List<UserHolding> fillLatestNetValue(List<UserHolding> holdings) {
+        if (holdings == null || holdings.isEmpty()) {
+            return holdings;
+        }
+        List<String> fundCodes = holdings.stream().map(UserHolding::getFundCode).distinct().collect(Collectors.toList());
+        Map<String, FundNetValue> latest = latestNavService.getLatest(fundCodes);
+        for (UserHolding holding : holdings) {
+            FundNetValue netValue = latest.get(holding.getFundCode());
+            holding.setLatestNetValue(netValue == null ? null : netValue.getUnitNetValue());
+        }
+        return holdings;
+    }
+
+    /**
+     * @description 在发生新的交易后同步更新持仓，基金报价由本方法自行解析。
+     * 交易链路中应优先使用带报价参数的重载，避免重复解析。
+     * @param transaction 新发生的交易记录实体。
+     */
+    @Override
+    @Transactional
+    public void updateHoldingAfterNewTransaction(FundTransaction transaction) {
+        updateHoldingAfterNewTransaction(transaction, fundQuoteService.getQuote(transaction.getFundCode()));
     }
 
     /**
      * @description 核心业务方法：在发生新的交易后，同步更新持仓的份额、成本、基金名称及市值。
+     * 持仓的读-改-写全部交给数据库在单条语句内完成，不再先查询持仓再在Java中计算：
+     * - 申购：依赖 (user_id, fund_code) 唯一键做 upsert，累加份额并按加权平均重算成本
+     * - 赎回：带份额条件的扣减，份额不足时不更新任何行并抛出异常；份额归零的持仓随后删除
      * 使用@Transactional注解，确保整个方法在一个数据库事务中执行。
      * @param transaction 新发生的交易记录实体。
+     * @param quote       本次交易使用的基金报价。
+     * @throws InsufficientFundsException 赎回时持有份额不足
      */
     @Override
     @Transactional
-    public void updateHoldingAfterNewTransaction(FundTransaction transaction) {
-        // 1. 根据用户ID和基金代码，查找已存在的持仓记录
-        QueryWrapper<UserHolding> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id", transaction.getUserId())
-                .eq("fund_code", transaction.getFundCode());
-        UserHolding holding = this.getOne(queryWrapper);
-    
-        // 2. 获取基金的详细信息，为后续计算做准备
-        FundDetailVO fundDetail = fundInfoService.getFundDetail(transaction.getFundCode());
-        // 使用Assert进行断言，确保基金信息和业绩信息存在，否则抛出异常中断事务
-        Assert.notNull(fundDetail, "交易失败：找不到基金 " + transaction.getFundCode() + " 的详细信息。");
-        Assert.notNull(fundDetail.getPerformance(), "交易失败：基金 " + transaction.getFundCode() + " 暂无业绩信息。");
-    
-        BigDecimal latestNetValue = fundDetail.getPerformance().getUnitNetValue();
+    public void updateHoldingAfterNewTransaction(FundTransaction transaction, FundQuoteVO quote) {
+        // 1. 校验基金报价，为后续计算做准备
+        // 使用Assert进行断言，确保基金信息和净值存在，否则抛出异常中断事务
+        Assert.notNull(quote, "交易失败：找不到基金 " + transaction.getFundCode() + " 的详细信息。");
+
+        BigDecimal latestNetValue = quote.getUnitNetValue();
         Assert.notNull(latestNetValue, "交易失败：基金 " + transaction.getFundCode() + " 最新净值未知。");
-    
-        // 3. 如果不存在持仓记录，则创建一个新的持仓对象
-        if (holding == null) {
-            holding = new UserHolding();
-            holding.setUserId(transaction.getUserId());
-            holding.setFundCode(transaction.getFundCode());
-            holding.setTotalShares(BigDecimal.ZERO);
-            holding.setAverageCost(BigDecimal.ZERO);
-            // 从基金详情中获取并设置基金名称
-            holding.setFundName(fundDetail.getBasicInfo().getFundName());
-        }
-    
-        // 4. 根据交易类型，更新份额和成本价
-        BigDecimal newTotalShares;
+
+        Long userId = transaction.getUserId();
+        String fundCode = transaction.getFundCode();
+        BigDecimal shares = transaction.getTransactionShares();
+
+        // 2. 申购：新建持仓或累加份额、重算平均成本，一条语句完成
         if ("申购".equals(transaction.getTransactionType())) {
-            // 申购：增加总份额
-            newTotalShares = holding.getTotalShares().add(transaction.getTransactionShares());
-            if (newTotalShares.compareTo(BigDecimal.ZERO) > 0) {
-                // 使用加权平均法重新计算平均成本
-                BigDecimal newTotalCost = (holding.getAverageCost().multiply(holding.getTotalShares()))
-                        .add(transaction.getTransactionAmount());
-                holding.setAverageCost(newTotalCost.divide(newTotalShares, 4, RoundingMode.HALF_UP));
-            } else {
-                 holding.setAverageCost(BigDecimal.ZERO);
-            }
-        } else { // 赎回
-            // 赎回：减少总份额 (平均成本不变)
-            newTotalShares = holding.getTotalShares().subtract(transaction.getTransactionShares());
+            Assert.isTrue(shares != null && shares.signum() > 0, "交易失败：申购份额必须大于0。");
+            baseMapper.upsertAfterPurchase(userId, fundCode, quote.getFundName(),
+                    shares, transaction.getTransactionAmount(), latestNetValue);
+            return;
         }
-        holding.setTotalShares(newTotalShares);
-    
-        // 5. 检查赎回后份额是否为0，如果为0则删除持仓记录
-        if ("赎回".equals(transaction.getTransactionType()) && 
-            newTotalShares.compareTo(BigDecimal.ZERO) <= 0) {
-            // 份额为0或负数时，删除持仓记录
-            if (holding.getId() != null) {
-                this.removeById(holding.getId());
-            }
-            return; // 删除后直接返回，不需要更新记录
+
+        // 3. 赎回：仅当份额足够时扣减，受影响行数为0即份额不足（平均成本不变）
+        if (baseMapper.decrementShares(userId, fundCode, shares, latestNetValue) == 0) {
+            // 仅在失败路径上读取当前份额，用于提示信息
+            UserHolding holding = this.getOne(new QueryWrapper<UserHolding>()
+                    .eq("user_id", userId).eq("fund_code", fundCode));
+            String availableShares = holding != null ? holding.getTotalShares().toPlainString() : "0";
+            throw new InsufficientFundsException("赎回失败：份额不足。当前持有 " + availableShares + " 份，尝试赎回 " + shares.toPlainString() + " 份。");
         }
-    
-        // 6.  最新市值 = 最新的总份额 * 最新的基金净值
-        BigDecimal newMarketValue = newTotalShares.multiply(latestNetValue).setScale(2, RoundingMode.HALF_UP);
-        holding.setMarketValue(newMarketValue);
-        holding.setLatestNetValue(latestNetValue);
-    
-        // 7. 更新时间戳并保存或更新持仓记录到数据库
-        holding.setLastUpdateDate(LocalDateTime.now());
-        this.saveOrUpdate(holding);
+
+        // 4. 份额为0时删除持仓记录
+        baseMapper.deleteEmptyHolding(userId, fundCode);
     }
 
 }
\ No newline at end of file
@@ -6,8 +6,10 @@ import com.whu.nanyin.mapper.UserProfileMapper;
 import com.whu.nanyin.pojo.dto.UserProfileUpdateDTO;
 import com.whu.nanyin.pojo.entity.UserProfile;
 import com.whu.nanyin.pojo.vo.ProfitLossVO;
+import com.whu.nanyin.service.TransactionArchiveService;
 import com.whu.nanyin.service.UserProfileService;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +20,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class UserProfileServiceImpl extends ServiceImpl<UserProfileMapper, UserProfile> implements UserProfileService {
 
+    @Autowired
+    private TransactionArchiveService transactionArchiveService;
+
     /**
      * 根据用户ID获取其个人资料实体。
      * @param userId 用户的唯一ID。
@@ -62,6 +67,6 @@ public class UserProfileServiceImpl extends ServiceImpl<UserProfileMapper, UserP
     @Override
     public ProfitLossVO getProfitLossVOByUserId(Long userId) {
         // 调用Mapper层中自定义的SQL查询方法来获取盈亏数据
-        return getBaseMapper().getProfitLossVOByUserId(userId);
+        return getBaseMapper().getProfitLossVOByUserId(userId, transactionArchiveService.isArchiveInUse());
     }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- 净值与业绩排名表的业务唯一键：同一只基金同一天只有一行
+-- 数据导入（FundDataIngestionService）依赖该唯一键，用 INSERT ... ON DUPLICATE KEY UPDATE 实现幂等的重复导入与数据修正。
+-- 该唯一键同时覆盖按基金代码 + 日期区间的净值走势查询。
+
+ALTER TABLE fund_net_value ADD UNIQUE KEY uk_fund_net_value_code_date (fund_code, end_date);
+
+ALTER TABLE fund_net_value_perf_rank ADD UNIQUE KEY uk_fund_perf_rank_code_date (fund_code, end_date);
@@ -0,0 +1,18 @@
+-- 最新业绩快照表：每只基金仅保留 end_date 最大的一行业绩与排名数据
+-- 只在 nanyin.perf-snapshot.persist=true 时需要执行本脚本。"最新业绩"类查询由 FundLatestPerfService 的内存快照提供，
+-- 不关联此表；此表只是内存快照的可选持久化副本，新业绩行到达时同步写入，
+-- 应用启动时由 selectLatestSnapshot 读回，用来预热内存快照，免去对历史表做一次全量 MAX(end_date) 聚合。
+
+CREATE TABLE IF NOT EXISTS fund_latest_perf_rank LIKE fund_net_value_perf_rank;
+
+ALTER TABLE fund_latest_perf_rank ADD UNIQUE KEY uk_fund_latest_perf_rank_fund_code (fund_code);
+
+-- 首次上线时用历史表初始化快照（应用启动时若发现快照表为空也会自动完成这一步）
+INSERT INTO fund_latest_perf_rank
+SELECT p1.*
+FROM fund_net_value_perf_rank p1
+INNER JOIN (
+    SELECT fund_code, MAX(end_date) AS max_date
+    FROM fund_net_value_perf_rank
+    GROUP BY fund_code
+) p2 ON p1.fund_code = p2.fund_code AND p1.end_date = p2.max_date;
@@ -0,0 +1,23 @@
+-- 定投计划表：每行是一个用户对一只基金的定期申购计划
+-- 由 InvestmentPlanService 维护；定时任务按 next_run_date 取出到期计划批量执行，执行后在同一事务内推进 next_run_date，
+-- 同一计划在同一执行日只会成功推进一次。
+
+CREATE TABLE IF NOT EXISTS investment_plans (
+    id                   BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id              BIGINT         NOT NULL,
+    fund_code            VARCHAR(16)    NOT NULL,
+    amount               DECIMAL(18, 2) NOT NULL COMMENT '每期申购金额',
+    frequency            VARCHAR(8)     NOT NULL COMMENT '每日 / 每周 / 每月',
+    schedule_day         INT            NULL COMMENT '每周：1-7（周一为1）；每月：1-28',
+    bank_account_number  VARCHAR(32)    NOT NULL,
+    status               VARCHAR(8)     NOT NULL COMMENT '生效 / 暂停',
+    next_run_date        DATE           NOT NULL,
+    last_run_date        DATE           NULL,
+    last_status          VARCHAR(8)     NULL COMMENT '最近一次执行结果：成功 / 失败',
+    last_message         VARCHAR(255)   NULL,
+    last_transaction_id  BIGINT         NULL,
+    create_time          DATETIME       NOT NULL,
+    update_time          DATETIME       NOT NULL,
+    KEY idx_investment_plans_user (user_id),
+    KEY idx_investment_plans_due (status, next_run_date)
+);
@@ -0,0 +1,11 @@
+-- 待确认订单的按净值批量确认（FundSettlementService，nanyin.settlement.enabled=true 时启用）
+-- 申购/赎回先以“待确认”状态入库，成交净值、份额（申购）与金额（赎回）在当日净值公布后回填，
+-- 这些列需要允许为 NULL；下面的列类型请按现有表结构的精度调整。
+
+ALTER TABLE user_transactions
+    MODIFY transaction_amount DECIMAL(18, 2) NULL,
+    MODIFY transaction_shares DECIMAL(18, 4) NULL,
+    MODIFY share_price DECIMAL(18, 4) NULL;
+
+-- 按状态找出有待确认订单的基金、再按基金取出待确认订单
+ALTER TABLE user_transactions ADD INDEX idx_user_transactions_status_fund (status, fund_code);
@@ -0,0 +1,21 @@
+-- 交易幂等键表：记录每个 (用户, Idempotency-Key) 第一次成功执行的交易结果
+-- 由 TransactionIdempotencyService 在交易的同一个数据库事务内写入，交易与幂等记录同时提交或同时回滚；
+-- 客户端超时重试携带同一个键时，直接重放这里保存的交易结果，不会重复扣款或重复生成交易流水。
+-- 唯一键兜底多实例部署下同一个键的并发请求：后提交的一方插入冲突，整笔交易回滚后改为重放。
+-- request_fingerprint 保存首次请求关键字段（基金代码、金额/份额）的 SHA-256，同一个键携带不同内容的请求直接拒绝。
+
+CREATE TABLE IF NOT EXISTS transaction_idempotency (
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id          BIGINT       NOT NULL,
+    idempotency_key  VARCHAR(64)  NOT NULL,
+    operation        VARCHAR(16)  NOT NULL COMMENT '申购 / 赎回',
+    transaction_id   BIGINT       NULL,
+    response_body    TEXT         NOT NULL COMMENT '首次执行返回的 FundTransactionVO（JSON）',
+    create_time      DATETIME     NOT NULL,
+    UNIQUE KEY uk_transaction_idempotency_user_key (user_id, idempotency_key),
+    KEY idx_transaction_idempotency_create_time (create_time)
+);
+
+-- 已按旧版本建表的环境补充请求指纹列（新建表同样需要执行）；旧记录该列为空，只按交易类型校验
+ALTER TABLE transaction_idempotency
+    ADD COLUMN request_fingerprint CHAR(64) NULL COMMENT '首次请求关键字段的 SHA-256' AFTER operation;
@@ -0,0 +1,7 @@
+-- 用户持仓表的业务唯一键：同一用户对同一只基金只有一行持仓
+-- 持仓维护（UserHoldingService）依赖该唯一键，申购用 INSERT ... ON DUPLICATE KEY UPDATE 在一条语句内累加份额、重算平均成本，
+-- 并发的首次申购不会再各自插入一行。
+-- 添加前若已存在重复持仓，需先合并，可用下面的查询找出重复行：
+-- SELECT user_id, fund_code, COUNT(*) FROM user_holdings GROUP BY user_id, fund_code HAVING COUNT(*) > 1;
+
+ALTER TABLE user_holdings ADD UNIQUE KEY uk_user_holdings_user_fund (user_id, fund_code);
@@ -0,0 +1,19 @@
+-- 交易记录冷热分离（TransactionArchiveService，nanyin.transaction-archive.enabled=true 时启用归档任务）
+-- user_transactions 只保留最近 hot-days 天的热数据与全部待确认订单，更早的已完成交易按批搬入归档表；
+-- 归档表与热表结构、索引完全一致，保留原交易ID，单条交易、交易历史与导出仍能读到归档数据。
+-- 先执行 user_transactions_history_index.sql，再执行本脚本；汇总表中有数据后读请求自动读取归档表，与任务开关无关。
+
+CREATE TABLE IF NOT EXISTS user_transactions_archive LIKE user_transactions;
+
+-- 归档任务按交易时间挑选待搬迁的行
+ALTER TABLE user_transactions ADD INDEX idx_user_transactions_time (transaction_time);
+
+-- 每个用户已归档数据的汇总：盈亏统计的累计投入 = 热表 SUM + archived_investment，不再扫描归档数据；
+-- archived_through 是该用户已归档交易的最晚交易时间，读请求据此判断是否需要查询归档表。
+-- 与搬迁在同一个事务中更新。
+CREATE TABLE IF NOT EXISTS user_transaction_archive_summary (
+    user_id              BIGINT         NOT NULL PRIMARY KEY,
+    archived_count       BIGINT         NOT NULL,
+    archived_investment  DECIMAL(20, 2) NOT NULL COMMENT '已归档交易的 申购金额 - 赎回金额',
+    archived_through     DATETIME       NOT NULL COMMENT '已归档交易的最晚交易时间'
+);
@@ -0,0 +1,5 @@
+-- 交易记录的游标分页（FundTransactionService.listByUserIdCursorPage）
+-- 按 user_id 等值定位后，在 (transaction_time, id) 上倒序范围扫描，LIMIT 取够一页即停止，不再回表排序。
+-- 基金代码、交易类型筛选在索引扫描过程中过滤，单个用户的交易量级下无需额外索引。
+
+ALTER TABLE user_transactions ADD INDEX idx_user_transactions_user_time (user_id, transaction_time, id);
@@ -0,0 +1,50 @@
+package com.whu.nanyin.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownsamplingTest {
+
+    @Test
+    void returnsAllIndicesWhenNothingToDrop() {
+        assertThat(Downsampling.lttb(5, i -> i, i -> i, 5)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(Downsampling.lttb(5, i -> i, i -> i, 10)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(Downsampling.lttb(5, i -> i, i -> i, 2)).containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void keepsEndpointsAndReturnsAscendingIndices() {
+        int size = 1000;
+        int[] sampled = Downsampling.lttb(size, i -> i, i -> Math.sin(i / 20.0), 50);
+
+        assertThat(sampled).hasSize(50);
+        assertThat(sampled[0]).isZero();
+        assertThat(sampled[sampled.length - 1]).isEqualTo(size - 1);
+        for (int i = 1; i < sampled.length; i++) {
+            assertThat(sampled[i]).isGreaterThan(sampled[i - 1]);
+        }
+    }
+
+    @Test
+    void keepsPeaksAndTroughs() {
+        // 平稳序列中的一个尖峰和一个深谷，等间隔抽样很容易漏掉，LTTB 应当保留
+        int size = 1000;
+        double[] y = new double[size];
+        y[321] = 10;
+        y[777] = -8;
+
+        int[] sampled = Downsampling.lttb(size, i -> i, i -> y[i], 20);
+
+        assertThat(sampled).contains(321, 777);
+    }
+
+    @Test
+    void usesTheGivenXCoordinates() {
+        // 横坐标不等距时按实际坐标计算面积：孤立的远点应当被保留
+        int size = 100;
+        int[] sampled = Downsampling.lttb(size, i -> i < 50 ? i : i * 10.0, i -> i == 60 ? 5 : 0, 10);
+
+        assertThat(sampled).contains(60);
+    }
+}
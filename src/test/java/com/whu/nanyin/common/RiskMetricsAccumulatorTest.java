@@ -0,0 +1,117 @@
+package com.whu.nanyin.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RiskMetricsAccumulatorTest {
+
+    private static final double EPS = 1e-12;
+
+    @Test
+    void matchesTwoPassStatistics() {
+        double[] navs = {1.00, 1.02, 0.99, 1.05, 1.01, 0.97, 1.04, 1.10};
+        double annualRiskFree = 0.015;
+        RiskMetricsAccumulator acc = new RiskMetricsAccumulator(annualRiskFree);
+        for (int i = 0; i < navs.length; i++) {
+            acc.add(100 + i, navs[i]);
+        }
+
+        double[] returns = new double[navs.length - 1];
+        for (int i = 1; i < navs.length; i++) {
+            returns[i - 1] = navs[i] / navs[i - 1] - 1;
+        }
+        double mean = 0;
+        for (double r : returns) {
+            mean += r;
+        }
+        mean /= returns.length;
+        double variance = 0;
+        double downside = 0;
+        double dailyRiskFree = annualRiskFree / RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR;
+        for (double r : returns) {
+            variance += (r - mean) * (r - mean);
+            if (r < dailyRiskFree) {
+                downside += (r - dailyRiskFree) * (r - dailyRiskFree);
+            }
+        }
+        variance /= returns.length - 1;
+        double volatility = Math.sqrt(variance * RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR);
+        double downsideDeviation = Math.sqrt(downside / returns.length * RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR);
+
+        assertThat(acc.count()).isEqualTo(returns.length);
+        assertThat(acc.annualizedVolatility()).isCloseTo(volatility, within(EPS));
+        assertThat(acc.downsideDeviation()).isCloseTo(downsideDeviation, within(EPS));
+        assertThat(acc.sharpeRatio()).isCloseTo(
+            (mean - dailyRiskFree) * RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR / volatility, within(EPS));
+        assertThat(acc.sortinoRatio()).isCloseTo(
+            (mean - dailyRiskFree) * RiskMetricsAccumulator.TRADING_DAYS_PER_YEAR / downsideDeviation, within(EPS));
+        assertThat(acc.firstDay()).isEqualTo(100);
+        assertThat(acc.lastDay()).isEqualTo(107);
+    }
+
+    @Test
+    void tracksMaxDrawdownAndItsDates() {
+        RiskMetricsAccumulator acc = new RiskMetricsAccumulator(0);
+        acc.add(1, 1.0);
+        acc.add(2, 1.2);
+        acc.add(3, 0.9);
+        acc.add(4, 1.3);
+        acc.add(5, 1.1);
+
+        assertThat(acc.maxDrawdown()).isCloseTo(0.9 / 1.2 - 1, within(EPS));
+        assertThat(acc.maxDrawdownPeakDay()).isEqualTo(2);
+        assertThat(acc.maxDrawdownTroughDay()).isEqualTo(3);
+    }
+
+    @Test
+    void noDrawdownForRisingSeries() {
+        RiskMetricsAccumulator acc = new RiskMetricsAccumulator(0);
+        acc.add(1, 1.0);
+        acc.add(2, 1.1);
+
+        assertThat(acc.maxDrawdown()).isZero();
+        assertThat(acc.maxDrawdownPeakDay()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(acc.annualizedVolatility()).isNaN();
+        assertThat(acc.sharpeRatio()).isNaN();
+    }
+
+    @Test
+    void ignoresStaleAndInvalidPoints() {
+        RiskMetricsAccumulator acc = new RiskMetricsAccumulator(0);
+        acc.add(10, 1.0);
+        acc.add(10, 5.0);
+        acc.add(9, 5.0);
+        acc.add(11, Double.NaN);
+        acc.add(12, 0);
+        acc.add(13, 1.1);
+
+        assertThat(acc.count()).isEqualTo(1);
+        assertThat(acc.processedDay()).isEqualTo(13);
+        assertThat(acc.lastDay()).isEqualTo(13);
+        // 无效点之后的收益率以上一个有效净值为基准
+        assertThat(acc.downsideDeviation()).isZero();
+    }
+
+    @Test
+    void copyContinuesIndependently() {
+        RiskMetricsAccumulator published = new RiskMetricsAccumulator(0);
+        published.add(1, 1.0);
+        published.add(2, 1.1);
+
+        RiskMetricsAccumulator next = published.copy();
+        next.add(3, 0.99);
+
+        RiskMetricsAccumulator fromScratch = new RiskMetricsAccumulator(0);
+        fromScratch.add(1, 1.0);
+        fromScratch.add(2, 1.1);
+        fromScratch.add(3, 0.99);
+
+        assertThat(published.count()).isEqualTo(1);
+        assertThat(published.maxDrawdown()).isZero();
+        assertThat(next.count()).isEqualTo(fromScratch.count());
+        assertThat(next.annualizedVolatility()).isEqualTo(fromScratch.annualizedVolatility());
+        assertThat(next.maxDrawdown()).isEqualTo(fromScratch.maxDrawdown());
+    }
+}
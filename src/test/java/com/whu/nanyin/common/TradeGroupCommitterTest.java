@@ -0,0 +1,216 @@
+package com.whu.nanyin.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.SavepointManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.AbstractTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TradeGroupCommitterTest {
+
+    private RecordingTransactionManager transactionManager;
+
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    private TradeGroupCommitter committer;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new RecordingTransactionManager();
+        sqlSessionTemplate = mock(SqlSessionTemplate.class);
+        committer = new TradeGroupCommitter();
+        ReflectionTestUtils.setField(committer, "enabled", true);
+        ReflectionTestUtils.setField(committer, "flushThreads", 2);
+        ReflectionTestUtils.setField(committer, "maxBatchSize", 3);
+        // 等待时间足够长，三笔并发提交一定落在同一批
+        ReflectionTestUtils.setField(committer, "maxDelayMs", 5000L);
+        ReflectionTestUtils.setField(committer, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(committer, "sqlSessionTemplate", sqlSessionTemplate);
+        committer.start();
+        callers = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        committer.shutdown();
+    }
+
+    @Test
+    void failingTradeRollsBackOnlyToItsOwnSavepoint() throws Exception {
+        CountDownLatch ready = new CountDownLatch(3);
+        Future<String> first = callers.submit(() -> submitAfter(ready, 2L, () -> write("A")));
+        Future<String> failing = callers.submit(() -> submitAfter(ready, 4L, () -> {
+            write("B");
+            throw new IllegalStateException("余额不足");
+        }));
+        Future<String> third = callers.submit(() -> submitAfter(ready, 6L, () -> write("C")));
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("A");
+        assertThat(third.get(10, TimeUnit.SECONDS)).isEqualTo("C");
+        assertThatThrownBy(() -> failing.get(10, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(IllegalStateException.class)
+            .hasRootCauseMessage("余额不足");
+
+        // 整批只有一个事务，失败的那一笔回滚到自己的保存点，其余两笔随事务提交
+        assertThat(transactionManager.transactions.get()).isEqualTo(1);
+        assertThat(transactionManager.rollbacks.get()).isZero();
+        assertThat(transactionManager.committedWrites).containsExactlyInAnyOrder("A", "C");
+        assertThat(transactionManager.savepointRollbacks.get()).isEqualTo(1);
+        verify(sqlSessionTemplate, times(1)).clearCache();
+    }
+
+    @Test
+    void commitFailureFailsEveryCallerInTheBatch() throws Exception {
+        transactionManager.failCommit = true;
+        CountDownLatch ready = new CountDownLatch(3);
+        List<Future<String>> futures = new ArrayList<>();
+        long userId = 0;
+        for (String value : List.of("A", "B", "C")) {
+            long user = userId += 2;
+            futures.add(callers.submit(() -> submitAfter(ready, user, () -> write(value))));
+        }
+
+        for (Future<String> future : futures) {
+            assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                .hasRootCauseMessage("提交失败");
+        }
+        assertThat(transactionManager.committedWrites).isEmpty();
+    }
+
+    @Test
+    void differentShardsCommitInParallel() throws Exception {
+        // 用户 1 与用户 2 落在不同分片：用户 1 的交易等到用户 2 的交易执行后才返回，串行执行会超时
+        ReflectionTestUtils.setField(committer, "maxDelayMs", 0L);
+        CountDownLatch secondRan = new CountDownLatch(1);
+        Future<String> first = callers.submit(() -> committer.submit(1L, () -> {
+            try {
+                return secondRan.await(5, TimeUnit.SECONDS) ? write("A") : "timeout";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        Future<String> second = callers.submit(() -> committer.submit(2L, () -> {
+            secondRan.countDown();
+            return write("B");
+        }));
+
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo("B");
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("A");
+        assertThat(transactionManager.committedWrites).containsExactlyInAnyOrder("A", "B");
+    }
+
+    @Test
+    void submitFailsFastAfterShutdown() {
+        committer.shutdown();
+
+        assertThatThrownBy(() -> committer.submit(1L, () -> write("A")))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("系统正在停止，交易未执行。");
+        assertThat(transactionManager.transactions.get()).isZero();
+    }
+
+    private String submitAfter(CountDownLatch ready, Long userId, Supplier<String> work) throws InterruptedException {
+        ready.countDown();
+        ready.await();
+        return committer.submit(userId, work);
+    }
+
+    private String write(String value) {
+        transactionManager.current.get().writes.add(value);
+        return value;
+    }
+
+    /**
+     * 在内存中模拟事务：写入记在当前事务上，回滚到保存点时丢弃保存点之后的写入，提交时记下全部写入
+     */
+    private static final class RecordingTransactionManager implements PlatformTransactionManager {
+        private final AtomicInteger transactions = new AtomicInteger();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+        private final AtomicInteger savepointRollbacks = new AtomicInteger();
+        private final List<String> committedWrites = new ArrayList<>();
+        private volatile boolean failCommit;
+        private final ThreadLocal<RecordingStatus> current = new ThreadLocal<>();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            transactions.incrementAndGet();
+            RecordingStatus status = new RecordingStatus(this);
+            current.set(status);
+            return status;
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            if (failCommit) {
+                throw new IllegalStateException("提交失败");
+            }
+            synchronized (committedWrites) {
+                committedWrites.addAll(((RecordingStatus) status).writes);
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+
+    private static final class RecordingStatus extends AbstractTransactionStatus implements SavepointManager {
+        private final RecordingTransactionManager manager;
+        private final List<String> writes = new ArrayList<>();
+
+        private RecordingStatus(RecordingTransactionManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public boolean isNewTransaction() {
+            return true;
+        }
+
+        @Override
+        protected SavepointManager getSavepointManager() {
+            return this;
+        }
+
+        @Override
+        public Object createSavepoint() {
+            return writes.size();
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) {
+            manager.savepointRollbacks.incrementAndGet();
+            writes.subList((Integer) savepoint, writes.size()).clear();
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) {
+        }
+    }
+}
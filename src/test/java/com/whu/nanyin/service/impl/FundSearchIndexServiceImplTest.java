@@ -0,0 +1,119 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.whu.nanyin.pojo.entity.FundBasicInfo;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+import com.whu.nanyin.service.FundInfoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FundSearchIndexServiceImplTest {
+
+    private FundSearchIndexServiceImpl index;
+
+    @BeforeEach
+    void setUp() {
+        FundInfoService fundInfoService = mock(FundInfoService.class);
+        when(fundInfoService.listAllBasicInfos()).thenReturn(List.of(
+            fund("000003", "华夏成长混合", "华夏成长", "混合型"),
+            fund("000001", "华夏债券A", "华夏债A", "债券型"),
+            fund("000002", "易方达蓝筹精选混合", "易方达蓝筹", "混合型"),
+            fund("110011", "ABC Global Fund", "ABC", "股票型"),
+            fund("000004", "长城久恒", "长城", "混合型")));
+        index = new FundSearchIndexServiceImpl();
+        ReflectionTestUtils.setField(index, "fundInfoService", fundInfoService);
+        index.rebuild();
+    }
+
+    @Test
+    void matchesSubstringsOfNameAbbreviationAndCode() {
+        assertThat(codes(search("华夏", null))).containsExactly("000001", "000003");
+        assertThat(codes(search("蓝筹", null))).containsExactly("000002");
+        assertThat(codes(search("债A", null))).containsExactly("000001");
+        assertThat(codes(search("1100", null))).containsExactly("110011");
+    }
+
+    @Test
+    void singleCharacterUsesUnigrams() {
+        assertThat(codes(search("混", null))).containsExactly("000002", "000003");
+    }
+
+    @Test
+    void matchingIsCaseInsensitive() {
+        assertThat(codes(search("global", null))).containsExactly("110011");
+        assertThat(codes(search("aBc", null))).containsExactly("110011");
+    }
+
+    @Test
+    void requiresContiguousSubstringNotJustAllBigrams() {
+        // "华夏成长混合" 含有 "华夏" 和 "成长"，但 "华夏长" 不是连续子串
+        assertThat(search("华夏长", null).getRecords()).isEmpty();
+    }
+
+    @Test
+    void doesNotMatchAcrossFieldBoundaries() {
+        // 全称以 "久恒" 结尾、简称以 "长城" 开头，拼接后的 "恒长" 不应命中
+        assertThat(search("恒长", null).getRecords()).isEmpty();
+    }
+
+    @Test
+    void intersectsKeywordWithFundType() {
+        assertThat(codes(search("华夏", "混合型"))).containsExactly("000003");
+        assertThat(codes(search(null, "混合型"))).containsExactly("000002", "000003", "000004");
+        assertThat(search("华夏", "货币型").getRecords()).isEmpty();
+    }
+
+    @Test
+    void pagesInFundCodeOrder() {
+        Page<FundBasicInfo> second = index.search(new Page<>(2, 2), null, null);
+        assertThat(second.getTotal()).isEqualTo(5);
+        assertThat(codes(second)).containsExactly("000003", "000004");
+
+        // 页码小于1时按第一页处理
+        assertThat(codes(index.search(new Page<>(0, 2), null, null))).containsExactly("000001", "000002");
+    }
+
+    @Test
+    void cursorSearchContinuesAfterTheLastCode() {
+        CursorPageVO<FundBasicInfo> first = index.searchAfter(null, 2, null, "混合型");
+        assertThat(first.getRecords()).extracting(FundBasicInfo::getFundCode).containsExactly("000002", "000003");
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(first.getNextCursor()).isEqualTo("000003");
+
+        CursorPageVO<FundBasicInfo> second = index.searchAfter(first.getNextCursor(), 2, null, "混合型");
+        assertThat(second.getRecords()).extracting(FundBasicInfo::getFundCode).containsExactly("000004");
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void returnsCopiesOfIndexedDocuments() {
+        search("华夏", null).getRecords().forEach(info -> info.setFundName("changed"));
+        assertThat(codes(search("华夏", null))).containsExactly("000001", "000003");
+    }
+
+    private Page<FundBasicInfo> search(String keyword, String fundType) {
+        return index.search(new Page<>(1, 100), keyword, fundType);
+    }
+
+    private static List<String> codes(Page<FundBasicInfo> page) {
+        return page.getRecords().stream().map(FundBasicInfo::getFundCode).collect(Collectors.toList());
+    }
+
+    private static FundBasicInfo fund(String code, String name, String abbreviation, String type) {
+        FundBasicInfo info = new FundBasicInfo();
+        info.setFundCode(code);
+        info.setFundName(name);
+        info.setAbbreviation(abbreviation);
+        info.setFundInvestType(type);
+        return info;
+    }
+}
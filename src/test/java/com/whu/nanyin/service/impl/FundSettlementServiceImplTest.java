@@ -0,0 +1,225 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.whu.nanyin.mapper.FundNetValueMapper;
+import com.whu.nanyin.mapper.FundTransactionMapper;
+import com.whu.nanyin.mapper.UserHoldingMapper;
+import com.whu.nanyin.mapper.UserMapper;
+import com.whu.nanyin.pojo.entity.FundNetValue;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.vo.SettlementResultVO;
+import com.whu.nanyin.service.FundQuoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FundSettlementServiceImplTest {
+
+    private static final String FUND = "000001";
+
+    private FundTransactionMapper fundTransactionMapper;
+
+    private FundNetValueMapper fundNetValueMapper;
+
+    private UserHoldingMapper userHoldingMapper;
+
+    private UserMapper userMapper;
+
+    private FundSettlementServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        fundTransactionMapper = mock(FundTransactionMapper.class);
+        fundNetValueMapper = mock(FundNetValueMapper.class);
+        userHoldingMapper = mock(UserHoldingMapper.class);
+        userMapper = mock(UserMapper.class);
+        when(fundTransactionMapper.settleOrders(anyList())).thenAnswer(inv -> inv.<List<?>>getArgument(0).size());
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        service = new FundSettlementServiceImpl();
+        ReflectionTestUtils.setField(service, "fundTransactionMapper", fundTransactionMapper);
+        ReflectionTestUtils.setField(service, "fundNetValueMapper", fundNetValueMapper);
+        ReflectionTestUtils.setField(service, "userHoldingMapper", userHoldingMapper);
+        ReflectionTestUtils.setField(service, "userMapper", userMapper);
+        ReflectionTestUtils.setField(service, "fundQuoteService", mock(FundQuoteService.class));
+        ReflectionTestUtils.setField(service, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(service, "cutoffText", "15:00");
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "chunkSize", 2000);
+        service.initSettlers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void pricesEachOrderAtTheNavOfItsTradeDate() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            // 截止时间之前下单：当天成交
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 14, 59, 59)),
+            // 恰好在截止时间下单：按下一天成交
+            order(2L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 15, 0)),
+            // 周五收盘后下单：交易日是周六，按之后最近一个净值日（周一）成交
+            order(3L, 20L, "赎回", null, "100.5", LocalDateTime.of(2026, 10, 16, 16, 0))));
+        navs(nav(2026, 10, 12, "1.2345"), nav(2026, 10, 13, "1.3000"), nav(2026, 10, 19, "1.1111"));
+
+        SettlementResultVO result = service.settle(List.of(FUND));
+
+        assertThat(result.getSettledOrders()).isEqualTo(3);
+        assertThat(result.getWaitingOrders()).isZero();
+        assertThat(result.getFailedFunds()).isZero();
+
+        Map<Long, FundTransaction> settled = captureSettledOrders();
+        assertThat(settled.get(1L).getSharePrice()).isEqualByComparingTo("1.2345");
+        assertThat(settled.get(1L).getTransactionShares()).isEqualByComparingTo("810.0446");
+        assertThat(settled.get(2L).getSharePrice()).isEqualByComparingTo("1.3000");
+        assertThat(settled.get(2L).getTransactionShares()).isEqualByComparingTo("769.2308");
+        assertThat(settled.get(3L).getSharePrice()).isEqualByComparingTo("1.1111");
+        assertThat(settled.get(3L).getTransactionAmount()).isEqualByComparingTo("111.67");
+    }
+
+    @Test
+    void mergesHoldingsAndCreditsPerUser() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 0)),
+            order(2L, 10L, "申购", "500", null, LocalDateTime.of(2026, 10, 12, 11, 0)),
+            order(3L, 20L, "赎回", null, "100", LocalDateTime.of(2026, 10, 12, 12, 0))));
+        navs(nav(2026, 10, 12, "1.2500"), nav(2026, 10, 13, "1.3000"));
+
+        service.settle(List.of(FUND));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<FundTransaction>> purchases = ArgumentCaptor.forClass(List.class);
+        // 持仓市值按最新净值计算
+        verify(userHoldingMapper).upsertAfterPurchases(eq(FUND), any(), eq(new BigDecimal("1.3000")), purchases.capture());
+        assertThat(purchases.getValue()).singleElement().satisfies(p -> {
+            assertThat(p.getUserId()).isEqualTo(10L);
+            assertThat(p.getTransactionAmount()).isEqualByComparingTo("1500");
+            assertThat(p.getTransactionShares()).isEqualByComparingTo("1200");
+        });
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<FundTransaction>> credits = ArgumentCaptor.forClass(List.class);
+        verify(userMapper).creditBalances(credits.capture());
+        assertThat(credits.getValue()).singleElement().satisfies(c -> {
+            assertThat(c.getUserId()).isEqualTo(20L);
+            assertThat(c.getTransactionAmount()).isEqualByComparingTo("125.00");
+        });
+    }
+
+    @Test
+    void leavesOrdersWaitingUntilTheirNavIsPublished() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 0)),
+            order(2L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 15, 30))));
+        navs(nav(2026, 10, 12, "1.0000"));
+
+        SettlementResultVO result = service.settle(List.of(FUND));
+
+        assertThat(result.getSettledOrders()).isEqualTo(1);
+        assertThat(result.getWaitingOrders()).isEqualTo(1);
+        assertThat(captureSettledOrders()).containsOnlyKeys(1L);
+    }
+
+    @Test
+    void writesNothingWhenNoNavIsAvailable() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 0))));
+        navs();
+
+        SettlementResultVO result = service.settle(List.of(FUND));
+
+        assertThat(result.getSettledOrders()).isZero();
+        assertThat(result.getWaitingOrders()).isEqualTo(1);
+        verify(fundTransactionMapper, never()).settleOrders(anyList());
+    }
+
+    @Test
+    void rollsBackChunkWhenAnotherInstanceSettledFirst() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 0)),
+            order(2L, 11L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 5))));
+        navs(nav(2026, 10, 12, "1.0000"));
+        when(fundTransactionMapper.settleOrders(anyList())).thenReturn(1);
+
+        SettlementResultVO result = service.settle(List.of(FUND));
+
+        assertThat(result.getSettledOrders()).isZero();
+        assertThat(result.getWaitingOrders()).isEqualTo(2);
+        assertThat(result.getFailedFunds()).isEqualTo(1);
+        verify(userHoldingMapper, never()).upsertAfterPurchases(any(), any(), any(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsOrdersAsWaitingWhenTheFundFailsUnexpectedly() {
+        when(fundTransactionMapper.listPendingOrders(FUND)).thenReturn(List.of(
+            order(1L, 10L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 0)),
+            order(2L, 11L, "申购", "1000", null, LocalDateTime.of(2026, 10, 12, 10, 5))));
+        when(fundNetValueMapper.selectList(any(Wrapper.class))).thenThrow(new IllegalStateException("数据库不可用"));
+
+        SettlementResultVO result = service.settle(List.of(FUND));
+
+        assertThat(result.getSettledOrders()).isZero();
+        assertThat(result.getWaitingOrders()).isEqualTo(2);
+        assertThat(result.getFailedFunds()).isEqualTo(1);
+    }
+
+    private Map<Long, FundTransaction> captureSettledOrders() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<FundTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(fundTransactionMapper).settleOrders(captor.capture());
+        return captor.getValue().stream().collect(Collectors.toMap(FundTransaction::getId, Function.identity()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void navs(FundNetValue... navs) {
+        when(fundNetValueMapper.selectList(any(Wrapper.class))).thenReturn(List.of(navs));
+    }
+
+    private static FundNetValue nav(int year, int month, int day, String unitNetValue) {
+        FundNetValue nav = new FundNetValue();
+        nav.setFundCode(FUND);
+        nav.setEndDate(LocalDate.of(year, month, day).atStartOfDay());
+        nav.setUnitNetValue(new BigDecimal(unitNetValue));
+        return nav;
+    }
+
+    private static FundTransaction order(Long id, Long userId, String type, String amount, String shares, LocalDateTime time) {
+        FundTransaction order = new FundTransaction();
+        order.setId(id);
+        order.setUserId(userId);
+        order.setFundCode(FUND);
+        order.setTransactionType(type);
+        order.setTransactionAmount(amount == null ? null : new BigDecimal(amount));
+        order.setTransactionShares(shares == null ? null : new BigDecimal(shares));
+        order.setTransactionTime(time);
+        order.setStatus("待确认");
+        return order;
+    }
+}
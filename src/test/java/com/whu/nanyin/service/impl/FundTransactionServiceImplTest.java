@@ -0,0 +1,197 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.whu.nanyin.mapper.FundTransactionMapper;
+import com.whu.nanyin.mapper.TransactionArchiveMapper;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.entity.TransactionArchiveSummary;
+import com.whu.nanyin.pojo.vo.CursorPageVO;
+import com.whu.nanyin.pojo.vo.FundTransactionVO;
+import com.whu.nanyin.service.FundNameService;
+import com.whu.nanyin.service.TransactionArchiveService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 交易记录游标分页：热表的 keyset 定位，以及热表与归档表的合并
+ */
+class FundTransactionServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 10, 1, 9, 30);
+
+    private FundTransactionMapper fundTransactionMapper;
+
+    private TransactionArchiveService transactionArchiveService;
+
+    private TransactionArchiveMapper transactionArchiveMapper;
+
+    private FundTransactionServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        fundTransactionMapper = mock(FundTransactionMapper.class);
+        transactionArchiveService = mock(TransactionArchiveService.class);
+        transactionArchiveMapper = mock(TransactionArchiveMapper.class);
+        FundNameService fundNameService = mock(FundNameService.class);
+        when(fundNameService.getNames(anyCollection())).thenReturn(Map.of());
+
+        service = new FundTransactionServiceImpl();
+        ReflectionTestUtils.setField(service, "baseMapper", fundTransactionMapper);
+        ReflectionTestUtils.setField(service, "transactionArchiveService", transactionArchiveService);
+        ReflectionTestUtils.setField(service, "transactionArchiveMapper", transactionArchiveMapper);
+        ReflectionTestUtils.setField(service, "fundNameService", fundNameService);
+    }
+
+    @Test
+    void firstPageFetchesOneExtraRowToDetectMore() {
+        hotRows(tx(5, 50), tx(4, 40), tx(3, 30));
+
+        CursorPageVO<FundTransactionVO> page = page(null, 2);
+
+        assertThat(ids(page)).containsExactly(5L, 4L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getNextCursor()).isEqualTo(BASE.plusMinutes(40) + "_4");
+        QueryWrapper<FundTransaction> query = capturedHotQuery();
+        assertThat(query.getSqlSegment())
+            .contains("ORDER BY transaction_time DESC,id DESC")
+            .endsWith("LIMIT 3");
+        assertThat(query.getParamNameValuePairs().values()).containsExactly(USER_ID);
+    }
+
+    @Test
+    void cursorSeeksStrictlyAfterTheLastRowOfThePreviousPage() {
+        hotRows(tx(3, 30));
+        LocalDateTime afterTime = BASE.plusMinutes(40);
+
+        CursorPageVO<FundTransactionVO> page = page(afterTime + "_4", 2);
+
+        assertThat(ids(page)).containsExactly(3L);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        QueryWrapper<FundTransaction> query = capturedHotQuery();
+        // 展开写法 t <= ? AND (t < ? OR id < ?)，同一时间的记录按ID继续向后翻
+        assertThat(query.getSqlSegment())
+            .contains("transaction_time <=")
+            .contains("transaction_time <")
+            .contains("OR id <");
+        assertThat(query.getParamNameValuePairs().values()).contains(afterTime, 4L);
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThatThrownBy(() -> page("not-a-cursor", 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> page("2026-10-01T09:30_x", 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readsOnlyTheHotTableWhileThePageIsNewerThanTheArchive() {
+        archivedThrough(BASE.plusMinutes(10));
+        hotRows(tx(5, 50), tx(4, 40), tx(3, 30));
+
+        CursorPageVO<FundTransactionVO> page = page(null, 2);
+
+        assertThat(ids(page)).containsExactly(5L, 4L);
+        verify(transactionArchiveMapper, never()).seekArchived(anyLong(), any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void mergesArchivedRowsWhenTheHotTableRunsOut() {
+        archivedThrough(BASE.plusMinutes(20));
+        hotRows(tx(5, 50), tx(4, 40));
+        // 读取期间刚好被归档的交易 4 在两边都读到，只保留一条
+        when(transactionArchiveMapper.seekArchived(eq(USER_ID), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(4)))
+            .thenReturn(List.of(tx(4, 40), tx(2, 20), tx(1, 10)));
+
+        CursorPageVO<FundTransactionVO> page = page(null, 3);
+
+        assertThat(ids(page)).containsExactly(5L, 4L, 2L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getNextCursor()).isEqualTo(BASE.plusMinutes(20) + "_2");
+    }
+
+    @Test
+    void continuesIntoTheArchiveWithTheSameCursor() {
+        archivedThrough(BASE.plusMinutes(20));
+        hotRows();
+        LocalDateTime afterTime = BASE.plusMinutes(20);
+        when(transactionArchiveMapper.seekArchived(eq(USER_ID), isNull(), isNull(), isNull(), isNull(), eq(afterTime), eq(2L), eq(3)))
+            .thenReturn(List.of(tx(1, 10)));
+
+        CursorPageVO<FundTransactionVO> page = page(afterTime + "_2", 2);
+
+        assertThat(ids(page)).containsExactly(1L);
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void ordersSameTimestampByIdDescendingAcrossTables() {
+        archivedThrough(BASE.plusMinutes(30));
+        // 热表和归档表中各有一条交易时间相同的记录
+        hotRows(tx(9, 30));
+        when(transactionArchiveMapper.seekArchived(eq(USER_ID), any(), any(), any(), any(), any(), any(), anyInt()))
+            .thenReturn(List.of(tx(8, 30), tx(12, 30)));
+
+        CursorPageVO<FundTransactionVO> page = page(null, 5);
+
+        assertThat(ids(page)).containsExactly(12L, 9L, 8L);
+    }
+
+    private CursorPageVO<FundTransactionVO> page(String cursor, int size) {
+        return service.listByUserIdCursorPage(USER_ID, cursor, size, null, null, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void hotRows(FundTransaction... rows) {
+        when(fundTransactionMapper.selectList(any(Wrapper.class))).thenReturn(List.of(rows));
+    }
+
+    @SuppressWarnings("unchecked")
+    private QueryWrapper<FundTransaction> capturedHotQuery() {
+        ArgumentCaptor<Wrapper<FundTransaction>> captor = ArgumentCaptor.forClass(Wrapper.class);
+        verify(fundTransactionMapper).selectList(captor.capture());
+        return (QueryWrapper<FundTransaction>) captor.getValue();
+    }
+
+    private void archivedThrough(LocalDateTime archivedThrough) {
+        TransactionArchiveSummary summary = new TransactionArchiveSummary();
+        summary.setUserId(USER_ID);
+        summary.setArchivedThrough(archivedThrough);
+        when(transactionArchiveService.getSummary(USER_ID)).thenReturn(summary);
+    }
+
+    private static List<Long> ids(CursorPageVO<FundTransactionVO> page) {
+        return page.getRecords().stream().map(FundTransactionVO::getId).toList();
+    }
+
+    private static FundTransaction tx(long id, int minutes) {
+        FundTransaction transaction = new FundTransaction();
+        transaction.setId(id);
+        transaction.setUserId(USER_ID);
+        transaction.setFundCode("000001");
+        transaction.setTransactionType("申购");
+        transaction.setTransactionTime(BASE.plusMinutes(minutes));
+        return transaction;
+    }
+}
@@ -0,0 +1,125 @@
+package com.whu.nanyin.service.impl;
+
+import com.whu.nanyin.common.UserTradeSequencer;
+import com.whu.nanyin.mapper.InvestmentPlanMapper;
+import com.whu.nanyin.pojo.dto.FundBatchOrderDTO;
+import com.whu.nanyin.pojo.entity.FundTransaction;
+import com.whu.nanyin.pojo.entity.InvestmentPlan;
+import com.whu.nanyin.pojo.vo.PlanRunResultVO;
+import com.whu.nanyin.service.FundTransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InvestmentPlanServiceImplTest {
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2024, 6, 3);
+
+    private InvestmentPlanMapper investmentPlanMapper;
+
+    private PlatformTransactionManager transactionManager;
+
+    private InvestmentPlanServiceImpl service;
+
+    private long nextTransactionId = 1;
+
+    @BeforeEach
+    void setUp() {
+        investmentPlanMapper = mock(InvestmentPlanMapper.class);
+        FundTransactionService fundTransactionService = mock(FundTransactionService.class);
+        when(fundTransactionService.createBatchTransactions(any(FundBatchOrderDTO.class))).thenAnswer(inv -> {
+            List<FundTransaction> transactions = new ArrayList<>();
+            for (int i = 0; i < inv.<FundBatchOrderDTO>getArgument(0).getLegs().size(); i++) {
+                FundTransaction transaction = new FundTransaction();
+                transaction.setId(nextTransactionId++);
+                transactions.add(transaction);
+            }
+            return transactions;
+        });
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> mock(TransactionStatus.class));
+        UserTradeSequencer userTradeSequencer = new UserTradeSequencer();
+        ReflectionTestUtils.setField(userTradeSequencer, "stripeCount", 16);
+        ReflectionTestUtils.setField(userTradeSequencer, "lockTimeoutMs", 1000L);
+        userTradeSequencer.init();
+
+        service = new InvestmentPlanServiceImpl();
+        ReflectionTestUtils.setField(service, "baseMapper", investmentPlanMapper);
+        ReflectionTestUtils.setField(service, "fundTransactionService", fundTransactionService);
+        ReflectionTestUtils.setField(service, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(service, "userTradeSequencer", userTradeSequencer);
+        ReflectionTestUtils.setField(service, "sqlSessionTemplate", mock(SqlSessionTemplate.class));
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "pageSize", 100);
+        ReflectionTestUtils.setField(service, "usersPerTransaction", 10);
+        service.initWorkers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void executesSeveralUsersInOneTransaction() {
+        List<InvestmentPlan> due = List.of(plan(1L, 101L), plan(2L, 101L), plan(3L, 102L), plan(4L, 103L));
+        when(investmentPlanMapper.listDuePlans(eq(RUN_DATE), anyLong(), anyInt())).thenReturn(due, List.of());
+        when(investmentPlanMapper.advancePlans(eq(RUN_DATE), anyList())).thenAnswer(inv -> inv.<List<?>>getArgument(1).size());
+
+        PlanRunResultVO result = service.executeDuePlans(RUN_DATE);
+
+        assertThat(result.getSucceededPlans()).isEqualTo(4);
+        assertThat(result.getSkippedPlans()).isZero();
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(investmentPlanMapper, times(1)).advancePlans(eq(RUN_DATE), anyList());
+    }
+
+    @Test
+    void retriesUserByUserWhenTheGroupTransactionFails() {
+        List<InvestmentPlan> due = List.of(plan(1L, 101L), plan(2L, 102L), plan(3L, 103L));
+        when(investmentPlanMapper.listDuePlans(eq(RUN_DATE), anyLong(), anyInt())).thenReturn(due, List.of());
+        // 用户 102 的计划已被其他任务推进：整组回滚，逐个用户重试时只有该用户被跳过
+        when(investmentPlanMapper.advancePlans(eq(RUN_DATE), anyList())).thenAnswer(inv -> {
+            List<InvestmentPlan> outcomes = inv.getArgument(1);
+            return (int) outcomes.stream().filter(outcome -> outcome.getId() != 2L).count();
+        });
+
+        PlanRunResultVO result = service.executeDuePlans(RUN_DATE);
+
+        assertThat(result.getSucceededPlans()).isEqualTo(2);
+        assertThat(result.getSkippedPlans()).isEqualTo(1);
+        verify(transactionManager, times(4)).getTransaction(any());
+    }
+
+    private static InvestmentPlan plan(Long id, Long userId) {
+        InvestmentPlan plan = new InvestmentPlan();
+        plan.setId(id);
+        plan.setUserId(userId);
+        plan.setFundCode("000001");
+        plan.setAmount(new BigDecimal("100"));
+        plan.setFrequency("每日");
+        plan.setBankAccountNumber("6222000000000000");
+        return plan;
+    }
+}
@@ -0,0 +1,96 @@
+package com.whu.nanyin.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.whu.nanyin.common.TradeTransactionRunner;
+import com.whu.nanyin.mapper.TransactionIdempotencyMapper;
+import com.whu.nanyin.pojo.entity.TransactionIdempotency;
+import com.whu.nanyin.pojo.vo.FundTransactionVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionIdempotencyServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    private TransactionIdempotencyMapper transactionIdempotencyMapper;
+
+    private TransactionIdempotencyServiceImpl service;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        transactionIdempotencyMapper = mock(TransactionIdempotencyMapper.class);
+        TradeTransactionRunner tradeTransactionRunner = mock(TradeTransactionRunner.class);
+        when(tradeTransactionRunner.execute(anyLong(), any(Supplier.class)))
+            .thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+
+        service = new TransactionIdempotencyServiceImpl();
+        ReflectionTestUtils.setField(service, "transactionIdempotencyMapper", transactionIdempotencyMapper);
+        ReflectionTestUtils.setField(service, "tradeTransactionRunner", tradeTransactionRunner);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "cacheTtlMinutes", 60L);
+        service.initCache();
+    }
+
+    @Test
+    void replaysTheFirstResultForTheSameRequest() {
+        FundTransactionVO first = service.execute(USER_ID, "key-1", "申购", "000001|100", () -> purchase(1L));
+        FundTransactionVO retry = service.execute(USER_ID, "key-1", "申购", "000001|100", () -> purchase(2L));
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(retry.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void rejectsAKeyReusedWithADifferentRequest() {
+        service.execute(USER_ID, "key-1", "申购", "000001|100", () -> purchase(1L));
+
+        assertThatThrownBy(() -> service.execute(USER_ID, "key-1", "申购", "000001|200", () -> purchase(2L)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("请求内容不同");
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rejectsAMismatchedRequestFoundInTheTable() {
+        when(transactionIdempotencyMapper.selectOne(any(Wrapper.class))).thenReturn(null);
+        service.execute(USER_ID, "key-1", "赎回", "000001|10", () -> purchase(1L));
+        ArgumentCaptor<TransactionIdempotency> inserted = ArgumentCaptor.forClass(TransactionIdempotency.class);
+        verify(transactionIdempotencyMapper).insert(inserted.capture());
+        assertThat(inserted.getValue().getRequestFingerprint()).hasSize(64);
+
+        // 另一个实例（缓存未命中）从表中读到这条记录
+        setUp();
+        when(transactionIdempotencyMapper.selectOne(any(Wrapper.class))).thenReturn(inserted.getValue());
+
+        assertThatThrownBy(() -> service.execute(USER_ID, "key-1", "赎回", "000002|10", () -> purchase(2L)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(executions).hasValue(1);
+    }
+
+    private FundTransactionVO purchase(Long id) {
+        executions.incrementAndGet();
+        FundTransactionVO vo = new FundTransactionVO();
+        vo.setId(id);
+        return vo;
+    }
+}